@@ -0,0 +1,63 @@
+import java.sql.Connection;
+import java.util.Map;
+
+/*
+
+    The FactWriteFixture class drives the FactWriter class with a fixed number of joined rows per run,
+    committing them once all have been written.
+
+*/
+
+public class FactWriteFixture extends PipelineFixture
+
+{
+
+    private Connection connection;
+    private FactWriter factWriter;
+    private int rows;
+
+    //  Function to create the fact writer and its connection.
+
+    @Override
+    public void setUp(Map<String, String> parameters) throws Exception
+
+    {
+
+        super.setUp(parameters);
+        rows=getInt("rows", 10000);
+        connection=connectionPool.getConnection();
+        factWriter=new FactWriter(connection, bulkLoader, getInt("factBatchSize", 500), getInt("factCommitSize", 2000), false, pipelineExecutor, resultReporter, pipelineMetrics);
+
+    }
+
+    //  Function to write and commit the rows, returning the number of rows committed so far.
+
+    @Override
+    public long run() throws Exception
+
+    {
+
+        for(int i=0; i<rows; i++)
+        {
+            factWriter.write(1+i%1000, 1+i%100, 1+i, 1+i%10, 129999);
+        }
+        factWriter.commit();
+
+        return factWriter.getCommittedRows();
+
+    }
+
+    //  Function to release the connection before the shared parts of the pipeline.
+
+    @Override
+    public void tearDown() throws Exception
+
+    {
+
+        factWriter.close();
+        connection.close();
+        super.tearDown();
+
+    }
+
+}
@@ -0,0 +1,116 @@
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+
+    The IngestFixture class generates the master data and transactions files of the benchmark into a
+    temporary directory, and runs the StreamGenerator class over them in the direct join mode. The
+    batches it publishes are taken by a drainer thread standing in for the HybridJoin worker.
+
+*/
+
+public class IngestFixture extends PipelineFixture
+
+{
+
+    private Path dataDirectory;
+    private Path masterDataFile;
+    private Path transactionsFile;
+
+    //  Function to generate the data files.
+
+    @Override
+    public void setUp(Map<String, String> parameters) throws Exception
+
+    {
+
+        super.setUp(parameters);
+        dataDirectory=Files.createTempDirectory("electronica-benchmark");
+        masterDataFile=dataDirectory.resolve("master_data.csv");
+        transactionsFile=dataDirectory.resolve("transactions.csv");
+        int products=getInt("products", 1000);
+        try(PrintWriter writer=new PrintWriter(Files.newBufferedWriter(masterDataFile)))
+        {
+            writer.println("productID,productName,productPrice,supplierID,supplierName,storeID,storeName");
+            for(MasterDataRecord record : masterData(products))
+            {
+                writer.println(record.productID+","+record.productName+","+record.productPrice+","+record.supplierID+","+record.supplierName+","+record.storeID+","+record.storeName);
+            }
+        }
+        Random random=new Random(42);
+        try(PrintWriter writer=new PrintWriter(Files.newBufferedWriter(transactionsFile)))
+        {
+            writer.println("Order ID,Order Date,ProductID,CustomerID,CustomerName,Gender,Quantity Ordered");
+            for(int i=1; i<=getInt("dataSize", 10000); i++)
+            {
+                int customerID=1+random.nextInt(1000);
+                writer.printf("%d,%02d/%02d/19 %02d:%02d,%d,%d,Customer %d,%s,%d\n", i, 1+random.nextInt(12), 1+random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                    1+random.nextInt(products), customerID, customerID, customerID%2==0 ? "Female" : "Male", 1+random.nextInt(3));
+            }
+        }
+
+    }
+
+    //  Function to stream the data files once, returning the number of tuples published.
+
+    @Override
+    public long run() throws Exception
+
+    {
+
+        StreamGenerator.clearProcessedIdentifiers();    //  Loading the dimension tables again, as every run starts from scratch.
+        StreamBuffer<StreamBatch> streamBuffer=new StreamBuffer<>(16, StreamBuffer.OverflowPolicy.BLOCK);
+        StreamGenerator.Options options=new StreamGenerator.Options();
+        options.batchSize=getInt("batchSize", 1000);
+        options.batchSpeed=0;
+        options.csvParser=StreamGenerator.CsvParser.valueOf(getString("csvParser", "MAPPED"));
+        options.parserThreads=getInt("parserThreads", 1);
+        StreamGenerator streamGenerator=new StreamGenerator(Collections.singletonList(streamBuffer), options, pipelineContext(new CountDownLatch(1)));
+        streamGenerator.setDataFiles(masterDataFile.toString(), transactionsFile.toString());
+        long[] tuples=new long[1];
+        Thread drainer=new Thread(()->{
+            StreamBatch batchEntries;
+            while((batchEntries=streamBuffer.take())!=null)
+            {
+                tuples[0]+=batchEntries.size();
+                batchEntries.recycle();
+            }
+        });
+        drainer.start();
+        streamGenerator.run();
+        drainer.join();
+
+        return tuples[0];
+
+    }
+
+    //  Function to delete the data files.
+
+    @Override
+    public void tearDown() throws Exception
+
+    {
+
+        super.tearDown();
+        List<Path> paths;
+        try(Stream<Path> walk=Files.walk(dataDirectory))
+        {
+            paths=walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()); //  Deleting the files ahead of their directory.
+        }
+        for(Path path : paths)
+        {
+            Files.delete(path); //  Failing the benchmark if a file cannot be deleted.
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/*
+
+    The JoinFixture class drives the HybridJoin.processBatchEntries function with a batch of random
+    transactions in the direct join mode, joining them with the master data of the stand-in database
+    until the multi-hash table is empty and the fact rows are committed. With dimension snapshots,
+    the master data of the stand-in database is loaded into a DimensionUpdater up front, and looked
+    up in memory instead.
+
+*/
+
+public class JoinFixture extends PipelineFixture
+
+{
+
+    private HybridJoin hybridJoin;
+    private Connection connection;
+    private FactWriter factWriter;
+    private StreamBatch batchEntries;
+
+    //  Function to create the join worker, its connection and the batch.
+
+    @Override
+    public void setUp(Map<String, String> parameters) throws Exception
+
+    {
+
+        super.setUp(parameters);
+        int batchSize=getInt("batchSize", 1000);
+        int products=getInt("products", 1000);
+        HybridJoin.PartitionStrategy partitionStrategy=HybridJoin.PartitionStrategy.valueOf(getString("partitionStrategy", "RANGE"));
+        CountDownLatch masterDataLoaded=new CountDownLatch(0);  //  The master data of the stand-in database is always loaded.
+        SalesCube salesCube=getBoolean("salesCube", false) ? new SalesCube() : null;
+        DimensionUpdater dimensionUpdater=null;
+        if(getBoolean("dimensionSnapshots", false))
+        {
+            dimensionUpdater=new DimensionUpdater(null, 0, pipelineExecutor, connectionPool, masterDataLoaded, salesCube);
+            dimensionUpdater.load(masterData(products));    //  Snapshotting the products served by the stand-in database.
+            dimensionUpdater.publishMasterData();
+        }
+        HybridJoin.Options options=new HybridJoin.Options();
+        options.hashTableCapacity=getInt("hashTableCapacity", 10000);
+        options.partitionSize=getInt("partitionSize", 10);
+        options.factBatchSize=getInt("factBatchSize", 500);
+        options.factCommitSize=getInt("factCommitSize", 2000);
+        options.partitionStrategy=partitionStrategy;
+        options.cacheCapacity=getInt("masterCacheCapacity", 4096);
+        PipelineContext context=pipelineContext(masterDataLoaded);
+        context.salesCube=salesCube;
+        context.dimensionUpdater=dimensionUpdater;
+        hybridJoin=new HybridJoin(new StreamBuffer<>(1, StreamBuffer.OverflowPolicy.BLOCK), options, context);
+        connection=connectionPool.getConnection();
+        factWriter=new FactWriter(connection, bulkLoader, getInt("factBatchSize", 500), getInt("factCommitSize", 2000), false, pipelineExecutor, resultReporter, pipelineMetrics);
+        batchEntries=new StreamBatch(batchSize, null);
+        StreamGenerator.OrderDate orderDate=new StreamGenerator.OrderDate("04/01/19 03:09", LocalDateTime.of(2019, 4, 1, 3, 9));
+        Random random=new Random(42);   //  Using a fixed seed, so every run joins the same batch.
+        for(int i=0; i<batchSize; i++)
+        {
+            TransactionRecord record=new TransactionRecord(i, orderDate.text, 1+random.nextInt(products), 1+random.nextInt(1000), "Customer", "Female", 1+random.nextInt(3));
+            batchEntries.add(record, i+1, orderDate);
+        }
+        batchEntries.sortByProductID(); //  Leaving the batch as the StreamGenerator class publishes it.
+
+    }
+
+    //  Function to join the batch, returning the number of tuples joined so far.
+
+    @Override
+    public long run() throws Exception
+
+    {
+
+        hybridJoin.processBatchEntries(batchEntries, connection, factWriter);
+        hybridJoin.flush(connection, factWriter);
+        factWriter.commit();
+
+        return hybridJoin.getJoinedTuples();
+
+    }
+
+    //  Function to release the connection before the shared parts of the pipeline.
+
+    @Override
+    public void tearDown() throws Exception
+
+    {
+
+        factWriter.close();
+        connection.close();
+        super.tearDown();
+
+    }
+
+}
@@ -0,0 +1,122 @@
+import benchmarks.BenchmarkDriver;
+import benchmarks.Fixture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/*
+
+    The PipelineFixture class holds what the fixtures of the benchmarks share: the executor, the
+    connection pool (connected to the stand-in database of the BenchmarkDriver class), the loader of
+    the tables (in the `loadMode` of the benchmark), and a silent reporter and metrics registry,
+    built as the Controller class builds them, along with the master data served by the stand-in
+    database and the parameters of the benchmark.
+
+*/
+
+public abstract class PipelineFixture implements Fixture
+
+{
+
+    protected Map<String, String> parameters;
+    protected PipelineExecutor pipelineExecutor;
+    protected ConnectionPool connectionPool;
+    protected BulkLoader bulkLoader;
+    protected ResultReporter resultReporter;
+    protected PipelineMetrics pipelineMetrics;
+
+    //  Function to create the shared parts of the pipeline.
+
+    @Override
+    public void setUp(Map<String, String> parameters) throws Exception
+
+    {
+
+        this.parameters=parameters;
+        String url=BenchmarkDriver.URL_PREFIX+"products="+getInt("products", 1000)+";latencyMicros="+getInt("latencyMicros", 0);
+        PipelineConfig config=new PipelineConfig(new String[]{"--database.url="+url});
+        pipelineExecutor=new PipelineExecutor(PipelineExecutor.ThreadMode.PLATFORM, config.getInt("database.poolSize", 64));
+        connectionPool=new ConnectionPool(config);
+        bulkLoader=new BulkLoader(BulkLoader.LoadMode.valueOf(getString("loadMode", "INSERT")), false);
+        resultReporter=new ResultReporter(ResultReporter.Verbosity.NONE, 1, 1000, 2);
+        pipelineMetrics=new PipelineMetrics(null, 1000);
+
+    }
+
+    //  Function to release the shared parts of the pipeline.
+
+    @Override
+    public void tearDown() throws Exception
+
+    {
+
+        pipelineMetrics.close();
+        pipelineExecutor.close();
+        connectionPool.close();
+
+    }
+
+    //  Function to return the context of the stages, waiting on the given latch for the master data.
+
+    protected PipelineContext pipelineContext(CountDownLatch masterDataLoaded)
+
+    {
+
+        return new PipelineContext(pipelineExecutor, connectionPool, bulkLoader, masterDataLoaded, resultReporter, pipelineMetrics);
+
+    }
+
+    //  Function to return the master data of the products served by the stand-in database.
+
+    protected static List<MasterDataRecord> masterData(int products)
+
+    {
+
+        List<MasterDataRecord> masterData=new ArrayList<>(products);
+        for(int productID=1; productID<=products; productID++)
+        {
+            masterData.add(new MasterDataRecord(productID, "Product "+productID, productID%1000+".99$", productID%50+1, "Supplier "+(productID%50+1), productID%10+1, "Store "+(productID%10+1)));
+        }
+
+        return masterData;
+
+    }
+
+    //  Function to return an integer parameter of the benchmark.
+
+    protected int getInt(String key, int defaultValue)
+
+    {
+
+        String value=parameters.get(key);
+
+        return value==null ? defaultValue : Integer.parseInt(value.trim());
+
+    }
+
+    //  Function to return a boolean parameter of the benchmark.
+
+    protected boolean getBoolean(String key, boolean defaultValue)
+
+    {
+
+        String value=parameters.get(key);
+
+        return value==null ? defaultValue : Boolean.parseBoolean(value.trim());
+
+    }
+
+    //  Function to return a text parameter of the benchmark.
+
+    protected String getString(String key, String defaultValue)
+
+    {
+
+        String value=parameters.get(key);
+
+        return value==null ? defaultValue : value.trim();
+
+    }
+
+}
@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+
+    The SortBatchFixture class drives the StreamGenerator.processBatch function with a batch of random
+    products, and empties the stream buffers after every run so the next one never waits.
+
+*/
+
+public class SortBatchFixture extends PipelineFixture
+
+{
+
+    private final List<StreamBuffer<StreamBatch>> streamBuffers=new ArrayList<>();
+    private StreamGenerator streamGenerator;
+    private StreamBatch batchEntries;
+
+    //  Function to create the stream generator and the batch.
+
+    @Override
+    public void setUp(Map<String, String> parameters) throws Exception
+
+    {
+
+        super.setUp(parameters);
+        int batchSize=getInt("batchSize", 1000);
+        int products=getInt("products", 1000);
+        for(int i=0; i<getInt("workers", 1); i++)
+        {
+            streamBuffers.add(new StreamBuffer<>(4, StreamBuffer.OverflowPolicy.BLOCK));
+        }
+        StreamGenerator.Options options=new StreamGenerator.Options();
+        options.batchSize=batchSize;
+        options.batchSpeed=0;
+        streamGenerator=new StreamGenerator(streamBuffers, options, pipelineContext(null));
+        batchEntries=new StreamBatch(batchSize, null);
+        Random random=new Random(42);   //  Using a fixed seed, so every run sorts the same batch.
+        for(int i=0; i<batchSize; i++)
+        {
+            batchEntries.add(1+random.nextInt(products), 1+random.nextInt(1000));
+        }
+
+    }
+
+    //  Function to sort and split the batch, returning the number of tuples published.
+
+    @Override
+    public long run()
+
+    {
+
+        streamGenerator.processBatch(batchEntries);
+        long tuples=0;
+        for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+        {
+            while(streamBuffer.size()>0)    //  Taking the published batches back, so the buffers never fill up.
+            {
+                StreamBatch workerBatch=streamBuffer.take();
+                tuples+=workerBatch.size();
+                workerBatch.recycle();
+            }
+        }
+
+        return tuples;
+
+    }
+
+}
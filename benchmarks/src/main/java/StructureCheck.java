@@ -0,0 +1,305 @@
+import java.util.*;
+
+/*
+
+    The StructureCheck class checks the primitive structures of the join path against the boxed
+    collections of the JDK: the IntMultiMap, IntHashSet, JoinQueue, WaitingKeys and PendingBatches
+    classes and the radix sort of the StreamBatch class. Every structure is driven with a random
+    sequence of operations, over keys that include the negative identifiers and the extreme values
+    of an int, and its answers are compared with the ones of the reference collection after every
+    operation. The first difference stops the check with an error, and the process exits with a
+    non-zero status. Run it from the `benchmarks` folder, once the suite has been built, with:
+
+        java -cp target/benchmarks.jar StructureCheck
+
+*/
+
+public class StructureCheck
+
+{
+
+    private static final int OPERATIONS=200000; //  Number of random operations per structure.
+    private static final int[] EDGE_KEYS={-1, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE+1};
+
+    private static final Random random=new Random(42);  //  Using a fixed seed, so every run checks the same operations.
+
+    //  Driver function.
+
+    public static void main(String[] args)
+
+    {
+
+        try
+        {
+            checkIntMultiMap();
+            checkIntHashSet();
+            checkJoinQueue();
+            checkWaitingKeys();
+            checkPendingBatches();
+            checkSortByProductID();
+            System.out.println("- All the structures passed.");
+        }
+        catch(AssertionError Error)
+        {
+            System.out.println("- "+Error.getMessage());
+            System.exit(1);
+        }
+
+    }
+
+    //  Function to check the multi-hash table: the values of every key in insertion order, the distinct keys and the sizes.
+
+    private static void checkIntMultiMap()
+
+    {
+
+        IntMultiMap multiMap=new IntMultiMap(16);
+        Map<Integer, List<Integer>> reference=new HashMap<>();
+        Map<Integer, Integer> slotValues=new HashMap<>();   //  Value stored by the caller in every live slot.
+        int nextValue=0;
+        for(int operation=0; operation<OPERATIONS; operation++)
+        {
+            int key=randomKey(64);
+            if(random.nextInt(3)>0)
+            {
+                int slot=multiMap.put(key);
+                check(!slotValues.containsKey(slot), "IntMultiMap handed out the live slot "+slot+".");
+                slotValues.put(slot, nextValue);
+                reference.computeIfAbsent(key, values->new ArrayList<>()).add(nextValue++);
+            }
+            else
+            {
+                List<Integer> values=reference.remove(key);
+                for(int slot=multiMap.first(key); slot!=IntMultiMap.NONE; slot=multiMap.next(slot))
+                {
+                    slotValues.remove(slot);
+                }
+                check(multiMap.remove(key)==(values==null ? 0 : values.size()), "IntMultiMap removed a wrong number of values of "+key+".");
+            }
+            List<Integer> values=new ArrayList<>();
+            for(int slot=multiMap.first(key); slot!=IntMultiMap.NONE; slot=multiMap.next(slot))
+            {
+                values.add(slotValues.get(slot));
+            }
+            check(values.equals(reference.getOrDefault(key, Collections.emptyList())), "IntMultiMap returned "+values+" for "+key+".");
+            check(multiMap.containsKey(key)==reference.containsKey(key), "IntMultiMap disagrees on the presence of "+key+".");
+            check(multiMap.keyCount()==reference.size() && multiMap.size()==slotValues.size(), "IntMultiMap counts "+multiMap.keyCount()+" key(s) and "+multiMap.size()+" value(s).");
+        }
+        int[] keys=new int[multiMap.keyCount()];
+        int keyCount=multiMap.keysInto(keys);
+        Set<Integer> distinctKeys=new HashSet<>();
+        for(int i=0; i<keyCount; i++)
+        {
+            distinctKeys.add(keys[i]);
+        }
+        check(distinctKeys.equals(reference.keySet()), "IntMultiMap copied the keys "+distinctKeys+".");
+        System.out.println("- IntMultiMap passed.");
+
+    }
+
+    //  Function to check the set of identifiers, including the value marking its unused buckets.
+
+    private static void checkIntHashSet()
+
+    {
+
+        IntHashSet set=new IntHashSet(4);
+        Set<Integer> reference=new HashSet<>();
+        for(int operation=0; operation<OPERATIONS; operation++)
+        {
+            if(operation%50000==49999)
+            {
+                set.clear();
+                reference.clear();
+            }
+            int key=randomKey(100000);
+            check(set.add(key)==reference.add(key), "IntHashSet disagrees on adding "+key+".");
+            int probe=randomKey(100000);
+            check(set.contains(probe)==reference.contains(probe), "IntHashSet disagrees on the presence of "+probe+".");
+            check(set.size()==reference.size(), "IntHashSet counts "+set.size()+" value(s).");
+        }
+        System.out.println("- IntHashSet passed.");
+
+    }
+
+    /*  Function to check the join queue as the HybridJoin class drives it: a product leaves with all
+        its waiting tuples at once, and the oldest waiting tuple is always the one reported. */
+
+    private static void checkJoinQueue()
+
+    {
+
+        JoinQueue joinQueue=new JoinQueue(4);
+        Deque<Integer> arrivals=new ArrayDeque<>(); //  Product of every waiting tuple, in arrival order.
+        for(int operation=0; operation<OPERATIONS; operation++)
+        {
+            if(random.nextInt(3)>0 || arrivals.isEmpty())
+            {
+                int productID=randomKey(32);
+                joinQueue.add(productID);
+                arrivals.addLast(productID);
+            }
+            else
+            {
+                int productID=random.nextBoolean() ? arrivals.peekFirst() : randomKey(32);
+                int entries=0;
+                for(Iterator<Integer> waiting=arrivals.iterator(); waiting.hasNext();)
+                {
+                    if(waiting.next()==productID)
+                    {
+                        waiting.remove();
+                        entries++;
+                    }
+                }
+                if(entries>0)
+                {
+                    joinQueue.markJoined(productID, entries);
+                }
+            }
+            check(joinQueue.isEmpty()==arrivals.isEmpty(), "JoinQueue disagrees on being empty.");
+            check(arrivals.isEmpty() || joinQueue.oldest()==arrivals.peekFirst(), "JoinQueue returned "+joinQueue.oldest()+" instead of "+arrivals.peekFirst()+".");
+        }
+        System.out.println("- JoinQueue passed.");
+
+    }
+
+    /*  Function to check the sorted waiting keys: a selection holds the oldest key and live keys only,
+        sorted and distinct, and is filled up to its size whenever enough keys are waiting. */
+
+    private static void checkWaitingKeys()
+
+    {
+
+        IntMultiMap multiMap=new IntMultiMap(16);
+        WaitingKeys waitingKeys=new WaitingKeys(multiMap);
+        TreeSet<Integer> reference=new TreeSet<>();
+        int[] selected=new int[8];
+        for(int operation=0; operation<OPERATIONS; operation++)
+        {
+            int key=randomKey(400);
+            if(random.nextInt(3)>0)
+            {
+                if(!multiMap.containsKey(key))
+                {
+                    waitingKeys.added(key);
+                }
+                multiMap.put(key);
+                reference.add(key);
+                continue;
+            }
+            if(reference.isEmpty())
+            {
+                continue;
+            }
+            Integer oldestKey=reference.ceiling(key);
+            oldestKey=oldestKey==null ? reference.first() : oldestKey;
+            int count=waitingKeys.select(oldestKey, selected);
+            check(count==Math.min(selected.length, reference.size()), "WaitingKeys selected "+count+" of "+reference.size()+" key(s).");
+            boolean hasOldest=false;
+            for(int i=0; i<count; i++)
+            {
+                check(reference.contains(selected[i]), "WaitingKeys selected "+selected[i]+", which is not waiting.");
+                check(i==0 || selected[i-1]<selected[i], "WaitingKeys selected unsorted or repeated keys.");
+                hasOldest|=selected[i]==oldestKey;
+            }
+            check(hasOldest, "WaitingKeys left out the oldest key "+oldestKey+".");
+            for(int i=0; i<count; i++)
+            {
+                if(multiMap.remove(selected[i])>0)
+                {
+                    waitingKeys.removed(selected[i]);
+                }
+                reference.remove(selected[i]);
+            }
+        }
+        System.out.println("- WaitingKeys passed.");
+
+    }
+
+    //  Function to check the queue of the batches not yet acknowledged, and the lookup of a batch by its ordinal.
+
+    private static void checkPendingBatches()
+
+    {
+
+        PendingBatches pendingBatches=new PendingBatches();
+        List<long[]> reference=new ArrayList<>();   //  Every batch added, the ordinal being the index.
+        int firstOrdinal=0;
+        for(int operation=0; operation<OPERATIONS; operation++)
+        {
+            if(random.nextInt(5)<3 || firstOrdinal==reference.size())
+            {
+                long[] batch={operation};
+                check(pendingBatches.add(batch)==reference.size(), "PendingBatches returned a wrong ordinal.");
+                reference.add(batch);
+            }
+            else
+            {
+                check(pendingBatches.poll()==reference.get(firstOrdinal++), "PendingBatches polled a wrong batch.");
+            }
+            int ordinal=firstOrdinal-2+random.nextInt(reference.size()-firstOrdinal+4);
+            long[] expected=ordinal<firstOrdinal || ordinal>=reference.size() ? null : reference.get(ordinal);
+            check(pendingBatches.get(ordinal)==expected, "PendingBatches returned a wrong batch for the ordinal "+ordinal+".");
+            boolean empty=firstOrdinal==reference.size();
+            check(pendingBatches.isEmpty()==empty && pendingBatches.peek()==(empty ? null : reference.get(firstOrdinal)), "PendingBatches disagrees on its oldest batch.");
+        }
+        System.out.println("- PendingBatches passed.");
+
+    }
+
+    //  Function to check the radix sort of a batch against a stable sort, for batches of every size and range of identifiers.
+
+    private static void checkSortByProductID()
+
+    {
+
+        StreamBatch batchEntries=new StreamBatch(16, null);
+        for(int run=0; run<2000; run++)
+        {
+            batchEntries.clear();
+            int size=random.nextInt(run%10==0 ? 5000 : 200);
+            int range=random.nextBoolean() ? 1000 : Integer.MAX_VALUE;
+            for(int i=0; i<size; i++)
+            {
+                batchEntries.add(random.nextInt(4)==0 ? EDGE_KEYS[random.nextInt(EDGE_KEYS.length)] : random.nextInt(range)-range/2, i);
+            }
+            Integer[] expected=new Integer[size];
+            for(int i=0; i<size; i++)
+            {
+                expected[i]=i;
+            }
+            Arrays.sort(expected, Comparator.comparingInt(index->batchEntries.productIDs[index]));  //  Sorting stably, so equal identifiers keep their arrival order.
+            int[] order=batchEntries.sortByProductID();
+            for(int i=0; i<size; i++)
+            {
+                check(order[i]==expected[i], "StreamBatch sorted the tuple "+order[i]+" at "+i+" instead of "+expected[i]+".");
+            }
+        }
+        System.out.println("- StreamBatch.sortByProductID passed.");
+
+    }
+
+    //  Function to draw a key from a small range around zero, or one of the edge values of an int.
+
+    private static int randomKey(int range)
+
+    {
+
+        return random.nextInt(10)==0 ? EDGE_KEYS[random.nextInt(EDGE_KEYS.length)] : random.nextInt(range)-range/2;
+
+    }
+
+    //  Function to stop the check with the given message if the condition does not hold.
+
+    private static void check(boolean condition, String message)
+
+    {
+
+        if(!condition)
+        {
+            throw new AssertionError(message);
+        }
+
+    }
+
+}
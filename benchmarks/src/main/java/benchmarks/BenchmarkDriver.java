@@ -0,0 +1,562 @@
+package benchmarks;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/*
+
+    The BenchmarkDriver class is an in-process stand-in for the MySQL server, so the benchmarks run
+    offline. It accepts the `jdbc:benchmark:` URLs, whose parameters describe the master data it
+    serves (for example `jdbc:benchmark:products=1000;latencyMicros=200`):
+
+    - products: the products 1 to `products` exist, with a price, a supplier and a store each.
+    - latencyMicros: the time every round trip (query, update, batch or commit) takes, to stand in
+      for the network and the server.
+
+    Every statement is accepted. The updates and batches report one row per statement, and the
+    queries of the HybridJoin and StreamGenerator classes are answered from the products above;
+    any other query returns no rows. The bulk loads read the whole input stream given to their
+    statement, and report one row per line.
+
+*/
+
+public class BenchmarkDriver implements Driver
+
+{
+
+    public static final String URL_PREFIX="jdbc:benchmark:";
+
+    static
+    {
+        try
+        {
+            DriverManager.registerDriver(new BenchmarkDriver());
+        }
+        catch(SQLException Error)
+        {
+            throw new ExceptionInInitializerError(Error);
+        }
+    }
+
+    //  Function to make sure the driver is registered with the DriverManager class.
+
+    public static void register()
+
+    {
+
+        //  Registering the driver in the static initialiser, run once by the first call.
+
+    }
+
+    @Override
+    public Connection connect(String url, Properties info)
+
+    {
+
+        if(!acceptsURL(url))
+        {
+            return null;
+        }
+        Map<String, String> parameters=new HashMap<>();
+        for(String parameter : url.substring(URL_PREFIX.length()).split(";"))
+        {
+            int separator=parameter.indexOf('=');
+            if(separator>0)
+            {
+                parameters.put(parameter.substring(0, separator).trim(), parameter.substring(separator+1).trim());
+            }
+        }
+        int products=Integer.parseInt(parameters.getOrDefault("products", "100"));
+        long latencyNanos=Long.parseLong(parameters.getOrDefault("latencyMicros", "0"))*1000;
+
+        return (Connection)proxy(Connection.class, new ConnectionHandler(products, latencyNanos));
+
+    }
+
+    @Override
+    public boolean acceptsURL(String url)
+
+    {
+
+        return url!=null && url.startsWith(URL_PREFIX);
+
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+
+    {
+
+        return new DriverPropertyInfo[0];
+
+    }
+
+    @Override
+    public int getMajorVersion()
+
+    {
+
+        return 1;
+
+    }
+
+    @Override
+    public int getMinorVersion()
+
+    {
+
+        return 0;
+
+    }
+
+    @Override
+    public boolean jdbcCompliant()
+
+    {
+
+        return false;
+
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException
+
+    {
+
+        throw new SQLFeatureNotSupportedException();
+
+    }
+
+    //  Function to create a proxy of a JDBC interface.
+
+    private static Object proxy(Class<?> type, InvocationHandler handler)
+
+    {
+
+        return Proxy.newProxyInstance(BenchmarkDriver.class.getClassLoader(), new Class<?>[]{type}, handler);
+
+    }
+
+    //  Function to return the default value of a return type, for the calls with nothing to do.
+
+    private static Object defaultValue(Class<?> type)
+
+    {
+
+        if(type==boolean.class)
+        {
+            return false;
+        }
+        if(type==int.class)
+        {
+            return 0;
+        }
+        if(type==long.class)
+        {
+            return 0L;
+        }
+        if(type==double.class)
+        {
+            return 0.0;
+        }
+        if(type==float.class)
+        {
+            return 0.0f;
+        }
+        if(type==short.class)
+        {
+            return (short)0;
+        }
+        if(type==byte.class)
+        {
+            return (byte)0;
+        }
+
+        return null;
+
+    }
+
+    //  Class to answer the calls to a connection.
+
+    private static class ConnectionHandler implements InvocationHandler
+
+    {
+
+        private final int products;
+        private final long latencyNanos;
+        private boolean autoCommit=true;
+        private boolean closed;
+
+        //  Constructor function.
+
+        public ConnectionHandler(int products, long latencyNanos)
+
+        {
+
+            this.products=products;
+            this.latencyNanos=latencyNanos;
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+
+        {
+
+            switch(method.getName())
+            {
+                case "prepareStatement":
+                    return BenchmarkDriver.proxy(PreparedStatement.class, new StatementHandler(this, (String)args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(BenchmarkDriver.class.getClassLoader(), new Class<?>[]{JdbcStatement.class}, new StatementHandler(this, null));
+                case "setAutoCommit":
+                    autoCommit=(Boolean)args[0];
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "commit":
+                case "rollback":
+                    roundTrip();
+                    return null;
+                case "isValid":
+                    return !closed;
+                case "isClosed":
+                    return closed;
+                case "close":
+                    closed=true;
+                    return null;
+                case "unwrap":
+                    return proxy;
+                case "isWrapperFor":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy==args[0];
+                case "toString":
+                    return "BenchmarkConnection";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+
+        }
+
+        //  Function to stand in for the time of a round trip to the server.
+
+        public void roundTrip()
+
+        {
+
+            if(latencyNanos>0)
+            {
+                LockSupport.parkNanos(latencyNanos);
+            }
+
+        }
+
+        //  Function to answer a query from the products of the connection.
+
+        public ResultSet query(String sql, Map<Integer, Object> parameters)
+
+        {
+
+            roundTrip();
+            List<String> labels=new ArrayList<>();
+            List<Object[]> rows=new ArrayList<>();
+            if(sql.startsWith("SELECT productID, productPrice, supplierID FROM Product_Dimension WHERE productID IN"))
+            {
+                labels.addAll(Arrays.asList("productID", "productPrice", "supplierID"));
+                for(int productID : requestedProducts(parameters))
+                {
+                    rows.add(new Object[]{productID, priceOf(productID), supplierOf(productID)});
+                }
+            }
+            else if(sql.startsWith("SELECT productID, MIN(storeID) FROM Store_Dimension"))
+            {
+                labels.addAll(Arrays.asList("productID", "storeID"));
+                for(int productID : requestedProducts(parameters))
+                {
+                    rows.add(new Object[]{productID, storeOf(productID)});
+                }
+            }
+            else if(sql.startsWith("SELECT t.productID, t.Time_ID"))
+            {
+                labels.addAll(Arrays.asList("productID", "Time_ID", "Quantity Ordered"));
+                for(int productID : requestedProducts(parameters))
+                {
+                    rows.add(new Object[]{productID, productID, 1});
+                }
+            }
+            else if(sql.contains("FROM Product_Dimension p") && sql.contains("LIMIT ?"))    //  Partition of the master data.
+            {
+                labels.addAll(Arrays.asList("productID", "productPrice", "supplierID", "Time_ID", "Quantity Ordered", "storeID"));
+                int first=Math.max(1, (Integer)parameters.get(1));
+                int limit=(Integer)parameters.get(2);
+                for(int productID=first; productID<=products && productID<first+limit; productID++)
+                {
+                    rows.add(new Object[]{productID, priceOf(productID), supplierOf(productID), productID, 1, storeOf(productID)});
+                }
+            }
+            else if(sql.startsWith("SELECT COALESCE(MAX(Time_ID), 0)"))
+            {
+                labels.add("Time_ID");
+                rows.add(new Object[]{0});
+            }
+
+            return (ResultSet)BenchmarkDriver.proxy(ResultSet.class, new ResultSetHandler(labels, rows));
+
+        }
+
+        //  Function to return the distinct bound products that exist, in ascending order.
+
+        private SortedSet<Integer> requestedProducts(Map<Integer, Object> parameters)
+
+        {
+
+            SortedSet<Integer> productIDs=new TreeSet<>();
+            for(Object value : parameters.values())
+            {
+                int productID=(Integer)value;
+                if(productID>=1 && productID<=products)
+                {
+                    productIDs.add(productID);
+                }
+            }
+
+            return productIDs;
+
+        }
+
+        //  Function to return the price of a product.
+
+        private static BigDecimal priceOf(int productID)
+
+        {
+
+            return BigDecimal.valueOf(productID%1000*100+99, 2);
+
+        }
+
+        //  Function to return the supplier of a product.
+
+        private static int supplierOf(int productID)
+
+        {
+
+            return productID%50+1;
+
+        }
+
+        //  Function to return the store of a product.
+
+        private static int storeOf(int productID)
+
+        {
+
+            return productID%10+1;
+
+        }
+
+    }
+
+    //  Class to answer the calls to a statement.
+
+    private static class StatementHandler implements InvocationHandler
+
+    {
+
+        private final ConnectionHandler connection;
+        private final String sql;
+        private final Map<Integer, Object> parameters=new HashMap<>();
+        private int batchedStatements;
+        private InputStream localInfileInputStream;  //  Rows of the next bulk load.
+
+        //  Constructor function.
+
+        public StatementHandler(ConnectionHandler connection, String sql)
+
+        {
+
+            this.connection=connection;
+            this.sql=sql;
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+
+        {
+
+            String name=method.getName();
+            if(name.equals("setLocalInfileInputStream"))
+            {
+                localInfileInputStream=(InputStream)args[0];
+                return null;
+            }
+            if(name.equals("executeUpdate") && args!=null && ((String)args[0]).startsWith("LOAD DATA LOCAL INFILE"))
+            {
+                connection.roundTrip();
+                return readLines();
+            }
+            if(name.startsWith("set") && args!=null && args.length==2 && args[0] instanceof Integer)
+            {
+                parameters.put((Integer)args[0], args[1]);
+                return null;
+            }
+            switch(name)
+            {
+                case "addBatch":
+                    batchedStatements++;
+                    return null;
+                case "clearBatch":
+                    batchedStatements=0;
+                    return null;
+                case "clearParameters":
+                    parameters.clear();
+                    return null;
+                case "executeBatch":
+                    connection.roundTrip();
+                    int[] counts=new int[batchedStatements];
+                    Arrays.fill(counts, 1);
+                    batchedStatements=0;
+                    return counts;
+                case "executeUpdate":
+                    connection.roundTrip();
+                    return 1;
+                case "execute":
+                    connection.roundTrip();
+                    return false;
+                case "executeQuery":
+                    return connection.query(args!=null && args.length>0 ? (String)args[0] : sql, parameters);
+                case "unwrap":
+                    return proxy;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy==args[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+
+        }
+
+        //  Function to read the rows of a bulk load, returning their number.
+
+        private int readLines() throws SQLException
+
+        {
+
+            if(localInfileInputStream==null)
+            {
+                throw new SQLException("No input stream was given for the bulk load.");
+            }
+            int lines=0;
+            try(InputStream inputStream=localInfileInputStream)
+            {
+                byte[] buffer=new byte[8192];
+                int read;
+                while((read=inputStream.read(buffer))>0)
+                {
+                    for(int i=0; i<read; i++)
+                    {
+                        if(buffer[i]=='\n')
+                        {
+                            lines++;
+                        }
+                    }
+                }
+            }
+            catch(IOException Error)
+            {
+                throw new SQLException(Error);
+            }
+            localInfileInputStream=null;
+
+            return lines;
+
+        }
+
+    }
+
+    //  Class to answer the calls to a result set.
+
+    private static class ResultSetHandler implements InvocationHandler
+
+    {
+
+        private final List<String> labels;
+        private final List<Object[]> rows;
+        private int row=-1;
+
+        //  Constructor function.
+
+        public ResultSetHandler(List<String> labels, List<Object[]> rows)
+
+        {
+
+            this.labels=labels;
+            this.rows=rows;
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+
+        {
+
+            switch(method.getName())
+            {
+                case "next":
+                    return ++row<rows.size();
+                case "getMetaData":
+                    return BenchmarkDriver.proxy(ResultSetMetaData.class, (metaData, metaDataMethod, metaDataArgs)->
+                        metaDataMethod.getName().equals("getColumnCount") ? labels.size() : defaultValue(metaDataMethod.getReturnType()));
+                case "getInt":
+                    return ((Number)value(args[0])).intValue();
+                case "getLong":
+                    return ((Number)value(args[0])).longValue();
+                case "getBigDecimal":
+                    Object value=value(args[0]);
+                    return value instanceof BigDecimal ? value : BigDecimal.valueOf(((Number)value).longValue());
+                case "getString":
+                    return String.valueOf(value(args[0]));
+                case "getObject":
+                    return value(args[0]);
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy==args[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+
+        }
+
+        //  Function to return a column of the current row, given its index (from 1) or label.
+
+        private Object value(Object column) throws SQLException
+
+        {
+
+            int index=column instanceof Integer ? (Integer)column-1 : labels.indexOf(column);
+            if(index<0 || index>=labels.size())
+            {
+                throw new SQLException("Unknown column "+column+".");
+            }
+
+            return rows.get(row)[index];
+
+        }
+
+    }
+
+}
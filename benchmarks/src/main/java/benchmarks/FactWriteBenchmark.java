@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+
+    The FactWriteBenchmark class measures the write path of the fact table: the FactWriter class
+    batching and committing the joined rows, with the round trips to the stand-in database taking
+    the given latency, either as INSERT batches or as bulk loads from in-memory streams.
+
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class FactWriteBenchmark
+
+{
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"100", "500", "2000"})
+    public int factBatchSize;
+
+    @Param({"2000"})
+    public int factCommitSize;
+
+    @Param({"0", "200"})
+    public int latencyMicros;
+
+    @Param({"INSERT", "BULK"})
+    public String loadMode;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+
+    {
+
+        fixture=new FixtureBuilder("FactWriteFixture").parametersOf(this).build();
+
+    }
+
+    @Benchmark
+    public long write() throws Exception
+
+    {
+
+        return fixture.run();
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+
+    {
+
+        fixture.tearDown();
+
+    }
+
+}
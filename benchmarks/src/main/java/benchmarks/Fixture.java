@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.util.Map;
+
+/*
+
+    The Fixture interface is the bridge between the JMH benchmarks and the classes of the pipeline.
+    The pipeline lives in the default package, which classes in a named package (as JMH requires
+    for the benchmarks) cannot refer to, so every benchmark drives a fixture of the default package
+    through this interface, loaded by name.
+
+*/
+
+public interface Fixture
+
+{
+
+    //  Function to prepare the fixture with the parameters of the benchmark.
+
+    void setUp(Map<String, String> parameters) throws Exception;
+
+    //  Function to run one operation of the benchmark, returning a result for the blackhole.
+
+    long run() throws Exception;
+
+    //  Function to release what the fixture holds.
+
+    void tearDown() throws Exception;
+
+    //  Function to create a fixture of the default package from its class name.
+
+    static Fixture load(String className) throws ReflectiveOperationException
+
+    {
+
+        BenchmarkDriver.register(); //  Making the stand-in database reachable through the DriverManager class.
+
+        return (Fixture)Class.forName(className).getDeclaredConstructor().newInstance();
+
+    }
+
+}
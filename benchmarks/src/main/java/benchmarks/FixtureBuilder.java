@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Param;
+
+/*
+
+    The FixtureBuilder class sets up the fixture of a benchmark from its JMH parameters: every public
+    field annotated with @Param is handed to the fixture under its own name, so the benchmarks never
+    copy their parameters into the fixture one by one.
+
+*/
+
+public class FixtureBuilder
+
+{
+
+    private final String className;
+    private final Map<String, String> parameters=new HashMap<>();
+
+    //  Constructor function.
+
+    public FixtureBuilder(String className)
+
+    {
+
+        this.className=className;
+
+    }
+
+    //  Function to add the JMH parameters of a benchmark.
+
+    public FixtureBuilder parametersOf(Object benchmark) throws IllegalAccessException
+
+    {
+
+        for(Field field : benchmark.getClass().getFields())
+        {
+            if(field.isAnnotationPresent(Param.class) && !Modifier.isStatic(field.getModifiers()))
+            {
+                parameters.put(field.getName(), String.valueOf(field.get(benchmark)));
+            }
+        }
+
+        return this;
+
+    }
+
+    //  Function to create the fixture and set it up with the parameters.
+
+    public Fixture build() throws Exception
+
+    {
+
+        Fixture fixture=Fixture.load(className);
+        fixture.setUp(parameters);
+
+        return fixture;
+
+    }
+
+}
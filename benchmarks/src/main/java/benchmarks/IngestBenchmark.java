@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+
+    The IngestBenchmark class measures the ingestion path of the StreamGenerator class, from the
+    comma-separated values (CSV) files to the stream buffers: parsing the generated master data and
+    transactions, loading the dimension tables into the stand-in database, and streaming the sorted
+    batches. The batches are drained as they arrive, so the join is left out.
+
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=2)
+@Measurement(iterations=5)
+@Fork(1)
+public class IngestBenchmark
+
+{
+
+    @Param({"10000", "100000"})
+    public int dataSize;
+
+    @Param({"1000"})
+    public int products;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"OPENCSV", "MAPPED"})
+    public String csvParser;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+
+    {
+
+        fixture=new FixtureBuilder("IngestFixture").parametersOf(this).build();
+
+    }
+
+    @Benchmark
+    public long ingest() throws Exception
+
+    {
+
+        return fixture.run();
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+
+    {
+
+        fixture.tearDown();
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+
+    The JoinBenchmark class measures the HybridJoin.processBatchEntries function: joining a batch of
+    transactions with the master data served by the stand-in database, until every tuple of the
+    batch has left the multi-hash table and the fact rows are committed, with or without maintaining
+    the sales cube, and with the master data looked up in the database or in a dimension snapshot.
+
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class JoinBenchmark
+
+{
+
+    @Param({"1000", "10000"})
+    public int batchSize;
+
+    @Param({"100", "10000"})
+    public int products;
+
+    @Param({"RANGE", "LIST_PREFETCH"})
+    public String partitionStrategy;
+
+    @Param({"0", "4096"})
+    public int masterCacheCapacity;
+
+    @Param({"0"})
+    public int latencyMicros;
+
+    @Param({"false", "true"})
+    public boolean salesCube;
+
+    @Param({"false", "true"})
+    public boolean dimensionSnapshots;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+
+    {
+
+        fixture=new FixtureBuilder("JoinFixture").parametersOf(this).build();
+
+    }
+
+    @Benchmark
+    public long processBatchEntries() throws Exception
+
+    {
+
+        return fixture.run();
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+
+    {
+
+        fixture.tearDown();
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+
+    The SortBatchBenchmark class measures the StreamGenerator.processBatch function: sorting a batch
+    by the product identifier and splitting it into the sub-batches of the HybridJoin workers.
+
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class SortBatchBenchmark
+
+{
+
+    @Param({"1000", "10000", "100000"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    @Param({"100", "100000"})
+    public int products;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+
+    {
+
+        fixture=new FixtureBuilder("SortBatchFixture").parametersOf(this).build();
+
+    }
+
+    @Benchmark
+    public long processBatch() throws Exception
+
+    {
+
+        return fixture.run();
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+
+    {
+
+        fixture.tearDown();
+
+    }
+
+}
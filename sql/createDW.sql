@@ -72,6 +72,10 @@ CREATE TABLE Time_Dimension (
     productID INT
 );
 
+--  Creating an index on the join column of the `Time_Dimension` table for the HYBRIDJOIN algorithm.
+
+CREATE INDEX Time_Product_Index ON Time_Dimension(productID);
+
 /*  Creating a trigger to convert the order date from a string to a date
     value on insertion. The trigger also extracts the hour, minute, day, year,
     quarter, and month from the date value. */
@@ -108,6 +112,10 @@ CREATE TABLE Store_Dimension (
     productID INT
 );
 
+--  Creating an index on the join column of the `Store_Dimension` table for the HYBRIDJOIN algorithm.
+
+CREATE INDEX Store_Product_Index ON Store_Dimension(productID);
+
 --  Creating the `Sales_Fact` table to store the aggregated sales information.
 
 DROP TABLE IF EXISTS Sales_Fact;
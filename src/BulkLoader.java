@@ -0,0 +1,285 @@
+import com.mysql.cj.jdbc.JdbcStatement;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+
+    The BulkLoader class prepares the statements the tables of the data warehouse are loaded with,
+    by the dimension loaders of the StreamGenerator class and by the FactWriter class. Two modes are
+    available:
+
+    - INSERT: the idempotent INSERT statement of the table, sent as JDBC batches.
+    - BULK: a statement with the same setters and batch functions, which formats the rows of the
+      batch as tab-separated values in memory and sends them to the server with a single
+      `LOAD DATA LOCAL INFILE` statement, through the input stream of the Connector/J statement, so
+      no file is written on either side and the server parses the whole batch at once.
+
+    A bulk load skips the rows whose key already exists (IGNORE) instead of updating them, as
+    REPLACE would delete the dimension rows referenced by the foreign keys. The rows written again
+    after a resume hold the same values, so the result is the same as with the INSERT mode. The
+    triggers of the tables run for the loaded rows as they do for the inserted ones.
+
+    With deferred checks, the unique and foreign key checks of the session are turned off for every
+    load and turned back on after it, so the server neither looks up the parent row of every foreign
+    key nor checks the secondary unique indexes row by row. The rows violating the constraints are
+    then kept, so this is only meant for the initial loads and backfills of trusted files.
+
+    The server must allow the local infiles (`local_infile=ON`), and the ConnectionPool class opens
+    its connections with `allowLoadLocalInfile` in the bulk mode.
+
+*/
+
+public class BulkLoader
+
+{
+
+    //  Modes of loading the rows into the tables.
+
+    public enum LoadMode
+    {
+        INSERT,
+        BULK
+    }
+
+    private final LoadMode loadMode;
+    private final boolean deferChecks;  //  Turning the unique and foreign key checks off during the bulk loads.
+
+    //  Constructor function.
+
+    public BulkLoader(LoadMode loadMode, boolean deferChecks)
+
+    {
+
+        this.loadMode=loadMode;
+        this.deferChecks=deferChecks;
+
+    }
+
+    /*  Function to prepare the statement loading rows into the given columns of a table, the first
+        `keyColumns` of which are its key. Its rows are set, batched and sent as with any prepared
+        statement, whatever the mode. */
+
+    public PreparedStatement prepare(Connection connection, String tableName, String[] columns, int keyColumns) throws SQLException
+
+    {
+
+        if(loadMode==LoadMode.INSERT)
+        {
+            return connection.prepareStatement(upsertStatement(tableName, columns, keyColumns));
+        }
+
+        return (PreparedStatement)Proxy.newProxyInstance(BulkLoader.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new BulkLoadHandler(connection, tableName, columns));
+
+    }
+
+    /*  Function to build an idempotent insert into a table: a row whose key (the first `keyColumns`
+        columns) already exists is updated with the new values instead of failing, so the rows
+        written again after a resume overwrite the ones already committed. */
+
+    private static String upsertStatement(String tableName, String[] columns, int keyColumns)
+
+    {
+
+        List<String> updates=new ArrayList<>();
+        for(int i=keyColumns; i<columns.length; i++)
+        {
+            updates.add(columns[i]+"=VALUES("+columns[i]+")");
+        }
+        if(updates.isEmpty())
+        {
+            updates.add(columns[0]+"="+columns[0]); //  Keeping the existing row, as every column is part of the key.
+        }
+
+        return "INSERT INTO "+tableName+"("+String.join(",", columns)+") VALUES ("+String.join(", ", Collections.nCopies(columns.length, "?"))+") "+
+            "ON DUPLICATE KEY UPDATE "+String.join(", ", updates);
+
+    }
+
+    //  Class to buffer the rows of a batch as tab-separated values and load them with a single statement.
+
+    private class BulkLoadHandler implements InvocationHandler
+
+    {
+
+        private final Connection connection;
+        private final String sql;
+        private final Object[] values; //  Values of the row being set, by column.
+        private final StringBuilder rows=new StringBuilder();   //  Rows of the current batch, as tab-separated values.
+        private int batchedRows;
+        private boolean closed;
+
+        //  Constructor function.
+
+        public BulkLoadHandler(Connection connection, String tableName, String[] columns)
+
+        {
+
+            this.connection=connection;
+            this.sql="LOAD DATA LOCAL INFILE 'stream' IGNORE INTO TABLE "+tableName+" CHARACTER SET utf8mb4 "+
+                "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("+String.join(",", columns)+")";
+            this.values=new Object[columns.length];
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+
+        {
+
+            String name=method.getName();
+            if(name.startsWith("set") && args!=null && args.length>=2 && args[0] instanceof Integer)  //  Setting a parameter of the row.
+            {
+                values[(Integer)args[0]-1]=name.equals("setNull") ? null : args[1];
+                return null;
+            }
+            switch(name)
+            {
+                case "addBatch":
+                    appendRow();
+                    return null;
+                case "executeBatch":
+                    int[] counts=new int[batchedRows];
+                    Arrays.fill(counts, Statement.SUCCESS_NO_INFO); //  The load only reports the total number of rows.
+                    load();
+                    return counts;
+                case "clearBatch":
+                    rows.setLength(0);
+                    batchedRows=0;
+                    return null;
+                case "clearParameters":
+                    Arrays.fill(values, null);
+                    return null;
+                case "close":
+                    closed=true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connection;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy==args[0];
+                case "toString":
+                    return sql;
+                default:
+                    throw new SQLFeatureNotSupportedException("The "+name+" function is not supported by the bulk load statements.");
+            }
+
+        }
+
+        //  Function to add the row being set to the batch.
+
+        private void appendRow()
+
+        {
+
+            for(int i=0; i<values.length; i++)
+            {
+                if(i>0)
+                {
+                    rows.append('\t');
+                }
+                Object value=values[i];
+                if(value==null)
+                {
+                    rows.append("\\N");
+                }
+                else if(value instanceof BigDecimal)
+                {
+                    rows.append(((BigDecimal)value).toPlainString());
+                }
+                else if(value instanceof String)
+                {
+                    appendEscaped((String)value);
+                }
+                else
+                {
+                    rows.append(value);
+                }
+            }
+            rows.append('\n');
+            batchedRows++;
+
+        }
+
+        //  Function to add a string value, escaping the characters that would end the field or the row.
+
+        private void appendEscaped(String value)
+
+        {
+
+            for(int i=0; i<value.length(); i++)
+            {
+                char character=value.charAt(i);
+                switch(character)
+                {
+                    case '\\':
+                        rows.append("\\\\");
+                        break;
+                    case '\t':
+                        rows.append("\\t");
+                        break;
+                    case '\n':
+                        rows.append("\\n");
+                        break;
+                    case '\r':
+                        rows.append("\\r");
+                        break;
+                    case '\0':
+                        rows.append("\\0");
+                        break;
+                    default:
+                        rows.append(character);
+                }
+            }
+
+        }
+
+        //  Function to send the batch to the server as a single load, returning the number of rows loaded.
+
+        private int load() throws SQLException
+
+        {
+
+            if(batchedRows==0)
+            {
+                return 0;
+            }
+            byte[] data=rows.toString().getBytes(StandardCharsets.UTF_8);
+            rows.setLength(0);
+            batchedRows=0;
+            try(Statement statement=connection.createStatement())
+            {
+                if(deferChecks)
+                {
+                    statement.execute("SET unique_checks=0, foreign_key_checks=0");
+                }
+                try
+                {
+                    statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(data));  //  Streaming the rows from memory instead of a file.
+                    return statement.executeUpdate(sql);
+                }
+                finally
+                {
+                    if(deferChecks)
+                    {
+                        statement.execute("SET unique_checks=1, foreign_key_checks=1");
+                    }
+                }
+            }
+
+        }
+
+    }
+
+}
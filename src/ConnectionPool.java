@@ -0,0 +1,467 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+    The ConnectionPool class is the access layer to the MySQL server shared by the StreamGenerator
+    and HybridJoin classes. It keeps a bounded number of physical connections and hands them out as
+    pooled connections: closing a pooled connection returns its physical connection to the pool
+    instead of closing it. A connection that has been idle for a while is checked before being handed
+    out again, and replaced if the server has dropped it.
+
+    Every physical connection also keeps a cache of prepared statements keyed by their SQL text, so
+    preparing the same query again (for every partition, chunk or batch) reuses the statement that
+    is already prepared. Closing a cached statement only clears its parameters and batch, and returns
+    it to the cache. The cache is bounded: when it is full, the least recently used statement is
+    evicted, and closed at once if it is idle, or only once its borrower closes it otherwise, so a
+    long-lived statement (such as the insert statements of the FactWriter class) is never closed
+    under its borrower. A statement already borrowed is never handed out twice: preparing the same
+    query again meanwhile returns an uncached statement. A pooled connection is used by a single
+    thread at a time, so the cached statements are never shared between threads.
+
+*/
+
+public class ConnectionPool implements AutoCloseable
+
+{
+
+    private static final long VALIDATION_INTERVAL=30_000;   //  Idle time after which a connection is checked before being handed out (milliseconds).
+    private static final int VALIDATION_TIMEOUT=2;  //  Time allowed to the server to answer the check (seconds).
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final int poolSize;
+    private final int statementCacheSize;
+    private final long borrowTimeout;
+    private final BlockingQueue<PhysicalConnection> idleConnections;
+    private int openConnections;
+    private boolean closed;
+
+    //  Class to store a physical connection with its prepared statement cache.
+
+    private class PhysicalConnection
+
+    {
+
+        public final Connection connection;
+        public final LinkedHashMap<String, CachedStatement> statementCache;
+        public long lastUsed;
+
+        //  Constructor function.
+
+        public PhysicalConnection(Connection connection)
+
+        {
+
+            this.connection=connection;
+            this.statementCache=new LinkedHashMap<String, CachedStatement>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+                {
+                    if(size()<=statementCacheSize)
+                    {
+                        return false;
+                    }
+                    CachedStatement cachedStatement=eldest.getValue();
+                    cachedStatement.evicted=true;
+                    if(!cachedStatement.borrowed)   //  Closing the least recently used statement, unless its borrower still holds it.
+                    {
+                        closeQuietly(cachedStatement.statement);
+                    }
+                    return true;
+                }
+            };
+            this.lastUsed=System.currentTimeMillis();
+
+        }
+
+    }
+
+    //  Class to store a prepared statement of the cache with the state of its borrowing.
+
+    private static class CachedStatement
+
+    {
+
+        public final PreparedStatement statement;
+        public boolean borrowed;    //  Held by a borrower, which has not closed it yet.
+        public boolean evicted; //  Removed from the cache, so closed once it is no longer borrowed.
+
+        //  Constructor function.
+
+        public CachedStatement(PreparedStatement statement)
+
+        {
+
+            this.statement=statement;
+
+        }
+
+    }
+
+    //  Constructor function.
+
+    public ConnectionPool(PipelineConfig config)
+
+    {
+
+        this.url=config.getString("database.url", "jdbc:mysql://localhost:3306/Electronica_DW");
+        this.connectionProperties=new Properties();
+        connectionProperties.setProperty("user", config.getString("database.user", "root"));
+        connectionProperties.setProperty("password", config.getString("database.password", "password"));
+        connectionProperties.setProperty("rewriteBatchedStatements", String.valueOf(config.getBoolean("database.rewriteBatchedStatements", true)));
+        connectionProperties.setProperty("useServerPrepStmts", String.valueOf(config.getBoolean("database.useServerPrepStmts", false)));
+        boolean bulkLoad=config.getEnum("loadMode", BulkLoader.LoadMode.class, BulkLoader.LoadMode.INSERT)==BulkLoader.LoadMode.BULK;
+        connectionProperties.setProperty("allowLoadLocalInfile", String.valueOf(config.getBoolean("database.allowLoadLocalInfile", bulkLoad)));   //  Letting the bulk loads stream their rows to the server.
+        this.poolSize=Math.max(1, config.getInt("database.poolSize", 64));
+        this.statementCacheSize=Math.max(0, config.getInt("database.statementCacheSize", 64));
+        this.borrowTimeout=config.getLong("database.borrowTimeout", 30_000);
+        this.idleConnections=new ArrayBlockingQueue<>(poolSize);
+
+    }
+
+    //  Function to borrow a connection, waiting for one to be returned if the pool is exhausted.
+
+    public Connection getConnection() throws SQLException
+
+    {
+
+        PhysicalConnection physicalConnection=idleConnections.poll();
+        if(physicalConnection==null)
+        {
+            physicalConnection=openIfAllowed();
+        }
+        if(physicalConnection==null)
+        {
+            try
+            {
+                physicalConnection=idleConnections.poll(borrowTimeout, TimeUnit.MILLISECONDS);
+            }
+            catch(InterruptedException Error)
+            {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection.", Error);
+            }
+            if(physicalConnection==null)
+            {
+                throw new SQLException("No connection returned to the pool within "+borrowTimeout+" ms ("+poolSize+" connection(s) in use).");
+            }
+        }
+        physicalConnection=validate(physicalConnection);
+
+        return (Connection)Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, new PooledConnectionHandler(physicalConnection));
+
+    }
+
+    //  Function to open a new physical connection if the pool has not reached its size, or return null otherwise.
+
+    private PhysicalConnection openIfAllowed() throws SQLException
+
+    {
+
+        synchronized(this)
+        {
+            if(closed)
+            {
+                throw new SQLException("The connection pool has been closed.");
+            }
+            if(openConnections>=poolSize)
+            {
+                return null;
+            }
+            openConnections++;
+        }
+        try
+        {
+            return new PhysicalConnection(DriverManager.getConnection(url, connectionProperties));
+        }
+        catch(SQLException Error)
+        {
+            synchronized(this)
+            {
+                openConnections--;
+            }
+            throw Error;
+        }
+
+    }
+
+    //  Function to check a connection that has been idle for a while, replacing it if the server has dropped it.
+
+    private PhysicalConnection validate(PhysicalConnection physicalConnection) throws SQLException
+
+    {
+
+        if(System.currentTimeMillis()-physicalConnection.lastUsed<VALIDATION_INTERVAL)
+        {
+            return physicalConnection;
+        }
+        if(physicalConnection.connection.isValid(VALIDATION_TIMEOUT))
+        {
+            return physicalConnection;
+        }
+        discard(physicalConnection);
+        PhysicalConnection replacement=openIfAllowed();
+        if(replacement==null)
+        {
+            throw new SQLException("Unable to replace a dropped connection.");
+        }
+
+        return replacement;
+
+    }
+
+    //  Function to take a connection back, resetting the state left by the borrower.
+
+    private void release(PhysicalConnection physicalConnection)
+
+    {
+
+        try
+        {
+            if(physicalConnection.connection.isClosed())
+            {
+                discard(physicalConnection);
+                return;
+            }
+            if(!physicalConnection.connection.getAutoCommit())
+            {
+                physicalConnection.connection.rollback();   //  Discarding the work left uncommitted by the borrower.
+                physicalConnection.connection.setAutoCommit(true);
+            }
+        }
+        catch(SQLException Error)
+        {
+            discard(physicalConnection);
+            return;
+        }
+        physicalConnection.lastUsed=System.currentTimeMillis();
+        synchronized(this)
+        {
+            if(!closed)
+            {
+                idleConnections.offer(physicalConnection);
+                return;
+            }
+        }
+        discard(physicalConnection);
+
+    }
+
+    //  Function to close a physical connection and free its place in the pool.
+
+    private void discard(PhysicalConnection physicalConnection)
+
+    {
+
+        for(CachedStatement cachedStatement : physicalConnection.statementCache.values())
+        {
+            closeQuietly(cachedStatement.statement);
+        }
+        physicalConnection.statementCache.clear();
+        try
+        {
+            physicalConnection.connection.close();
+        }
+        catch(SQLException Error)
+        {
+            Error.printStackTrace();
+        }
+        synchronized(this)
+        {
+            openConnections--;
+        }
+
+    }
+
+    //  Function to close a statement, ignoring any error.
+
+    private static void closeQuietly(Statement statement)
+
+    {
+
+        try
+        {
+            statement.close();
+        }
+        catch(SQLException Error)
+        {
+            //  Ignoring the error, as the statement is being discarded anyway.
+        }
+
+    }
+
+    //  Function to close the idle connections and the connections returned from now on.
+
+    @Override
+    public void close()
+
+    {
+
+        synchronized(this)
+        {
+            closed=true;
+        }
+        PhysicalConnection physicalConnection;
+        while((physicalConnection=idleConnections.poll())!=null)
+        {
+            discard(physicalConnection);
+        }
+
+    }
+
+    //  Class to intercept the calls to a pooled connection.
+
+    private class PooledConnectionHandler implements InvocationHandler
+
+    {
+
+        private final PhysicalConnection physicalConnection;
+        private boolean released;
+
+        //  Constructor function.
+
+        public PooledConnectionHandler(PhysicalConnection physicalConnection)
+
+        {
+
+            this.physicalConnection=physicalConnection;
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+
+        {
+
+            String name=method.getName();
+            if(name.equals("close"))    //  Returning the connection to the pool instead of closing it.
+            {
+                if(!released)
+                {
+                    released=true;
+                    release(physicalConnection);
+                }
+                return null;
+            }
+            if(name.equals("isClosed"))
+            {
+                return released || physicalConnection.connection.isClosed();
+            }
+            if(released)
+            {
+                throw new SQLException("The connection has been returned to the pool.");
+            }
+            if(name.equals("prepareStatement") && args!=null && args.length==1 && statementCacheSize>0)
+            {
+                return prepareCached((String)args[0]);
+            }
+            try
+            {
+                return method.invoke(physicalConnection.connection, args);
+            }
+            catch(InvocationTargetException Error)
+            {
+                throw Error.getCause();
+            }
+
+        }
+
+        /*  Function to return the cached statement for the query, preparing it on first use, or an
+            uncached statement if the cached one is still borrowed. */
+
+        private PreparedStatement prepareCached(String sql) throws SQLException
+
+        {
+
+            CachedStatement cachedStatement=physicalConnection.statementCache.get(sql);
+            if(cachedStatement!=null && cachedStatement.borrowed)
+            {
+                return physicalConnection.connection.prepareStatement(sql); //  Never sharing a statement between two borrowers.
+            }
+            if(cachedStatement==null || cachedStatement.statement.isClosed())
+            {
+                cachedStatement=new CachedStatement(physicalConnection.connection.prepareStatement(sql));
+                physicalConnection.statementCache.put(sql, cachedStatement);
+            }
+            cachedStatement.borrowed=true;
+
+            return (PreparedStatement)Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new CachedStatementHandler(cachedStatement));
+
+        }
+
+    }
+
+    //  Class to intercept the calls to a borrowed cached statement.
+
+    private static class CachedStatementHandler implements InvocationHandler
+
+    {
+
+        private final CachedStatement cachedStatement;
+        private boolean returned;
+
+        //  Constructor function.
+
+        public CachedStatementHandler(CachedStatement cachedStatement)
+
+        {
+
+            this.cachedStatement=cachedStatement;
+
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+
+        {
+
+            String name=method.getName();
+            if(name.equals("close"))    //  Returning the statement to the cache, or closing it if it has been evicted meanwhile.
+            {
+                if(!returned)
+                {
+                    returned=true;
+                    cachedStatement.borrowed=false;
+                    if(cachedStatement.evicted)
+                    {
+                        closeQuietly(cachedStatement.statement);
+                    }
+                    else
+                    {
+                        cachedStatement.statement.clearBatch();
+                        cachedStatement.statement.clearParameters();
+                    }
+                }
+                return null;
+            }
+            if(name.equals("isClosed"))
+            {
+                return returned || cachedStatement.statement.isClosed();
+            }
+            if(returned)
+            {
+                throw new SQLException("The statement has been returned to the cache.");
+            }
+            try
+            {
+                return method.invoke(cachedStatement.statement, args);
+            }
+            catch(InvocationTargetException Error)
+            {
+                throw Error.getCause();
+            }
+
+        }
+
+    }
+
+}
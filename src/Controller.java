@@ -1,3 +1,8 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
 /*
 
     The Controller class is responsible to monitor the stream arrival rate and service rate.
@@ -5,15 +10,64 @@
     It will ensure that the HYBRIDJOIN algorithm should not be underload and there should
     not be an unnecessary backlog in the stream buffer.
 
+    The control loop samples the number of tuples produced by the StreamGenerator class and
+    joined by the HybridJoin class, and adjusts a target arrival rate using additive increase
+    and multiplicative decrease (AIMD): the rate grows additively while the backlog is below
+    the low watermark, and is cut multiplicatively (never below the measured service rate)
+    once the backlog exceeds the high watermark. The target rate is then translated into the
+    batch size and batch speed of the StreamGenerator class.
+
     This class also implements multi-threading to ensure that the StreamGenerator and
     HybridJoin classes are running in parallel.
 
 */
 
-public class Controller
+public class Controller implements Runnable
 
 {
 
+    private static final long SAMPLE_INTERVAL=500;  //  Interval between two samples of the control loop (milliseconds).
+    private static final long TARGET_BATCH_INTERVAL=50; //  Preferred delay between two batches once the rate allows it (milliseconds).
+    private static final double ADDITIVE_INCREASE=500.0;    //  Increase of the target rate per underloaded sample (tuples/second).
+    private static final double MULTIPLICATIVE_DECREASE=0.5;    //  Factor applied to the target rate per overloaded sample.
+    private static final int MINIMUM_BATCH_SIZE=10;
+    private static final int MAXIMUM_BATCH_SIZE=5000;
+    private static final double MINIMUM_RATE=10.0;
+
+    private final StreamGenerator streamGenerator;
+    private final List<HybridJoin> hybridJoins;
+    private final long backlogLowWatermark;
+    private final long backlogHighWatermark;
+    private final ResultReporter resultReporter;
+    private volatile double targetRate;
+    private volatile double arrivalRate;    //  Arrival rate measured at the last sample (tuples/second).
+    private volatile double serviceRate;    //  Service rate measured at the last sample (tuples/second).
+    private volatile boolean running=true;
+
+    //  Constructor function.
+
+    public Controller(StreamGenerator streamGenerator, List<HybridJoin> hybridJoins, long backlogLowWatermark, long backlogHighWatermark, ResultReporter resultReporter, PipelineMetrics pipelineMetrics)
+
+    {
+
+        this.streamGenerator=streamGenerator;
+        this.hybridJoins=hybridJoins;
+        this.backlogLowWatermark=backlogLowWatermark;
+        this.backlogHighWatermark=backlogHighWatermark;
+        this.resultReporter=resultReporter;
+        this.targetRate=Math.max(MINIMUM_RATE, streamGenerator.getBatchSize()*1000.0/Math.max(1, streamGenerator.getBatchSpeed()));
+
+        //  Exposing the rates of the control loop.
+
+        pipelineMetrics.gauge("arrivalRate", ()->arrivalRate);
+        pipelineMetrics.gauge("serviceRate", ()->serviceRate);
+        pipelineMetrics.gauge("targetRate", ()->targetRate);
+        pipelineMetrics.gauge("backlog", ()->streamGenerator.getProducedTuples()-getJoinedTuples());
+        pipelineMetrics.gauge("batchSize", streamGenerator::getBatchSize);
+        pipelineMetrics.gauge("batchSpeed", streamGenerator::getBatchSpeed);
+
+    }
+
     //  Driver function.
 
     public static void main(String[] args)
@@ -22,28 +76,256 @@ public class Controller
 
         try
         {
-            int batchSize=10;   //  Size of the batch for processing.
-            int batchSpeed=1000;    //  Speed of the batch processing (delay).
+            PipelineConfig config=new PipelineConfig(args);    //  Reading the settings from the properties file and the command line.
+            int batchSize=config.getInt("batchSize", 10);   //  Size of the batch for processing.
+            int batchSpeed=config.getInt("batchSpeed", 1000);    //  Speed of the batch processing (delay).
+            int hashTableCapacity=config.getInt("hashTableCapacity", 1000); //  Maximum number of stream tuples waiting in the multi-hash table.
+            int partitionSize=config.getInt("partitionSize", 10);   //  Number of master data tuples loaded into the disk buffer per iteration.
+            HybridJoin.PartitionStrategy partitionStrategy=config.getEnum("partitionStrategy", HybridJoin.PartitionStrategy.class, HybridJoin.PartitionStrategy.LIST_PREFETCH);  //  Strategy to load the master data into the disk buffer.
+            int masterCacheCapacity=config.getInt("masterCacheCapacity", 4096);   //  Maximum number of products whose master data is cached by the HybridJoin class.
+            int factBatchSize=config.getInt("factBatchSize", 500);  //  Number of fact rows sent to the server per JDBC batch.
+            int factCommitSize=config.getInt("factCommitSize", 2000);    //  Number of fact rows committed per transaction.
+            boolean directJoin=config.getBoolean("directJoin", true);    //  Streaming the parsed transactions straight to the HybridJoin class instead of reading them back from the database.
+            boolean clientSideTransform=config.getBoolean("clientSideTransform", false);  //  Transforming the prices, dates and total sales in Java instead of the database triggers.
+            StreamGenerator.CsvParser csvParser=config.getEnum("csvParser", StreamGenerator.CsvParser.class, StreamGenerator.CsvParser.OPENCSV);  //  Parser used for the comma-separated values (CSV) files.
+            int parserThreads=config.getInt("parserThreads", Runtime.getRuntime().availableProcessors());  //  Number of threads parsing a memory-mapped file in parallel.
+            String followPath=config.getString("followPath", null);    //  Transactions file or directory to follow for appended rows (e.g. "data/transactions.csv"), or null to read it once.
+            int joinWorkers=Math.max(1, config.getInt("joinWorkers", 1));  //  Number of HybridJoin workers the stream is partitioned across by productID (more than one to join in parallel).
+            PipelineExecutor.ThreadMode threadMode=config.getEnum("threadMode", PipelineExecutor.ThreadMode.class, PipelineExecutor.ThreadMode.PLATFORM);   //  Running the stages and database tasks on platform or virtual threads.
+            int databaseConcurrency=config.getInt("databaseConcurrency", 32); //  Maximum number of concurrent database round trips.
+            int bufferCapacity=config.getInt("bufferCapacity", 64);  //  Maximum number of batches waiting in the stream buffer.
+            StreamBuffer.OverflowPolicy overflowPolicy=config.getEnum("overflowPolicy", StreamBuffer.OverflowPolicy.class, StreamBuffer.OverflowPolicy.BLOCK);   //  Policy applied when the stream buffer is full.
+            long backlogLowWatermark=config.getLong("backlogLowWatermark", (long)joinWorkers*hashTableCapacity);   //  Backlog below which the HYBRIDJOIN algorithm is considered underloaded.
+            long backlogHighWatermark=config.getLong("backlogHighWatermark", 4L*joinWorkers*hashTableCapacity); //  Backlog above which the stream is throttled.
+            ResultReporter.Verbosity reportVerbosity=config.getEnum("reportVerbosity", ResultReporter.Verbosity.class, ResultReporter.Verbosity.SAMPLED);  //  What the reporter prints: nothing, summaries, sampled rows or every row.
+            int reportSampleRate=config.getInt("reportSampleRate", 1000);  //  One committed row out of this many is printed in the sampled verbosity.
+            long reportInterval=config.getLong("reportInterval", 5000);   //  Interval between two throughput summaries (milliseconds).
+            int reportBufferCapacity=config.getInt("reportBufferCapacity", 8192);  //  Maximum number of committed rows waiting to be printed.
+            String metricsLogPath=config.getString("metricsLogPath", null); //  File the pipeline metrics are appended to (e.g. "metrics.log"), or null to expose them over JMX only.
+            long metricsLogInterval=config.getLong("metricsLogInterval", 10000);  //  Interval between two dumps of the pipeline metrics (milliseconds).
+            boolean salesCubeEnabled=config.getBoolean("salesCube", false);  //  Maintaining the in-memory aggregates of the analytical reports while joining.
+            String checkpointPath=config.getString("checkpointPath", "");  //  File the position of the stream is checkpointed to in the direct join mode (e.g. "checkpoint.properties"), or empty to disable the checkpoints.
+            long checkpointInterval=config.getLong("checkpointInterval", 1000);   //  Minimum interval between two saves of the checkpoint (milliseconds).
+            boolean resume=config.getBoolean("resume", false);  //  Resuming the stream from the last checkpoint instead of starting over.
+            BulkLoader.LoadMode loadMode=config.getEnum("loadMode", BulkLoader.LoadMode.class, BulkLoader.LoadMode.INSERT);  //  Loading the rows with batched INSERT statements or with LOAD DATA LOCAL INFILE.
+            boolean deferChecks=config.getBoolean("deferChecks", false);    //  Turning the unique and foreign key checks off during the bulk loads.
+            boolean dimensionSnapshots=config.getBoolean("dimensionSnapshots", false);  //  Looking the master data up in in-memory snapshots instead of the database, in the direct join mode.
+            String masterDataUpdatesPath=config.getString("masterDataUpdatesPath", null);  //  File of master data changes applied to the snapshots while joining (e.g. "data/master_data_updates.csv"), or null.
+            long masterDataUpdateInterval=config.getLong("masterDataUpdateInterval", 1000);  //  Interval between two checks of the file of master data changes (milliseconds).
+            boolean synthetic=config.getBoolean("synthetic", false);    //  Generating the transactions (and optionally the master data) instead of reading the files.
+            if(synthetic && followPath!=null)
+            {
+                System.out.println("- The synthetic stream replaces the transactions file; ignoring the followPath.");
+                followPath=null;
+            }
             
-            //  Creating instances of the StreamGenerator and HybridJoin classes.
+            //  Creating the executor running the stages of the pipeline and the pool of connections they share.
+
+            PipelineExecutor pipelineExecutor=new PipelineExecutor(threadMode, databaseConcurrency);
+            ConnectionPool connectionPool=new ConnectionPool(config);
+            CountDownLatch masterDataLoaded=new CountDownLatch(1);  //  Letting the HybridJoin workers wait for the master data while the stream starts.
+            ResultReporter resultReporter=new ResultReporter(reportVerbosity, reportSampleRate, reportInterval, reportBufferCapacity);
+            PipelineMetrics pipelineMetrics=new PipelineMetrics(metricsLogPath, metricsLogInterval);
+            SalesCube salesCube=salesCubeEnabled ? new SalesCube() : null;
+            BulkLoader bulkLoader=new BulkLoader(loadMode, deferChecks);
+            SyntheticStream syntheticStream=synthetic ? new SyntheticStream(config) : null;
+            DimensionUpdater dimensionUpdater=dimensionSnapshots && directJoin
+                ? new DimensionUpdater(masterDataUpdatesPath, masterDataUpdateInterval, pipelineExecutor, connectionPool, masterDataLoaded, salesCube)
+                : null; //  Snapshotting the product prices and stores only, as the two-pass join reads the orders back from the `Time_Dimension` table.
+            if(dimensionSnapshots && dimensionUpdater==null)
+            {
+                System.out.println("- The dimension snapshots require the direct join mode; reading the master data from the database.");
+            }
+            StreamCheckpoint streamCheckpoint=!checkpointPath.isEmpty() && directJoin && followPath==null && syntheticStream==null
+                ? new StreamCheckpoint(checkpointPath, checkpointInterval)
+                : null; //  Checkpointing the transactions file only, whose Time_IDs follow from the position in the stream.
+            if(streamCheckpoint!=null && resume && !streamCheckpoint.load())
+            {
+                System.out.println("- No checkpoint found in "+checkpointPath+", starting from the beginning of the stream.");
+            }
+            else if(streamCheckpoint==null && resume)
+            {
+                System.out.println("- Resuming requires the direct join mode, a checkpointPath, no followPath and no synthetic stream; starting from the beginning of the stream.");
+            }
+            if(streamCheckpoint!=null && csvParser==StreamGenerator.CsvParser.MAPPED && parserThreads>1)
+            {
+                System.out.println("- The checkpoints follow the order of the transactions file; parsing it with a single thread.");
+                parserThreads=1;    //  Keeping the chunks in file order, as the parallel ranges are handed over in any order.
+            }
+
+            //  Collecting what the stages of the pipeline share.
+
+            PipelineContext pipelineContext=new PipelineContext(pipelineExecutor, connectionPool, bulkLoader, masterDataLoaded, resultReporter, pipelineMetrics);
+            pipelineContext.salesCube=salesCube;
+            pipelineContext.streamCheckpoint=streamCheckpoint;
+            pipelineContext.dimensionUpdater=dimensionUpdater;
+
+            //  Creating one stream buffer and one instance of the HybridJoin class per join worker.
+
+            HybridJoin.Options joinOptions=new HybridJoin.Options();
+            joinOptions.hashTableCapacity=hashTableCapacity;
+            joinOptions.partitionSize=partitionSize;
+            joinOptions.factBatchSize=factBatchSize;
+            joinOptions.factCommitSize=factCommitSize;
+            joinOptions.directJoin=directJoin;
+            joinOptions.clientSideTransform=clientSideTransform;
+            joinOptions.partitionStrategy=partitionStrategy;
+            joinOptions.cacheCapacity=masterCacheCapacity;
+            List<StreamBuffer<StreamBatch>> streamBuffers=new ArrayList<>();
+            List<HybridJoin> hybridJoins=new ArrayList<>();
+            for(int i=0; i<joinWorkers; i++)
+            {
+                StreamBuffer<StreamBatch> streamBuffer=new StreamBuffer<>(bufferCapacity, overflowPolicy);
+                streamBuffers.add(streamBuffer);
+                hybridJoins.add(new HybridJoin(streamBuffer, joinOptions, pipelineContext));
+            }
+
+            //  Creating instances of the StreamGenerator and Controller classes.
             
-            HybridJoin hybridJoin=new HybridJoin();
-            StreamGenerator streamGenerator=new StreamGenerator(hybridJoin, batchSize, batchSpeed);
+            StreamGenerator.Options streamOptions=new StreamGenerator.Options();
+            streamOptions.batchSize=batchSize;
+            streamOptions.batchSpeed=batchSpeed;
+            streamOptions.clientSideTransform=clientSideTransform;
+            streamOptions.csvParser=csvParser;
+            streamOptions.parserThreads=parserThreads;
+            streamOptions.followPath=followPath;
+            streamOptions.directJoin=directJoin;
+            streamOptions.resume=resume;
+            streamOptions.syntheticStream=syntheticStream;
+            StreamGenerator streamGenerator=new StreamGenerator(streamBuffers, streamOptions, pipelineContext);
+            Controller controller=new Controller(streamGenerator, hybridJoins, backlogLowWatermark, backlogHighWatermark, resultReporter, pipelineMetrics);
+
+            //  Exposing the state of the stream buffers and the HybridJoin workers.
 
-            //  Creating threads for the StreamGenerator and HybridJoin classes.
+            pipelineMetrics.gauge("streamBufferDepth", ()->{
+                int depth=0;
+                for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+                {
+                    depth+=streamBuffer.size();
+                }
+                return depth;
+            });
+            pipelineMetrics.gauge("shedBatches", ()->{
+                long shed=0;
+                for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+                {
+                    shed+=streamBuffer.getShedBatches();
+                }
+                return shed;
+            });
+            pipelineMetrics.gauge("hashTableSize", ()->{
+                int size=0;
+                for(HybridJoin hybridJoin : hybridJoins)
+                {
+                    size+=hybridJoin.getHashTableSize();
+                }
+                return size;
+            });
+            pipelineMetrics.gauge("cacheHitRate", ()->{
+                long hits=0;
+                long lookups=0;
+                for(HybridJoin hybridJoin : hybridJoins)
+                {
+                    MasterDataCache masterDataCache=hybridJoin.getMasterDataCache();
+                    hits+=masterDataCache.getHits();
+                    lookups+=masterDataCache.getHits()+masterDataCache.getMisses();
+                }
+                return lookups==0 ? 0.0 : (double)hits/lookups;
+            });
+            pipelineMetrics.gauge("producedTuples", streamGenerator::getProducedTuples);
+            pipelineMetrics.gauge("joinedTuples", controller::getJoinedTuples);
+            pipelineMetrics.gauge("committedRows", resultReporter::getCommittedRows);
+            if(salesCube!=null)
+            {
+                pipelineMetrics.gauge("salesCubeCells", salesCube::size);
+            }
+            if(streamCheckpoint!=null)
+            {
+                pipelineMetrics.gauge("checkpointPosition", streamCheckpoint::getPosition);
+            }
+            if(dimensionUpdater!=null)
+            {
+                pipelineMetrics.gauge("dimensionSnapshotVersion", ()->dimensionUpdater.current().getVersion());
+            }
 
-            Thread streamGeneratorThread=new Thread(streamGenerator);
-            Thread hybridJoinThread=new Thread(hybridJoin);
+            //  Starting the ResultReporter, StreamGenerator, HybridJoin and Controller classes as stages of the pipeline.
 
-            //  Starting the threads.
+            Future<?> resultReporterStage=pipelineExecutor.start(resultReporter);
+            Future<?> metricsStage=pipelineMetrics.isLogEnabled() ? pipelineExecutor.start(pipelineMetrics) : null;
+            Future<?> streamGeneratorStage=pipelineExecutor.start(streamGenerator);
+            List<Future<?>> hybridJoinStages=new ArrayList<>();
+            for(HybridJoin hybridJoin : hybridJoins)
+            {
+                hybridJoinStages.add(pipelineExecutor.start(hybridJoin));
+            }
+            Future<?> controllerStage=pipelineExecutor.start(controller);
+            Future<?> dimensionUpdaterStage=dimensionUpdater!=null ? pipelineExecutor.start(dimensionUpdater) : null;
 
-            streamGeneratorThread.start();
-            hybridJoinThread.start();
+            //  Stopping the stream and letting the HybridJoin class drain it when the process is terminated.
 
-            //  Waiting for the threads to finish.
+            Thread shutdownHook=new Thread(()->{
+                streamGenerator.stop();
+                try
+                {
+                    streamGeneratorStage.get();
+                    for(Future<?> hybridJoinStage : hybridJoinStages)
+                    {
+                        hybridJoinStage.get();
+                    }
+                    if(streamCheckpoint!=null)
+                    {
+                        streamCheckpoint.save();
+                    }
+                }
+                catch(Exception Error)
+                {
+                    Error.printStackTrace();
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
 
-            streamGeneratorThread.join();
-            hybridJoinThread.join();
+            //  Waiting for the stages to finish.
+
+            streamGeneratorStage.get();
+            for(Future<?> hybridJoinStage : hybridJoinStages)
+            {
+                hybridJoinStage.get();
+            }
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);  //  Leaving the stages already joined alone when the process exits.
+            }
+            catch(IllegalStateException Error)
+            {
+                //  Ignoring the error, as the process is already terminating and the hook drains the same stages.
+            }
+            if(streamCheckpoint!=null)
+            {
+                streamCheckpoint.save();    //  Saving the final position, which the interval may have held back.
+            }
+            controller.stop();
+            controllerStage.get();
+            if(dimensionUpdater!=null)
+            {
+                dimensionUpdater.stop();
+                dimensionUpdaterStage.get();    //  Waiting for the change being applied, if any.
+                System.out.println("- Dimension snapshot: version "+dimensionUpdater.current().getVersion()+", "+dimensionUpdater.current().size()+" product(s)\n");
+            }
+            resultReporter.stop();
+            resultReporterStage.get();  //  Waiting for the rows already published to be printed.
+            if(salesCube!=null && resultReporter.isSummaryEnabled())
+            {
+                printTopWeekendProducts(salesCube);
+            }
+            pipelineMetrics.stop();
+            if(metricsStage!=null)
+            {
+                metricsStage.get(); //  Waiting for the last values to be written.
+            }
+            pipelineMetrics.close();
+            pipelineExecutor.close();
+            connectionPool.close();
+            System.out.println("- Electronica_DW created successfully!");
         }
         catch(Exception Error)
         {
@@ -52,4 +334,118 @@ public class Controller
 
     }
 
+    //  Function to print the most popular products sold over the weekends, answered from the sales cube.
+
+    private static void printTopWeekendProducts(SalesCube salesCube)
+
+    {
+
+        System.out.println("- Top 5 products sold over the weekends ("+salesCube.size()+" cell(s) in the sales cube):");
+        for(SalesCube.Aggregate product : salesCube.topWeekendProducts(5))
+        {
+            System.out.printf("| %-10d | %-40s | %-10d |\n", product.key[0], salesCube.getProductName(product.key[0]), product.quantity);
+        }
+
+    }
+
+    //  Function to run the control loop.
+
+    @Override
+    public void run()
+
+    {
+
+        long lastTime=System.nanoTime();
+        long lastProduced=streamGenerator.getProducedTuples();
+        long lastJoined=getJoinedTuples();
+        while(running)
+        {
+            try
+            {
+                Thread.sleep(SAMPLE_INTERVAL);  //  Waiting for the next sample.
+            }
+            catch(InterruptedException Error)
+            {
+                return;
+            }
+
+            //  Sampling the stream arrival rate, the service rate and the backlog.
+
+            long currentTime=System.nanoTime();
+            long produced=streamGenerator.getProducedTuples();
+            long joined=getJoinedTuples();
+            double elapsedSeconds=(currentTime-lastTime)/1e9;
+            arrivalRate=(produced-lastProduced)/elapsedSeconds;
+            serviceRate=(joined-lastJoined)/elapsedSeconds;
+            long backlog=produced-joined;
+            lastTime=currentTime;
+            lastProduced=produced;
+            lastJoined=joined;
+            if(produced==0) //  Checking if the stream has started or not.
+            {
+                continue;
+            }
+
+            //  Adjusting the target rate using additive increase and multiplicative decrease.
+
+            if(backlog>backlogHighWatermark)
+            {
+                targetRate=Math.max(MINIMUM_RATE, Math.min(targetRate*MULTIPLICATIVE_DECREASE, serviceRate));
+            }
+            else if(backlog<backlogLowWatermark)
+            {
+                targetRate+=ADDITIVE_INCREASE;
+            }
+            applyTargetRate();
+            if(!resultReporter.isSummaryEnabled())
+            {
+                continue;
+            }
+            System.out.printf("- Controller: arrival %.0f tuple(s)/s, service %.0f tuple(s)/s, backlog %d, batch size %d, batch speed %d ms\n",
+                arrivalRate, serviceRate, backlog, streamGenerator.getBatchSize(), streamGenerator.getBatchSpeed());
+        }
+
+    }
+
+    //  Function to return the number of stream tuples joined by all the HybridJoin workers.
+
+    private long getJoinedTuples()
+
+    {
+
+        long joined=0;
+        for(HybridJoin hybridJoin : hybridJoins)
+        {
+            joined+=hybridJoin.getJoinedTuples();
+        }
+
+        return joined;
+
+    }
+
+    //  Function to translate the target rate into the batch size and batch speed of the StreamGenerator class.
+
+    private void applyTargetRate()
+
+    {
+
+        int batchSize=(int)Math.round(targetRate*TARGET_BATCH_INTERVAL/1000.0);
+        batchSize=Math.max(MINIMUM_BATCH_SIZE, Math.min(MAXIMUM_BATCH_SIZE, batchSize));
+        int batchSpeed=(int)Math.round(batchSize*1000.0/targetRate);
+        targetRate=Math.min(targetRate, batchSize*1000.0/Math.max(1, batchSpeed));  //  Keeping the target rate within reach of the largest batch.
+        streamGenerator.setBatchSize(batchSize);
+        streamGenerator.setBatchSpeed(batchSpeed);
+
+    }
+
+    //  Function to stop the control loop.
+
+    public void stop()
+
+    {
+
+        running=false;
+
+    }
+
 }
@@ -0,0 +1,25 @@
+/*
+
+    The CsvRow interface gives the typed records access to the fields of a row of a comma-separated
+    values (CSV) file, whether the row was tokenised into strings by opencsv or is still a span of
+    bytes in a memory-mapped file.
+
+*/
+
+public interface CsvRow
+
+{
+
+    //  Function to return the number of fields in the row.
+
+    int size();
+
+    //  Function to return the field at the given index as an integer.
+
+    int getInt(int index);
+
+    //  Function to return the field at the given index as a string.
+
+    String getString(int index);
+
+}
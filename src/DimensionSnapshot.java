@@ -0,0 +1,337 @@
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    The DimensionSnapshot class is an immutable, versioned copy of the master data joined by the
+    HybridJoin class: the price, supplier and store of every product, as the `Product_Dimension` and
+    `Store_Dimension` tables hold them. A snapshot is never modified once built, so any number of
+    join workers can read it without locking while the DimensionUpdater class builds the next one.
+
+    The master data tuples are kept in an open-addressing hash table keyed by the product
+    identifier, so a lookup neither boxes the key nor allocates, and the product referred to by
+    every store is kept in arrays sorted by the store identifier. The store of a product is the
+    smallest store whose row refers to it, as the list prefetch of the HybridJoin class reads it
+    from the `Store_Dimension` table.
+
+    The first version is built once from the whole master data file, collected by a Builder as it is
+    loaded. Applying changes then copies the arrays of the snapshot, applies the changes to the copy
+    and builds a new snapshot with the next version (copy-on-write): a change costs a flat copy of
+    the arrays, and the store is only resolved again for the changed products and the products their
+    stores moved away from.
+
+*/
+
+public final class DimensionSnapshot
+
+{
+
+    public static final DimensionSnapshot EMPTY=new DimensionSnapshot(0, new int[2], new HybridJoin.MasterTuple[2], 0, new int[0], new int[0]);
+
+    private final long version;
+    private final int[] keys;
+    private final HybridJoin.MasterTuple[] tuples;  //  Master data tuple stored in every bucket (null for an unused bucket).
+    private final int mask;
+    private final int size;
+    private final int[] storeIDs;   //  Identifiers of the stores, sorted.
+    private final int[] storeProducts;  //  Product referred to by every store, in the order of the identifiers.
+
+    //  Constructor function.
+
+    private DimensionSnapshot(long version, int[] keys, HybridJoin.MasterTuple[] tuples, int size, int[] storeIDs, int[] storeProducts)
+
+    {
+
+        this.version=version;
+        this.keys=keys;
+        this.tuples=tuples;
+        this.mask=tuples.length-1;
+        this.size=size;
+        this.storeIDs=storeIDs;
+        this.storeProducts=storeProducts;
+
+    }
+
+    //  Function to return the master data tuple of a product, or null if it has no master data.
+
+    public HybridJoin.MasterTuple get(int productID)
+
+    {
+
+        int bucket=hash(productID, mask);
+        while(tuples[bucket]!=null)
+        {
+            if(keys[bucket]==productID)
+            {
+                return tuples[bucket];
+            }
+            bucket=(bucket+1)&mask;
+        }
+
+        return null;
+
+    }
+
+    //  Function to build the next version of the snapshot, where the given master data records replace the products and stores already in it.
+
+    public DimensionSnapshot withChanges(List<MasterDataRecord> records)
+
+    {
+
+        //  Copying the hash table of the products, into a larger one if the new products may not fit.
+
+        int tableSize=tuples.length;
+        while(tableSize<(size+records.size())*2)  //  Keeping the load factor of the hash table at most one half.
+        {
+            tableSize<<=1;
+        }
+        int[] nextKeys=tableSize==keys.length ? keys.clone() : new int[tableSize];
+        HybridJoin.MasterTuple[] nextTuples=tableSize==tuples.length ? tuples.clone() : new HybridJoin.MasterTuple[tableSize];
+        if(tableSize!=tuples.length)
+        {
+            for(HybridJoin.MasterTuple tuple : tuples)
+            {
+                if(tuple!=null)
+                {
+                    int bucket=findBucket(nextKeys, nextTuples, tuple.productID);
+                    nextKeys[bucket]=tuple.productID;
+                    nextTuples[bucket]=tuple;
+                }
+            }
+        }
+
+        //  Applying the changes, and collecting the products whose store may have changed.
+
+        int[] nextStoreIDs=storeIDs;
+        int[] nextStoreProducts=storeProducts;
+        int nextSize=size;
+        int[] affectedProducts=new int[records.size()*2];
+        int affectedCount=0;
+        for(MasterDataRecord record : records)
+        {
+            int store=Arrays.binarySearch(nextStoreIDs, record.storeID);
+            if(nextStoreIDs==storeIDs)  //  Copying the stores once, on the first change.
+            {
+                nextStoreIDs=storeIDs.clone();
+                nextStoreProducts=storeProducts.clone();
+            }
+            if(store>=0)
+            {
+                affectedProducts[affectedCount++]=nextStoreProducts[store]; //  Resolving the store of the product it moved away from.
+                nextStoreProducts[store]=record.productID;
+            }
+            else
+            {
+                store=-store-1;
+                nextStoreIDs=insert(nextStoreIDs, store, record.storeID);
+                nextStoreProducts=insert(nextStoreProducts, store, record.productID);
+            }
+            affectedProducts[affectedCount++]=record.productID;
+            int bucket=findBucket(nextKeys, nextTuples, record.productID);
+            if(nextTuples[bucket]==null)
+            {
+                nextKeys[bucket]=record.productID;
+                nextSize++;
+            }
+            nextTuples[bucket]=new HybridJoin.MasterTuple(record.productID, record.supplierID, 0, 0, priceCents(record.productPrice), 0);
+        }
+
+        //  Resolving the store of every affected product, as the smallest store referring to it.
+
+        IntHashSet affected=new IntHashSet(affectedCount);
+        for(int i=0; i<affectedCount; i++)
+        {
+            affected.add(affectedProducts[i]);
+        }
+        IntHashSet resolved=new IntHashSet(affectedCount);
+        for(int store=0; store<nextStoreIDs.length; store++)    //  Visiting the stores in ascending order, so the first one found is the smallest.
+        {
+            int productID=nextStoreProducts[store];
+            if(affected.contains(productID) && resolved.add(productID))
+            {
+                setStore(nextKeys, nextTuples, productID, nextStoreIDs[store]);
+            }
+        }
+        for(int i=0; i<affectedCount; i++)
+        {
+            if(!resolved.contains(affectedProducts[i]))
+            {
+                setStore(nextKeys, nextTuples, affectedProducts[i], 0); //  Leaving the product without any store referring to it.
+            }
+        }
+
+        return new DimensionSnapshot(version+1, nextKeys, nextTuples, nextSize, nextStoreIDs, nextStoreProducts);
+
+    }
+
+    //  Function to return the version of the snapshot, incremented by every change.
+
+    public long getVersion()
+
+    {
+
+        return version;
+
+    }
+
+    //  Function to return the number of products in the snapshot.
+
+    public int size()
+
+    {
+
+        return size;
+
+    }
+
+    /*  Class to collect the master data file in chunks, as it is loaded, and build the first version
+        of the snapshot from it once. Only the first row of every identifier is kept, as the dimension
+        loaders of the StreamGenerator class keep it. */
+
+    public static class Builder
+
+    {
+
+        private final Map<Integer, long[]> products=new HashMap<>();
+        private final Map<Integer, Integer> storeProducts=new HashMap<>();
+
+        //  Function to add a chunk of the master data file.
+
+        public synchronized void add(List<MasterDataRecord> records)
+
+        {
+
+            for(MasterDataRecord record : records)
+            {
+                if(!products.containsKey(record.productID))
+                {
+                    products.put(record.productID, new long[]{priceCents(record.productPrice), record.supplierID});
+                }
+                storeProducts.putIfAbsent(record.storeID, record.productID);
+            }
+
+        }
+
+        //  Function to build the first version of the snapshot, releasing the collected master data.
+
+        public synchronized DimensionSnapshot build()
+
+        {
+
+            int tableSize=2;
+            while(tableSize<products.size()*2)  //  Keeping the load factor of the hash table at most one half.
+            {
+                tableSize<<=1;
+            }
+            int[] keys=new int[tableSize];
+            HybridJoin.MasterTuple[] tuples=new HybridJoin.MasterTuple[tableSize];
+            int[] storeIDs=new int[storeProducts.size()];
+            int stores=0;
+            for(int storeID : storeProducts.keySet())
+            {
+                storeIDs[stores++]=storeID;
+            }
+            Arrays.sort(storeIDs);
+            int[] productsOfStores=new int[storeIDs.length];
+            Map<Integer, Integer> productStores=new HashMap<>();
+            for(int store=0; store<storeIDs.length; store++)
+            {
+                productsOfStores[store]=storeProducts.get(storeIDs[store]);
+                productStores.putIfAbsent(productsOfStores[store], storeIDs[store]);   //  Keeping the smallest store referring to every product.
+            }
+            for(Map.Entry<Integer, long[]> product : products.entrySet())
+            {
+                int productID=product.getKey();
+                int bucket=findBucket(keys, tuples, productID);
+                keys[bucket]=productID;
+                tuples[bucket]=new HybridJoin.MasterTuple(productID, (int)product.getValue()[1], 0, productStores.getOrDefault(productID, 0), product.getValue()[0], 0);
+            }
+            DimensionSnapshot snapshot=new DimensionSnapshot(1, keys, tuples, products.size(), storeIDs, productsOfStores);
+            products.clear();
+            storeProducts.clear();
+
+            return snapshot;
+
+        }
+
+    }
+
+    //  Function to parse a product price into cents, as the `Product_Dimension` table stores it (0 if it is not a number).
+
+    private static long priceCents(String productPrice)
+
+    {
+
+        try
+        {
+            return StreamGenerator.parsePrice(productPrice).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+        catch(NumberFormatException | NullPointerException Error)
+        {
+            return 0;
+        }
+
+    }
+
+    //  Function to return a copy of a sorted array with a value inserted at the given index.
+
+    private static int[] insert(int[] values, int index, int value)
+
+    {
+
+        int[] inserted=new int[values.length+1];
+        System.arraycopy(values, 0, inserted, 0, index);
+        inserted[index]=value;
+        System.arraycopy(values, index, inserted, index+1, values.length-index);
+
+        return inserted;
+
+    }
+
+    //  Function to replace the master data tuple of a product with one referring to the given store, if the product is in the table.
+
+    private static void setStore(int[] keys, HybridJoin.MasterTuple[] tuples, int productID, int storeID)
+
+    {
+
+        int bucket=findBucket(keys, tuples, productID);
+        HybridJoin.MasterTuple tuple=tuples[bucket];
+        if(tuple!=null && tuple.storeID!=storeID)
+        {
+            tuples[bucket]=new HybridJoin.MasterTuple(productID, tuple.supplierID, 0, storeID, tuple.priceCents, 0);
+        }
+
+    }
+
+    //  Function to find the bucket of a product in the given hash table, or the empty bucket where it would be stored.
+
+    private static int findBucket(int[] keys, HybridJoin.MasterTuple[] tuples, int productID)
+
+    {
+
+        int bucket=hash(productID, tuples.length-1);
+        while(tuples[bucket]!=null && keys[bucket]!=productID)
+        {
+            bucket=(bucket+1)&(tuples.length-1);
+        }
+
+        return bucket;
+
+    }
+
+    //  Function to compute the home bucket of a product, given the mask of the hash table.
+
+    private static int hash(int productID, int mask)
+
+    {
+
+        int hash=productID*0x9E3779B9;  //  Spreading the sequential identifiers over the table.
+
+        return (hash^(hash>>>16))&mask;
+
+    }
+
+}
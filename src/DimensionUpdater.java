@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+
+    The DimensionUpdater class publishes the master data joined by the HybridJoin workers as
+    immutable DimensionSnapshot versions, through an atomic reference, so the workers read the
+    current version without any lock and a change never pauses the join.
+
+    The master data file is collected as the StreamGenerator class loads it, and published as the
+    first version of the snapshot once it has all been read. The updater then follows a file of
+    master data changes, in the format of the `master_data.csv` file, and applies its rows whenever
+    the file changes: the changed suppliers, products and stores are first written to the dimension
+    tables in a single transaction, so the fact rows referring to them always satisfy their foreign
+    keys, and the next version of the snapshot is then published atomically. A worker reads one
+    version for a whole join iteration, and picks up the new version from its next iteration on.
+
+    The changes are always written as idempotent INSERT statements, as a bulk load would skip the
+    rows already in the tables instead of updating them.
+
+*/
+
+public class DimensionUpdater implements Runnable
+
+{
+
+    private final AtomicReference<DimensionSnapshot> snapshot=new AtomicReference<>(DimensionSnapshot.EMPTY);
+    private final DimensionSnapshot.Builder masterData=new DimensionSnapshot.Builder(); //  Master data file collected for the first version.
+    private final String updatesPath;   //  File of master data changes followed once the master data is loaded (or null).
+    private final long pollInterval;    //  Interval between two checks of the file of changes (milliseconds).
+    private final PipelineExecutor pipelineExecutor;
+    private final ConnectionPool connectionPool;
+    private final BulkLoader bulkLoader=new BulkLoader(BulkLoader.LoadMode.INSERT, false);  //  Updating the rows already in the tables.
+    private final CountDownLatch masterDataLoaded;  //  Released by the StreamGenerator class once the master data has been committed.
+    private final SalesCube salesCube;  //  Cube of the reports, naming the changed products and suppliers (or null).
+    private long lastModified=-1;   //  Modification time of the file of changes when it was last applied.
+    private long lastSize=-1;   //  Size of the file of changes when it was last applied.
+    private volatile boolean running=true;
+
+    //  Constructor function.
+
+    public DimensionUpdater(String updatesPath, long pollInterval, PipelineExecutor pipelineExecutor, ConnectionPool connectionPool, CountDownLatch masterDataLoaded, SalesCube salesCube)
+
+    {
+
+        this.updatesPath=updatesPath;
+        this.pollInterval=pollInterval;
+        this.pipelineExecutor=pipelineExecutor;
+        this.connectionPool=connectionPool;
+        this.masterDataLoaded=masterDataLoaded;
+        this.salesCube=salesCube;
+
+    }
+
+    //  Function to return the current snapshot of the master data, without locking.
+
+    public DimensionSnapshot current()
+
+    {
+
+        return snapshot.get();
+
+    }
+
+    //  Function to collect a chunk of the master data file, as it is loaded by the StreamGenerator class.
+
+    public void load(List<MasterDataRecord> chunk)
+
+    {
+
+        masterData.add(chunk);
+
+    }
+
+    //  Function to publish the first version of the snapshot, once the whole master data file has been collected.
+
+    public void publishMasterData()
+
+    {
+
+        snapshot.set(masterData.build());
+
+    }
+
+    /*  Function to apply master data changes: the rows are written to the dimension tables and
+        committed, and the next version of the snapshot is then published. */
+
+    public void apply(List<MasterDataRecord> changes) throws SQLException
+
+    {
+
+        if(changes.isEmpty())
+        {
+            return;
+        }
+        try(Connection connection=connectionPool.getConnection())
+        {
+            pipelineExecutor.withPermit(()->{
+                writeChanges(connection, changes);
+                return null;
+            });
+        }
+        DimensionSnapshot published=snapshot.updateAndGet(current->current.withChanges(changes));  //  Publishing the new version atomically.
+        if(salesCube!=null)
+        {
+            for(MasterDataRecord record : changes)
+            {
+                salesCube.registerProduct(record.productID, record.productName, record.supplierID, record.supplierName);
+            }
+        }
+        System.out.println("- Dimension snapshot version "+published.getVersion()+" published with "+changes.size()+" master data change(s).");
+
+    }
+
+    //  Function to follow the file of master data changes until the updater is stopped.
+
+    @Override
+    public void run()
+
+    {
+
+        try
+        {
+            masterDataLoaded.await();   //  Applying the changes over the master data file, never under it.
+        }
+        catch(InterruptedException Error)
+        {
+            return;
+        }
+        while(running && updatesPath!=null)
+        {
+            try
+            {
+                applyChangedFile();
+            }
+            catch(IOException | SQLException Error)
+            {
+                Error.printStackTrace();
+            }
+            try
+            {
+                Thread.sleep(pollInterval); //  Waiting for the next check.
+            }
+            catch(InterruptedException Error)
+            {
+                return;
+            }
+        }
+
+    }
+
+    //  Function to apply the rows of the file of changes if it has changed since it was last applied.
+
+    private void applyChangedFile() throws IOException, SQLException
+
+    {
+
+        Path path=Paths.get(updatesPath);
+        if(!Files.isRegularFile(path))
+        {
+            return;
+        }
+        long modified=Files.getLastModifiedTime(path).toMillis();
+        long size=Files.size(path);
+        if(modified==lastModified && size==lastSize)
+        {
+            return;
+        }
+        lastModified=modified;  //  Retrying a file that fails only once it changes again.
+        lastSize=size;
+        List<MasterDataRecord> changes=new ArrayList<>();
+        StreamGenerator.readRecords(updatesPath, MasterDataRecord.COLUMNS, MasterDataRecord::fromRow, changes::addAll);
+        apply(changes); //  Applying the whole file as one version, so the workers never see half of it.
+
+    }
+
+    //  Function to write the changed suppliers, products and stores to the dimension tables in a single transaction.
+
+    private void writeChanges(Connection connection, List<MasterDataRecord> changes) throws SQLException
+
+    {
+
+        connection.setAutoCommit(false);
+        try(PreparedStatement supplierStatement=bulkLoader.prepare(connection, "Supplier_Dimension", new String[]{"supplierID", "supplierName"}, 1);
+            PreparedStatement productStatement=bulkLoader.prepare(connection, "Product_Dimension", new String[]{"productID", "productName", "productPrice", "supplierID"}, 1);
+            PreparedStatement storeStatement=bulkLoader.prepare(connection, "Store_Dimension", new String[]{"storeID", "storeName", "productID"}, 1))
+        {
+            for(MasterDataRecord record : changes)
+            {
+                supplierStatement.setInt(1, record.supplierID);
+                supplierStatement.setString(2, record.supplierName);
+                supplierStatement.addBatch();
+                productStatement.setInt(1, record.productID);
+                productStatement.setString(2, record.productName);
+                productStatement.setBigDecimal(3, StreamGenerator.parsePrice(record.productPrice)); //  Sending the final price, with or without the triggers.
+                productStatement.setInt(4, record.supplierID);
+                productStatement.addBatch();
+                storeStatement.setInt(1, record.storeID);
+                storeStatement.setString(2, record.storeName);
+                storeStatement.setInt(3, record.productID);
+                storeStatement.addBatch();
+            }
+            supplierStatement.executeBatch();   //  Writing the suppliers ahead of the products referring to them.
+            productStatement.executeBatch();
+            storeStatement.executeBatch();
+            connection.commit();
+        }
+        catch(SQLException | NumberFormatException Error)
+        {
+            connection.rollback();  //  Leaving the tables and the snapshot unchanged.
+            throw Error instanceof SQLException ? (SQLException)Error : new SQLException("Incorrect product price in the master data changes.", Error);
+        }
+        finally
+        {
+            connection.setAutoCommit(true);
+        }
+
+    }
+
+    //  Function to stop following the file of changes.
+
+    public void stop()
+
+    {
+
+        running=false;
+
+    }
+
+}
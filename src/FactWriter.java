@@ -0,0 +1,360 @@
+import java.sql.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/*
+
+    The FactWriter class is the write stage of the HYBRIDJOIN algorithm. It accumulates the joined
+    tuples, sends them to the `Sales_Fact` table as JDBC batches (rewritten into multi-row INSERT
+    statements by the MySQL driver), and commits them in explicit transactions of a configurable
+    size instead of autocommitting every row.
+
+    The `Total_Sale` of each row is computed by the HybridJoin class from the price and quantity
+    already in memory, so the rows reach the server with their final values. The inserted rows are
+    reported from the same values, so no query is sent back to the database to read them again. Only
+    the rows sampled for the report are held, and they are handed to the ResultReporter class once
+    committed, so the console is never written from here.
+
+    In the virtual-thread mode of the PipelineExecutor class, a commit can run as an asynchronous
+    task, while the HybridJoin class goes on with its lookups; the next row written waits for the
+    commit to finish, so the batches and pending rows are never touched by two threads at once.
+
+    Every row is written with an idempotent insert, so the rows written again after a resume from a
+    checkpoint overwrite (or, when bulk loaded, skip) the ones already committed instead of failing
+    on the primary key. The callbacks registered with the onCommit function run once the rows
+    written before them have been committed, which is how the StreamCheckpoint class learns that a
+    batch is durable.
+
+    The statements are prepared by the BulkLoader class, so in its bulk mode every JDBC batch is
+    sent as a single `LOAD DATA LOCAL INFILE` statement instead of an INSERT, in the same transaction.
+
+    In the direct join mode, the `Time_Dimension` rows of the joined transactions are batched
+    alongside the fact rows and sent ahead of them in the same transaction, so the foreign keys of
+    the fact rows are always satisfied when they reach the server.
+
+*/
+
+public class FactWriter implements AutoCloseable
+
+{
+
+    private static final int FIELDS=4;  //  Number of fields stored per pending row.
+
+    private final Connection connection;
+    private final PreparedStatement insertStatement;
+    private final PreparedStatement timeStatement;
+    private final boolean clientSideTransform;  //  Writing the `Time_Dimension` rows with their final values instead of relying on the triggers.
+    private final PipelineExecutor pipelineExecutor;
+    private final ResultReporter resultReporter;
+    private final int sampleRate;   //  One row out of this many is reported (0 if the rows are not reported).
+    private final LatencyHistogram insertLatency;
+    private final LatencyHistogram commitLatency;
+    private Future<Void> pendingCommit; //  Commit running as an asynchronous task, if any.
+    private final int batchSize;    //  Number of rows sent to the server per JDBC batch.
+    private final int commitSize;   //  Number of rows committed per transaction.
+    private int[] pendingRows;  //  Sampled rows of the current transaction, waiting to be reported.
+    private long[] pendingTotals;   //  Total sales (in cents) of the sampled rows of the current transaction.
+    private int sampledRows;    //  Number of sampled rows in the current transaction.
+    private long writtenRows;   //  Number of rows written so far, used to sample them.
+    private int batchedRows;    //  Number of rows added to the current JDBC batch.
+    private int batchedTimes;   //  Number of `Time_Dimension` rows added to the current JDBC batch.
+    private int uncommittedRows;    //  Number of rows in the current transaction.
+    private long committedRows; //  Number of rows committed so far.
+    private List<Runnable> commitCallbacks=new ArrayList<>();   //  Callbacks waiting for the current transaction to be committed.
+
+    //  Constructor function.
+
+    public FactWriter(Connection connection, BulkLoader bulkLoader, int batchSize, int commitSize, boolean clientSideTransform, PipelineExecutor pipelineExecutor, ResultReporter resultReporter, PipelineMetrics pipelineMetrics) throws SQLException
+
+    {
+
+        this.connection=connection;
+        this.clientSideTransform=clientSideTransform;
+        this.pipelineExecutor=pipelineExecutor;
+        this.resultReporter=resultReporter;
+        this.sampleRate=resultReporter.getRowSampleRate();
+        this.insertLatency=pipelineMetrics.histogram(PipelineMetrics.INSERT);
+        this.commitLatency=pipelineMetrics.histogram(PipelineMetrics.COMMIT);
+        this.batchSize=batchSize;
+        this.commitSize=Math.max(batchSize, commitSize);
+        int reportedRows=sampleRate>0 ? this.commitSize/sampleRate+1 : 1;
+        this.pendingRows=new int[reportedRows*FIELDS];
+        this.pendingTotals=new long[reportedRows];
+        this.connection.setAutoCommit(false);   //  Grouping the inserts into explicit transactions.
+        this.insertStatement=bulkLoader.prepare(connection, "Sales_Fact",
+            new String[]{"productID", "CustomerID", "Time_ID", "storeID", "Total_Sale"}, 4
+        );  //  Statement writing the joined tuples into the table.
+        this.timeStatement=bulkLoader.prepare(connection, "Time_Dimension", clientSideTransform
+            ? new String[]{"Time_ID", "`Order ID`", "`Order Date`", "`Quantity Ordered`", "productID", "Hour", "Minute", "Day", "Month", "Year", "Quarter"}
+            : new String[]{"Time_ID", "`Order ID`", "`Order Date`", "`Quantity Ordered`", "productID"}, 1
+        );  //  Statement writing the orders of the joined transactions.
+
+    }
+
+    //  Function to add the order of a joined transaction to the current batch.
+
+    public void writeTime(int timeID, int orderID, StreamGenerator.OrderDate orderDate, int quantity, int productID) throws SQLException
+
+    {
+
+        awaitCommit();
+        timeStatement.setInt(1, timeID);
+        timeStatement.setInt(2, orderID);
+        timeStatement.setString(3, clientSideTransform ? orderDate.timestamp : orderDate.text);
+        timeStatement.setInt(4, quantity);
+        timeStatement.setInt(5, productID);
+        if(clientSideTransform)
+        {
+            timeStatement.setInt(6, orderDate.hour);
+            timeStatement.setInt(7, orderDate.minute);
+            timeStatement.setInt(8, orderDate.day);
+            timeStatement.setInt(9, orderDate.month);
+            timeStatement.setInt(10, orderDate.year);
+            timeStatement.setInt(11, orderDate.quarter);
+        }
+        timeStatement.addBatch();   //  Adding the entry to the batch.
+        batchedTimes++;
+
+    }
+
+    //  Function to add a joined tuple to the current batch.
+
+    public void write(int productID, int customerID, int timeID, int storeID, long totalSaleCents) throws SQLException
+
+    {
+
+        awaitCommit();
+
+        //  Setting the values for the query.
+
+        insertStatement.setInt(1, productID);
+        insertStatement.setInt(2, customerID);
+        insertStatement.setInt(3, timeID);
+        insertStatement.setInt(4, storeID);
+        insertStatement.setBigDecimal(5, BigDecimal.valueOf(totalSaleCents, 2));
+        insertStatement.addBatch(); //  Adding the entry to the batch.
+
+        //  Keeping the values of the row for the report, if it is sampled.
+
+        if(sampleRate>0 && writtenRows%sampleRate==0)
+        {
+            if(sampledRows>=pendingTotals.length)
+            {
+                pendingRows=Arrays.copyOf(pendingRows, pendingRows.length*2);
+                pendingTotals=Arrays.copyOf(pendingTotals, pendingTotals.length*2);
+            }
+            int offset=sampledRows*FIELDS;
+            pendingRows[offset]=productID;
+            pendingRows[offset+1]=customerID;
+            pendingRows[offset+2]=timeID;
+            pendingRows[offset+3]=storeID;
+            pendingTotals[sampledRows]=totalSaleCents;
+            sampledRows++;
+        }
+        writtenRows++;
+        uncommittedRows++;
+        batchedRows++;
+        if(batchedRows>=batchSize)  //  Checking if the batch is full or not.
+        {
+            executeBatch();
+        }
+        if(uncommittedRows>=commitSize) //  Checking if the transaction is full or not.
+        {
+            commitAsync();
+        }
+
+    }
+
+    //  Function to register a callback to run once the rows written so far have been committed.
+
+    public void onCommit(Runnable callback) throws SQLException
+
+    {
+
+        awaitCommit();
+        commitCallbacks.add(callback);
+
+    }
+
+    //  Function to send the current batch and commit the current transaction.
+
+    public void commit() throws SQLException
+
+    {
+
+        awaitCommit();
+        pipelineExecutor.withPermit(()->{
+            commitTransaction();
+            return null;
+        });
+
+    }
+
+    //  Function to commit the current transaction as an asynchronous task in the virtual-thread mode, or right away otherwise.
+
+    public void commitAsync() throws SQLException
+
+    {
+
+        awaitCommit();
+        if(!pipelineExecutor.isVirtual())
+        {
+            commit();
+            return;
+        }
+        if(uncommittedRows>0 || !commitCallbacks.isEmpty())
+        {
+            pendingCommit=pipelineExecutor.submit(()->pipelineExecutor.withPermit(()->{
+                commitTransaction();
+                return null;
+            }));
+        }
+
+    }
+
+    //  Function to wait for the asynchronous commit, if any, rethrowing its error.
+
+    private void awaitCommit() throws SQLException
+
+    {
+
+        if(pendingCommit!=null)
+        {
+            Future<Void> commit=pendingCommit;
+            pendingCommit=null;
+            PipelineExecutor.await(commit);
+        }
+
+    }
+
+    //  Function to send the current batch and commit the current transaction on the calling thread.
+
+    private void commitTransaction() throws SQLException
+
+    {
+
+        if(uncommittedRows==0)
+        {
+            runCommitCallbacks();   //  Nothing to commit, so everything written before the callbacks is durable already.
+            return;
+        }
+        try
+        {
+            executeBatch();
+            long commitStart=System.nanoTime();
+            connection.commit();    //  Committing the transaction.
+            commitLatency.recordSince(commitStart);
+        }
+        catch(SQLException Error)
+        {
+            insertStatement.clearBatch();
+            timeStatement.clearBatch();
+            connection.rollback();  //  Discarding the partially written transaction.
+            uncommittedRows=0;
+            sampledRows=0;
+            batchedRows=0;
+            batchedTimes=0;
+            commitCallbacks.clear();    //  Leaving the batches of the discarded rows out of the checkpoint.
+            throw Error;
+        }
+        report();
+        committedRows+=uncommittedRows;
+        uncommittedRows=0;
+        runCommitCallbacks();
+
+    }
+
+    //  Function to run the callbacks waiting for the transaction just committed.
+
+    private void runCommitCallbacks()
+
+    {
+
+        if(commitCallbacks.isEmpty())
+        {
+            return;
+        }
+        List<Runnable> callbacks=commitCallbacks;
+        commitCallbacks=new ArrayList<>();
+        for(Runnable callback : callbacks)
+        {
+            callback.run();
+        }
+
+    }
+
+    //  Function to return the number of rows committed so far.
+
+    public long getCommittedRows()
+
+    {
+
+        return committedRows;
+
+    }
+
+    //  Function to send the current JDBC batch to the server.
+
+    private void executeBatch() throws SQLException
+
+    {
+
+        if(batchedTimes==0 && batchedRows==0)
+        {
+            return;
+        }
+        long insertStart=System.nanoTime();
+        if(batchedTimes>0)  //  Sending the dimension rows ahead of the fact rows referencing them.
+        {
+            timeStatement.executeBatch();
+            batchedTimes=0;
+        }
+        if(batchedRows>0)
+        {
+            insertStatement.executeBatch(); //  Executing the batch.
+            batchedRows=0;
+        }
+        insertLatency.recordSince(insertStart);
+
+    }
+
+    //  Function to hand the committed rows over to the ResultReporter class.
+
+    private void report()
+
+    {
+
+        for(int i=0; i<sampledRows; i++)
+        {
+            int offset=i*FIELDS;
+            resultReporter.publishRow(pendingRows[offset], pendingRows[offset+1], pendingRows[offset+2], pendingRows[offset+3], pendingTotals[i]);
+        }
+        resultReporter.recordCommitted(uncommittedRows);
+        sampledRows=0;
+
+    }
+
+    //  Function to commit the remaining rows and release the prepared statement.
+
+    @Override
+    public void close() throws SQLException
+
+    {
+
+        try
+        {
+            commit();
+        }
+        finally
+        {
+            insertStatement.close();    //  Closing the prepared statements.
+            timeStatement.close();
+            connection.setAutoCommit(true);
+        }
+
+    }
+
+}
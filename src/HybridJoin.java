@@ -1,5 +1,9 @@
 import java.util.*;
 import java.sql.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*  The HybridJoin class is responsible to perform the HYBRIDJOIN algorithm based on
     the Hybrid join (METHOD=4) approach discussed in the documentation for the
@@ -23,6 +27,52 @@ import java.sql.*;
     5.  Concatenates the data from the inner table and the Phase 2 intermediate table to create the
         final composite table.
 
+    The stream tuples wait in a bounded multi-hash table keyed by the join attribute (productID),
+    while a queue records the join attribute values in arrival order. Each iteration loads the
+    partition of the master data starting at the oldest value in the queue into the disk buffer,
+    and probes the multi-hash table with every tuple of the partition, so a single read of the
+    master data is amortised over all the stream tuples waiting for the products in it.
+
+    With the list prefetch strategy, each iteration does not load a range of the master data, but
+    collapses the stream tuples waiting in the multi-hash table into their distinct join attribute
+    values, starting at the oldest one, and fetches only those with one `IN (...)` query per
+    dimension table, sorted by productID. The sorted results are then merge-joined in memory into the
+    disk buffer, as in the list prefetch step of the Db2 hybrid join. The distinct values are kept
+    sorted by the WaitingKeys class as the tuples arrive and leave, so they are not sorted again on
+    every iteration.
+
+    Every master data tuple read from the database is kept in a bounded read-through cache keyed by
+    productID, so the hot products are served from memory and only the cache misses are queried.
+
+    In the direct join mode, every stream tuple carries its whole transaction, with the Time_ID
+    assigned by the StreamGenerator class, so the partitions only hold the product prices and stores,
+    and the `Time_Dimension` rows are written alongside the fact rows instead of being inserted and
+    read back by the StreamGenerator class beforehand.
+
+    In the virtual-thread mode of the PipelineExecutor class, the fact rows are written on a second
+    connection and committed as asynchronous tasks, so a commit overlaps with the lookups of the
+    following iterations. The lookups themselves stay synchronous, one partition at a time, as the
+    next partition depends on the tuples left by the current one. Every database round trip holds a
+    permit of the PipelineExecutor class.
+
+    When a SalesCube is given, every fact joined in the direct join mode is also added to the cube,
+    so the analytical reports are answered from memory.
+
+    When a DimensionUpdater is given in the direct join mode, the master data is not read from the
+    database at all: every iteration looks all the waiting join attribute values up in the current
+    DimensionSnapshot, read once without locking, so the whole multi-hash table is joined against a
+    single version of the master data, and the changes published while the join runs are picked up
+    from the next iteration on.
+
+    When a StreamCheckpoint is given, the worker counts the tuples of every batch still waiting in
+    the multi-hash table, and acknowledges the batch to the checkpoint once none is left and the rows
+    written for it have been committed.
+
+    Several instances can run in parallel as join workers, each with its own stream buffer,
+    multi-hash table, cache, connection and fact writer. The stream is hash-partitioned by productID
+    (see the workerOf function), so a product is always joined by the same worker and the workers
+    never share any state.
+
     Reference:  https://www.ibm.com/docs/en/db2-for-zos/11?topic=operations-hybrid-join-method4
 
 */
@@ -31,205 +81,618 @@ public class HybridJoin implements Runnable
 
 {
 
-    public Map<Integer, LinkedList<SortEntry>> multiHashTable;  //  Creating a multi-hash table to store the batch entries.
+    //  Strategies to load the master data into the disk buffer.
+
+    public enum PartitionStrategy
+    {
+        RANGE,
+        LIST_PREFETCH
+    }
+
+    private final StreamBuffer<StreamBatch> streamBuffer;
+    private final int hashTableCapacity;    //  Maximum number of stream tuples held in the multi-hash table.
+    private final int partitionSize;    //  Number of master data tuples loaded into the disk buffer per iteration.
+    private final int factBatchSize;    //  Number of fact rows sent to the server per JDBC batch.
+    private final int factCommitSize;   //  Number of fact rows committed per transaction.
+    private final boolean directJoin;   //  Joining the transactions carried by the stream tuples instead of the `Time_Dimension` table.
+    private final boolean clientSideTransform;  //  Writing the `Time_Dimension` rows with their final values instead of relying on the triggers.
+    private final PartitionStrategy partitionStrategy;
+    private final int[] prefetchKeys;   //  Distinct join attribute values selected by the current list prefetch.
+    private final int[] fetchKeys;  //  Selected join attribute values missing from the cache.
+    private int[] waitingKeys;  //  Distinct join attribute values waiting in the multi-hash table, reused by every snapshot lookup.
+    private final WaitingKeys sortedWaitingKeys;    //  Distinct join attribute values waiting in the multi-hash table, in sorted order for the list prefetch.
+    private final MasterDataCache masterDataCache;
+    private final PipelineExecutor pipelineExecutor;
+    private final ConnectionPool connectionPool;
+    private final BulkLoader bulkLoader;    //  Preparing the statements of the fact writer, inserting or bulk loading the rows.
+    private final CountDownLatch masterDataLoaded;  //  Released by the StreamGenerator class once the master data has been committed.
+    private final ResultReporter resultReporter;
+    private final PipelineMetrics pipelineMetrics;
+    private final SalesCube salesCube;  //  Aggregate of the joined facts, maintained in the direct join mode (or null).
+    private final StreamCheckpoint streamCheckpoint;    //  Checkpoint the joined batches are acknowledged to, in the direct join mode (or null).
+    private final DimensionUpdater dimensionUpdater;    //  Publisher of the snapshots the master data is looked up in, in the direct join mode (or null).
+    private final PendingBatches receivedBatches=new PendingBatches();  //  Sequence and tuples still waiting of every batch not yet acknowledged.
+    private long[] slotBatches=new long[0]; //  Ordinal in the received batches of the batch of every waiting tuple, indexed by its slot.
+    private long receivedBatch; //  Ordinal of the batch being added to the multi-hash table.
+    private int hashTableSize;  //  Number of stream tuples currently held in the multi-hash table.
+    private volatile int reportedHashTableSize; //  Size of the multi-hash table after the last join iteration, read by the pipeline metrics.
+    private final LatencyHistogram bufferTakeLatency;
+    private final LatencyHistogram lookupLatency;
+    private final AtomicLong joinedTuples=new AtomicLong(); //  Number of stream tuples that have left the multi-hash table.
+
+    public IntMultiMap multiHashTable;  //  Creating a multi-hash table to store the batch entries.
+    private final StreamBatch waitingTuples;    //  Fields of the batch entries in the multi-hash table, indexed by their slot.
+    private final JoinQueue joinQueue;  //  Creating a queue to store the join attribute values in arrival order.
+    private final List<MasterTuple> diskBuffer; //  Creating a disk buffer to store one partition of the master data.
+
+    //  Class to store the settings of a join worker, defaulting to the ones of the Controller class.
+
+    public static class Options
+
+    {
+
+        public int hashTableCapacity=1000;  //  Maximum number of stream tuples held in the multi-hash table.
+        public int partitionSize=10;    //  Number of master data tuples loaded into the disk buffer per iteration.
+        public int factBatchSize=500;   //  Number of fact rows sent to the server per JDBC batch.
+        public int factCommitSize=2000; //  Number of fact rows committed per transaction.
+        public boolean directJoin=true; //  Joining the transactions carried by the stream tuples instead of the `Time_Dimension` table.
+        public boolean clientSideTransform=false;   //  Writing the `Time_Dimension` rows with their final values instead of relying on the triggers.
+        public PartitionStrategy partitionStrategy=PartitionStrategy.LIST_PREFETCH;
+        public int cacheCapacity=4096;  //  Maximum number of products whose master data is cached.
+
+    }
 
     //  Constructor function.
 
-    public HybridJoin()
+    public HybridJoin(StreamBuffer<StreamBatch> streamBuffer, Options options, PipelineContext context)
     
     {
 
-        this.multiHashTable=new HashMap<>();
+        this.streamBuffer=streamBuffer;
+        this.hashTableCapacity=options.hashTableCapacity;
+        this.partitionSize=options.partitionSize;
+        this.factBatchSize=options.factBatchSize;
+        this.factCommitSize=options.factCommitSize;
+        this.directJoin=options.directJoin;
+        this.clientSideTransform=options.clientSideTransform;
+        this.partitionStrategy=options.partitionStrategy;
+        this.prefetchKeys=new int[partitionSize];
+        this.fetchKeys=new int[partitionSize];
+        this.waitingKeys=new int[Math.max(partitionSize, 16)];
+        this.masterDataCache=new MasterDataCache(options.cacheCapacity);
+        this.pipelineExecutor=context.pipelineExecutor;
+        this.connectionPool=context.connectionPool;
+        this.bulkLoader=context.bulkLoader;
+        this.masterDataLoaded=context.masterDataLoaded;
+        this.resultReporter=context.resultReporter;
+        this.pipelineMetrics=context.pipelineMetrics;
+        this.salesCube=directJoin ? context.salesCube : null;   //  Leaving the cube out without the order dates of the stream tuples.
+        this.streamCheckpoint=directJoin ? context.streamCheckpoint : null;  //  Leaving the checkpoint out without the Time_IDs of the stream tuples.
+        this.dimensionUpdater=directJoin ? context.dimensionUpdater : null; //  Leaving the snapshots out without the `Time_Dimension` rows of the stream tuples.
+        this.bufferTakeLatency=pipelineMetrics.histogram(PipelineMetrics.BUFFER_TAKE);
+        this.lookupLatency=pipelineMetrics.histogram(PipelineMetrics.LOOKUP);
+        this.hashTableSize=0;
+        this.multiHashTable=new IntMultiMap(hashTableCapacity);
+        this.waitingTuples=new StreamBatch(multiHashTable.slotCapacity(), null);
+        this.joinQueue=new JoinQueue(hashTableCapacity);
+        this.sortedWaitingKeys=dimensionUpdater==null && partitionStrategy==PartitionStrategy.LIST_PREFETCH ? new WaitingKeys(multiHashTable) : null;
+        this.diskBuffer=new ArrayList<>(partitionSize);
 
     }
 
-    //  Class to store the batch entries.
+    //  Class to store the master data tuples loaded into the disk buffer.
+
+    public static class MasterTuple
 
-    public static class SortEntry
-    
     {
 
-        public final int customerID;
         public final int productID;
+        public final int supplierID;
+        public final int timeID;
+        public final int storeID;
+        public final long priceCents;   //  Price of the product in cents.
+        public final int quantity;  //  Quantity ordered in the joined `Time_Dimension` row.
 
         //  Constructor function.
 
-        public SortEntry(int productID, int customerID)
-        
+        public MasterTuple(int productID, int supplierID, int timeID, int storeID, long priceCents, int quantity)
+
         {
 
-            this.customerID=customerID;
             this.productID=productID;
+            this.supplierID=supplierID;
+            this.timeID=timeID;
+            this.storeID=storeID;
+            this.priceCents=priceCents;
+            this.quantity=quantity;
 
         }
 
-        //  Function to return the customer identifier.
+    }
 
-        public int getCustomerID()
-        
-        {
+    //  Driver function.
 
-            return customerID;
+    @Override
+    public void run()
 
-        }
+    {
 
-        //  Function to return the product identifier.
+        //  Borrowing the connections from the pool.
 
-        public int getProductID()
-        
+        try(Connection connection=connectionPool.getConnection();
+            Connection writeConnection=pipelineExecutor.isVirtual() ? connectionPool.getConnection() : null;
+            FactWriter factWriter=new FactWriter(writeConnection!=null ? writeConnection : connection, bulkLoader, factBatchSize, factCommitSize, clientSideTransform, pipelineExecutor, resultReporter, pipelineMetrics))
         {
 
-            return productID;
+            //  Draining the batches from the stream buffer until the end of the stream.
 
+            while(true)
+            {
+                if(streamBuffer.size()==0)  //  Checking if the stream buffer is about to run dry or not.
+                {
+                    factWriter.commitAsync();   //  Committing the joined tuples instead of holding them while waiting.
+                }
+                long takeStart=System.nanoTime();
+                StreamBatch batchEntries=streamBuffer.take();
+                bufferTakeLatency.recordSince(takeStart);   //  Time spent waiting for the stream.
+                if(batchEntries==null)  //  Checking if the stream has ended or not.
+                {
+                    break;
+                }
+                processBatchEntries(batchEntries, connection, factWriter);  //  Joining the batch using the HYBRIDJOIN algorithm.
+                batchEntries.recycle(); //  Returning the batch to the StreamGenerator class, as its entries have been copied.
+            }
+            flush(connection, factWriter);  //  Joining the stream tuples still waiting in the multi-hash table.
+            factWriter.commit();
+            System.out.println("\n- Sales_Fact filled successfully!\n");
+            System.out.println("- Master data cache: "+masterDataCache.getHits()+" hit(s), "+masterDataCache.getMisses()+" miss(es), "+masterDataCache.getEvictions()+" eviction(s)\n");
+        }
+        catch(SQLException Error)
+        {
+            Error.printStackTrace();
+        }
+        finally
+        {
+            streamBuffer.close();   //  Releasing the StreamGenerator class if it is waiting for a free slot, whatever stopped the worker.
         }
 
     }
 
-    //  Driver function.
+    //  Function to return the join worker responsible for a product, out of the given number of workers.
 
-    @Override
-    public void run() {}
+    public static int workerOf(int productID, int workers)
+
+    {
+
+        return Math.floorMod(productID*0x9E3779B9, workers);    //  Spreading the sequential identifiers evenly over the workers.
+
+    }
+
+    //  Function to return the number of stream tuples that have left the multi-hash table.
+
+    public long getJoinedTuples()
+
+    {
+
+        return joinedTuples.get();
+
+    }
+
+    //  Function to return the number of stream tuples in the multi-hash table after the last join iteration.
+
+    public int getHashTableSize()
+
+    {
+
+        return reportedHashTableSize;
+
+    }
+
+    //  Function to return the cache of the master data.
+
+    public MasterDataCache getMasterDataCache()
+
+    {
+
+        return masterDataCache;
+
+    }
 
     //  Function to process the batch entries.
 
-    public void processBatchEntries(List<SortEntry> batchEntries, Connection connection) throws SQLException
+    public void processBatchEntries(StreamBatch batchEntries, Connection connection, FactWriter factWriter) throws SQLException
     
     {
 
+        if(streamCheckpoint!=null && !batchEntries.isEmpty())
+        {
+            receivedBatch=receivedBatches.add(new long[]{batchEntries.sequence, batchEntries.size()});
+        }
+
         //  Iterating over the batch entries.
 
-        for(SortEntry entry : batchEntries)
+        for(int i=0; i<batchEntries.size(); i++)
         {
+            while(hashTableSize>=hashTableCapacity) //  Checking if the multi-hash table has any free slots or not.
+            {
+                performJoinIteration(connection, factWriter);   //  Freeing slots by joining the oldest waiting tuples.
+            }
+            addToMultiHashTable(batchEntries, i);   //  Adding the batch entry to the multi-hash table.
+        }
+        performJoinIteration(connection, factWriter);   //  Performing one iteration of the HYBRIDJOIN algorithm for the new arrivals.
+
+    }
+
+    //  Function to join all the stream tuples still waiting in the multi-hash table.
+
+    public void flush(Connection connection, FactWriter factWriter) throws SQLException
 
-            int productID=entry.getProductID();
-            int customerID=entry.getCustomerID();
-            addToMultiHashTable(productID, entry);  //  Adding the batch entry to the multi-hash table.
-            int timeID=performTimeDimensionJoin(connection, productID); //  Performing the `Time_Dimension` join.
-            int storeID=performStoreDimensionJoin(connection, productID);   //  Performing the `Store_Dimension` join.
-            updateSalesFact(connection, productID, customerID, timeID, storeID);    //  Updating the fact table.
+    {
+
+        while(hashTableSize>0)
+        {
+            performJoinIteration(connection, factWriter);
         }
 
     }
 
     //  Function to add the batch entry to the multi-hash table.
 
-    public void addToMultiHashTable(int productID, SortEntry entry)
+    public void addToMultiHashTable(StreamBatch batchEntries, int index)
     
     {
 
-        if(multiHashTable.containsKey(productID))   //  Checking if the product identifier is already present in the multi-hash table or not.
+        int productID=batchEntries.productIDs[index];
+        if(sortedWaitingKeys!=null && !multiHashTable.containsKey(productID))  //  Checking if the product starts waiting or not.
         {
-            multiHashTable.get(productID).add(entry);   //  Adding the batch entry to the multi-hash table.
+            sortedWaitingKeys.added(productID);
+        }
+        int slot=multiHashTable.put(productID); //  Adding the batch entry after the entries already waiting for the product.
+        waitingTuples.ensureCapacity(multiHashTable.slotCapacity());
+        waitingTuples.set(slot, batchEntries, index);   //  Copying the fields of the batch entry into its slot.
+        if(streamCheckpoint!=null)
+        {
+            if(slotBatches.length<multiHashTable.slotCapacity())
+            {
+                slotBatches=Arrays.copyOf(slotBatches, multiHashTable.slotCapacity());
+            }
+            slotBatches[slot]=receivedBatch;
+        }
+        joinQueue.add(productID);   //  Adding the join attribute value to the queue.
+        hashTableSize++;
+
+    }
+
+    /*  Function to perform one iteration of the HYBRIDJOIN algorithm. The partition of the master
+        data starting at the oldest join attribute value in the queue is loaded into the disk buffer,
+        and every master data tuple in it is probed against the multi-hash table, so all the stream
+        tuples waiting for any product in the partition are joined with a single read. */
+
+    private void performJoinIteration(Connection connection, FactWriter factWriter) throws SQLException
+
+    {
+
+        if(joinQueue.isEmpty()) //  Checking if there are any stream tuples waiting or not, skipping the entries already joined.
+        {
+            return;
+        }
+        int oldestProductID=joinQueue.oldest(); //  Retrieving the oldest join attribute value.
+        awaitMasterData();  //  Waiting for the master data before the first lookup.
+        int[] partitionKeys=prefetchKeys;   //  Distinct join attribute values looked up by the iteration.
+        int prefetchedKeys=0;
+        long lookupStart=System.nanoTime();
+        if(dimensionUpdater!=null)
+        {
+            partitionKeys=selectWaitingKeys();  //  Looking every waiting key up, as the snapshot is in memory anyway.
+            prefetchedKeys=multiHashTable.keyCount();
+            loadSnapshotPartition(partitionKeys, prefetchedKeys);
+        }
+        else if(partitionStrategy==PartitionStrategy.LIST_PREFETCH)
+        {
+            prefetchedKeys=sortedWaitingKeys.select(oldestProductID, prefetchKeys); //  Collapsing the waiting stream tuples into distinct keys.
+            int keyCount=prefetchedKeys;
+            pipelineExecutor.withPermit(()->{
+                prefetchPartition(connection, keyCount);    //  Fetching the master data of those keys only.
+                return null;
+            });
         }
         else
         {
-            LinkedList<SortEntry> newList=new LinkedList<>();   //  Creating a new linked list.
-            newList.add(entry); //  Adding the batch entry to the linked list.
-            multiHashTable.put(productID, newList); //  Adding the linked list to the multi-hash table.
+            pipelineExecutor.withPermit(()->{
+                loadPartition(connection, oldestProductID); //  Loading the partition of the master data into the disk buffer.
+                return null;
+            });
         }
+        lookupLatency.recordSince(lookupStart); //  Time spent loading the master data, including the wait for a connection permit.
+
+        //  Probing the multi-hash table with every master data tuple in the disk buffer.
+
+        for(MasterTuple masterTuple : diskBuffer)
+        {
+            int slot=multiHashTable.first(masterTuple.productID);
+            if(slot!=IntMultiMap.NONE)  //  Checking if any stream tuples are waiting for the product or not.
+            {
+                for(; slot!=IntMultiMap.NONE; slot=multiHashTable.next(slot))
+                {
+                    int timeID=masterTuple.timeID;
+                    int quantity=masterTuple.quantity;
+                    if(directJoin)  //  Checking if the stream tuple carries its own transaction or not.
+                    {
+                        timeID=waitingTuples.timeIDs[slot];
+                        quantity=waitingTuples.quantities[slot];
+                        factWriter.writeTime(timeID, waitingTuples.orderIDs[slot], waitingTuples.orderDates[slot], quantity, masterTuple.productID);
+                    }
+                    long totalSaleCents=masterTuple.priceCents*quantity;  //  Computing the total sale in memory.
+                    factWriter.write(masterTuple.productID, waitingTuples.customerIDs[slot], timeID, masterTuple.storeID, totalSaleCents);  //  Updating the fact table.
+                    if(salesCube!=null)
+                    {
+                        salesCube.add(masterTuple.supplierID, masterTuple.productID, masterTuple.storeID, waitingTuples.orderDates[slot], quantity, totalSaleCents);   //  Updating the aggregates of the reports.
+                    }
+                }
+                removeFromMultiHashTable(masterTuple.productID);
+            }
+        }
+
+        //  Discarding the stream tuples without any matching master data (inner join).
+
+        removeFromMultiHashTable(oldestProductID);
+        for(int i=0; i<prefetchedKeys; i++)  //  Every prefetched key without master data is unmatched as well.
+        {
+            removeFromMultiHashTable(partitionKeys[i]);
+        }
+        acknowledgeJoinedBatches(factWriter);
+        reportedHashTableSize=hashTableSize;
 
     }
 
-    //  Function to perform the `Time_Dimension` join.
+    //  Function to wait for the master data to be loaded by the StreamGenerator class.
+
+    private void awaitMasterData() throws SQLException
+
+    {
+
+        try
+        {
+            masterDataLoaded.await();
+        }
+        catch(InterruptedException Error)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the master data.", Error);
+        }
+
+    }
+
+    //  Function to remove the stream tuples waiting for a product from the multi-hash table, once joined or discarded as unmatched.
+
+    private void removeFromMultiHashTable(int productID)
 
-    public static int performTimeDimensionJoin(Connection connection, int productID) throws SQLException
-    
     {
 
-        PreparedStatement joinStatementTime=connection.prepareStatement(
-            "SELECT Time_ID FROM Time_Dimension WHERE productID=?"
-        );  //  Query to filter the table based on the product identifier.
-        joinStatementTime.setInt(1, productID); //  Setting the product identifier.
-        ResultSet resultSetTime=joinStatementTime.executeQuery();   //  Executing the query.
-        int timeID=0;
-        if(resultSetTime.next())    //  Checking if the result set is empty or not.
+        if(streamCheckpoint!=null)
         {
-            timeID=resultSetTime.getInt("Time_ID"); //  Fetching the time identifier.
+            for(int slot=multiHashTable.first(productID); slot!=IntMultiMap.NONE; slot=multiHashTable.next(slot))
+            {
+                receivedBatches.get(slotBatches[slot])[1]--;   //  Finding the batch of the tuple by its ordinal.
+            }
         }
-        resultSetTime.close();  //  Closing the result set.
-        joinStatementTime.close();  //  Closing the prepared statement.
+        int removedEntries=multiHashTable.remove(productID);
+        if(removedEntries>0)
+        {
+            joinQueue.markJoined(productID, removedEntries);   //  Discarding the queue entries of the tuples once they reach the head.
+            if(sortedWaitingKeys!=null)
+            {
+                sortedWaitingKeys.removed(productID);
+            }
+        }
+        hashTableSize-=removedEntries;
+        joinedTuples.addAndGet(removedEntries);
+
+    }
 
-        return timeID;
+    //  Function to acknowledge the oldest batches without any tuple left waiting, once the rows written for them are committed.
+
+    private void acknowledgeJoinedBatches(FactWriter factWriter) throws SQLException
+
+    {
+
+        while(streamCheckpoint!=null && !receivedBatches.isEmpty() && receivedBatches.peek()[1]==0)
+        {
+            long sequence=receivedBatches.poll()[0];
+            factWriter.onCommit(()->streamCheckpoint.acknowledge(sequence));
+        }
 
     }
 
-    //  Function to perform the `Store_Dimension` join.
+    //  Function to copy every distinct join attribute value waiting in the multi-hash table, in no particular order.
+
+    private int[] selectWaitingKeys()
 
-    public static int performStoreDimensionJoin(Connection connection, int productID) throws SQLException
-    
     {
 
-        PreparedStatement joinStatementStore=connection.prepareStatement(
-            "SELECT storeID FROM Store_Dimension WHERE productID=?"
-        );  //  Query to filter the table based on the product identifier.
-        joinStatementStore.setInt(1, productID);    //  Setting the product identifier.
-        ResultSet resultSetStore=joinStatementStore.executeQuery(); //  Executing the query.
-        int storeID=0;
-        if(resultSetStore.next())   //  Checking if the result set is empty or not.
+        if(waitingKeys.length<multiHashTable.keyCount())
         {
-            storeID=resultSetStore.getInt("storeID");   //  Fetching the store identifier.
+            waitingKeys=new int[Math.max(multiHashTable.keyCount(), waitingKeys.length*2)];
         }
-        resultSetStore.close(); //  Closing the result set.
-        joinStatementStore.close(); //  Closing the prepared statement.
+        multiHashTable.keysInto(waitingKeys);
 
-        return storeID;
+        return waitingKeys;
 
     }
 
-    //  Function to update the `Sales_Fact` table based on the batch entries.
+    //  Function to load the master data of the given join attribute values from the current snapshot into the disk buffer.
+
+    private void loadSnapshotPartition(int[] keys, int keyCount)
 
-    public static void updateSalesFact(Connection connection, int productID, int customerID, int timeID, int storeID) throws SQLException
-    
     {
 
-        PreparedStatement preparedStatement=connection.prepareStatement(
-            "INSERT INTO Sales_Fact (productID, CustomerID, Time_ID, storeID) VALUES (?, ?, ?, ?)"
-        );  //  Query to insert the batch entry into the table.
+        diskBuffer.clear(); //  Clearing the previous partition.
+        DimensionSnapshot snapshot=dimensionUpdater.current();  //  Reading a single version for the whole partition.
+        for(int i=0; i<keyCount; i++)
+        {
+            MasterTuple masterTuple=snapshot.get(keys[i]);
+            if(masterTuple!=null)
+            {
+                diskBuffer.add(masterTuple);
+            }
+        }
+
+    }
+
+    /*  Function to fetch the master data of the selected join attribute values with one query per
+        dimension table, and merge-join the sorted results into the disk buffer. */
 
-        //  Setting the values for the query.
+    private void prefetchPartition(Connection connection, int keyCount) throws SQLException
 
-        preparedStatement.setInt(1, productID);
-        preparedStatement.setInt(2, customerID);
-        preparedStatement.setInt(3, timeID);
-        preparedStatement.setInt(4, storeID);
+    {
 
-        preparedStatement.executeUpdate();  //  Executing the query.
-        String query="SELECT * FROM Sales_Fact WHERE productID=? AND CustomerID=? AND Time_ID=? AND storeID=?"; //  Query to fetch the inserted entry.
-        try(PreparedStatement selectStatement=connection.prepareStatement(query))
+        diskBuffer.clear(); //  Clearing the previous partition.
+
+        //  Serving the cached keys from memory and collecting the others for the queries.
+
+        int fetchCount=0;
+        for(int i=0; i<keyCount; i++)
         {
+            MasterTuple cachedTuple=masterDataCache.get(prefetchKeys[i]);
+            if(cachedTuple==null)
+            {
+                fetchKeys[fetchCount++]=prefetchKeys[i];
+            }
+            else if(cachedTuple!=MasterDataCache.MISSING)
+            {
+                diskBuffer.add(cachedTuple);
+            }
+        }
+        if(fetchCount==0)
+        {
+            return;
+        }
+        String keyList=String.join(", ", Collections.nCopies(fetchKeys.length, "?"));  //  Padding the list to a fixed size, so the statements keep the same shape.
+        List<long[]> products=fetchSorted(connection, "SELECT productID, productPrice, supplierID FROM Product_Dimension WHERE productID IN ("+keyList+") ORDER BY productID", fetchCount, true);
+        List<long[]> stores=fetchSorted(connection, "SELECT productID, MIN(storeID) FROM Store_Dimension WHERE productID IN ("+keyList+") GROUP BY productID ORDER BY productID", fetchCount, false);
+        List<long[]> times=directJoin ? Collections.<long[]>emptyList() : fetchSorted(connection,
+            "SELECT t.productID, t.Time_ID, t.`Quantity Ordered` FROM Time_Dimension t "+
+            "JOIN (SELECT MIN(Time_ID) AS Time_ID FROM Time_Dimension WHERE productID IN ("+keyList+") GROUP BY productID) m ON t.Time_ID=m.Time_ID "+
+            "ORDER BY t.productID", fetchCount, false);
+
+        //  Merge-joining the sorted rows of the dimension tables on the product identifier.
+
+        int storeIndex=0;
+        int timeIndex=0;
+        int keyIndex=0;
+        for(long[] product : products)
+        {
+            while(storeIndex<stores.size() && stores.get(storeIndex)[0]<product[0])
+            {
+                storeIndex++;
+            }
+            while(timeIndex<times.size() && times.get(timeIndex)[0]<product[0])
+            {
+                timeIndex++;
+            }
+            while(keyIndex<fetchCount && fetchKeys[keyIndex]<product[0])    //  Caching the keys skipped by the merge as products without master data.
+            {
+                masterDataCache.putMissing(fetchKeys[keyIndex++]);
+            }
+            int storeID=storeIndex<stores.size() && stores.get(storeIndex)[0]==product[0] ? (int)stores.get(storeIndex)[1] : 0;
+            long[] time=timeIndex<times.size() && times.get(timeIndex)[0]==product[0] ? times.get(timeIndex) : null;
+            MasterTuple masterTuple=new MasterTuple((int)product[0], (int)product[2], time==null ? 0 : (int)time[1], storeID, product[1], time==null ? 0 : (int)time[2]);
+            diskBuffer.add(masterTuple);
+            masterDataCache.put(masterTuple.productID, masterTuple);
+            keyIndex++;
+        }
+        while(keyIndex<fetchCount)
+        {
+            masterDataCache.putMissing(fetchKeys[keyIndex++]);
+        }
 
-            //  Setting the values for the query.
+    }
 
-            selectStatement.setInt(1, productID);
-            selectStatement.setInt(2, customerID);
-            selectStatement.setInt(3, timeID);
-            selectStatement.setInt(4, storeID);
+    //  Function to run a list prefetch query, returning its rows as arrays of longs (prices in cents) sorted by the product identifier.
 
-            ResultSet resultSet=selectStatement.executeQuery(); //  Executing the query.
+    private List<long[]> fetchSorted(Connection connection, String sql, int keyCount, boolean priceColumn) throws SQLException
 
-            //  Iterating over the result set.
+    {
 
-            while(resultSet.next())
+        List<long[]> rows=new ArrayList<>(keyCount);
+        try(PreparedStatement prefetchStatement=connection.prepareStatement(sql))
+        {
+            for(int i=0; i<fetchKeys.length; i++)
             {
+                prefetchStatement.setInt(i+1, fetchKeys[Math.min(i, keyCount-1)]);
+            }
+            try(ResultSet resultSet=prefetchStatement.executeQuery())
+            {
+                int columns=resultSet.getMetaData().getColumnCount();
+                while(resultSet.next())
+                {
+                    long[] row=new long[columns];
+                    row[0]=resultSet.getInt(1);
+                    if(priceColumn)
+                    {
+                        BigDecimal productPrice=resultSet.getBigDecimal(2);
+                        row[1]=productPrice==null ? 0 : productPrice.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+                    }
+                    for(int i=priceColumn ? 2 : 1; i<columns; i++)
+                    {
+                        row[i]=resultSet.getLong(i+1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
 
-                //  Retrieving the inserted entry from the result set.
+        return rows;
 
-                int insertedProductID=resultSet.getInt("productID");
-                int insertedCustomerID=resultSet.getInt("CustomerID");
-                int insertedTimeID=resultSet.getInt("Time_ID");
-                int insertedStoreID=resultSet.getInt("storeID");
-                double insertedTotalSale=resultSet.getDouble("Total_Sale");
+    }
 
-                //  Streaming the inserted entry to the console.
+    //  Function to load the partition of the master data starting at the given product identifier into the disk buffer.
 
-                System.out.printf("| %-10s | %-12s | %-8s | %-8s | %-10s |\n", "Product ID", "Customer ID", "Time ID", "Store ID", "Total Sale");
-                System.out.println("+------------+--------------+---------+---------+------------+");
-                System.out.printf("| %-10d | %-12d | %-8d | %-8d | %-10.2f |\n", insertedProductID, insertedCustomerID, insertedTimeID, insertedStoreID, insertedTotalSale);
+    private void loadPartition(Connection connection, int productID) throws SQLException
 
+    {
+
+        diskBuffer.clear(); //  Clearing the previous partition.
+        MasterTuple cachedTuple=masterDataCache.get(productID);
+        if(cachedTuple!=null)   //  Serving the oldest product from the cache instead of loading its partition.
+        {
+            if(cachedTuple!=MasterDataCache.MISSING)
+            {
+                diskBuffer.add(cachedTuple);
+            }
+            return;
+        }
+        String sql=directJoin
+            ? "SELECT p.productID, p.productPrice, p.supplierID, 0 AS Time_ID, 0 AS `Quantity Ordered`, "+
+              "(SELECT MIN(s.storeID) FROM Store_Dimension s WHERE s.productID=p.productID) AS storeID "+
+              "FROM Product_Dimension p "+
+              "WHERE p.productID>=? ORDER BY p.productID LIMIT ?"
+            : "SELECT p.productID, p.productPrice, p.supplierID, t.Time_ID, t.`Quantity Ordered`, "+
+              "(SELECT MIN(s.storeID) FROM Store_Dimension s WHERE s.productID=p.productID) AS storeID "+
+              "FROM Product_Dimension p "+
+              "LEFT JOIN Time_Dimension t ON t.Time_ID=(SELECT MIN(m.Time_ID) FROM Time_Dimension m WHERE m.productID=p.productID) "+
+              "WHERE p.productID>=? ORDER BY p.productID LIMIT ?";    //  Query to fetch the partition of the master data sorted by the product identifier.
+        try(PreparedStatement partitionStatement=connection.prepareStatement(sql))
+        {
+            partitionStatement.setInt(1, productID);    //  Setting the first product identifier of the partition.
+            partitionStatement.setInt(2, partitionSize);    //  Setting the size of the partition.
+            try(ResultSet resultSet=partitionStatement.executeQuery())
+            {
+                while(resultSet.next())
+                {
+                    BigDecimal productPrice=resultSet.getBigDecimal("productPrice");
+                    long priceCents=productPrice==null ? 0 : productPrice.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+                    MasterTuple masterTuple=new MasterTuple(resultSet.getInt("productID"), resultSet.getInt("supplierID"), resultSet.getInt("Time_ID"), resultSet.getInt("storeID"), priceCents, resultSet.getInt("Quantity Ordered"));
+                    diskBuffer.add(masterTuple);
+                    masterDataCache.put(masterTuple.productID, masterTuple);    //  Caching every tuple of the partition.
+                }
+                if(diskBuffer.isEmpty() || diskBuffer.get(0).productID!=productID)
+                {
+                    masterDataCache.putMissing(productID);
+                }
             }
         }
-        preparedStatement.close();  //  Closing the prepared statement.
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+/*
+
+    The IntHashSet class is a set of primitive ints, used by the StreamGenerator class to remember
+    the identifiers already inserted into every dimension table. The identifiers are stored in an
+    open-addressing hash table, so adding one neither boxes it nor allocates a node.
+
+*/
+
+public class IntHashSet
+
+{
+
+    private static final int EMPTY=Integer.MIN_VALUE;   //  Marks an unused bucket; stored apart when it is added as a value.
+
+    private int[] buckets;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;  //  Whether the value used to mark the unused buckets has been added.
+
+    //  Constructor function.
+
+    public IntHashSet(int expectedSize)
+
+    {
+
+        int tableSize=2;
+        while(tableSize<expectedSize*2)
+        {
+            tableSize<<=1;
+        }
+        allocate(tableSize);
+
+    }
+
+    //  Function to add a value, returning false if it was already in the set.
+
+    public boolean add(int value)
+
+    {
+
+        if(value==EMPTY)
+        {
+            if(containsEmpty)
+            {
+                return false;
+            }
+            containsEmpty=true;
+            size++;
+            return true;
+        }
+        int bucket=hash(value);
+        while(buckets[bucket]!=EMPTY)
+        {
+            if(buckets[bucket]==value)
+            {
+                return false;
+            }
+            bucket=(bucket+1)&mask;
+        }
+        buckets[bucket]=value;
+        size++;
+        if(size*2>buckets.length)   //  Keeping the load factor of the hash table at most one half.
+        {
+            resize(buckets.length*2);
+        }
+
+        return true;
+
+    }
+
+    //  Function to check if a value is in the set or not.
+
+    public boolean contains(int value)
+
+    {
+
+        if(value==EMPTY)
+        {
+            return containsEmpty;
+        }
+        int bucket=hash(value);
+        while(buckets[bucket]!=EMPTY)
+        {
+            if(buckets[bucket]==value)
+            {
+                return true;
+            }
+            bucket=(bucket+1)&mask;
+        }
+
+        return false;
+
+    }
+
+    //  Function to return the number of values in the set.
+
+    public int size()
+
+    {
+
+        return size;
+
+    }
+
+    //  Function to remove every value from the set.
+
+    public void clear()
+
+    {
+
+        Arrays.fill(buckets, EMPTY);
+        containsEmpty=false;
+        size=0;
+
+    }
+
+    //  Function to allocate an empty hash table of the given size.
+
+    private void allocate(int tableSize)
+
+    {
+
+        buckets=new int[tableSize];
+        Arrays.fill(buckets, EMPTY);
+        mask=tableSize-1;
+
+    }
+
+    //  Function to move the values into a larger hash table.
+
+    private void resize(int tableSize)
+
+    {
+
+        int[] oldBuckets=buckets;
+        allocate(tableSize);
+        for(int value : oldBuckets)
+        {
+            if(value!=EMPTY)
+            {
+                int bucket=hash(value);
+                while(buckets[bucket]!=EMPTY)
+                {
+                    bucket=(bucket+1)&mask;
+                }
+                buckets[bucket]=value;
+            }
+        }
+
+    }
+
+    //  Function to compute the home bucket of a value.
+
+    private int hash(int value)
+
+    {
+
+        int hash=value*0x9E3779B9;  //  Spreading the sequential identifiers over the table.
+
+        return (hash^(hash>>>16))&mask;
+
+    }
+
+}
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+
+/*
+
+    The IntMultiMap class is a multimap keyed by primitive ints, used as the multi-hash table of the
+    HybridJoin class. The keys are stored in an open-addressing hash table, without boxing, and the
+    values of every key are chained in insertion order through a flat pool of value slots, linked by
+    int indexes instead of list nodes. The slots freed by a removal are reused by the next values.
+
+    The multimap only hands out the slots: the caller stores the fields of every value in its own
+    arrays, indexed by the slot returned by the put function, so no object is kept per value. The
+    slots of a key are visited with a cursor (first and next), so the caller can run code that
+    throws checked exceptions while visiting them.
+
+*/
+
+public class IntMultiMap
+
+{
+
+    public static final int NONE=-1;    //  Returned by the cursor once the values of a key have all been visited.
+
+    private static final int EMPTY=-1;
+
+    private int[] keys;
+    private int[] heads;    //  First value slot of every key (EMPTY for an unused bucket).
+    private int[] tails;    //  Last value slot of every key.
+    private int[] counts;   //  Number of values of every key.
+    private int mask;
+    private int keyCount;
+    private int[] next; //  Next value slot of the same key, or the next free slot.
+    private int freeSlot=EMPTY;
+    private int usedSlots;  //  Number of slots handed out from the end of the pool.
+    private int size;
+
+    //  Constructor function.
+
+    public IntMultiMap(int expectedValues)
+
+    {
+
+        int tableSize=2;
+        while(tableSize<expectedValues*2)
+        {
+            tableSize<<=1;
+        }
+        allocateTable(tableSize);
+        this.next=new int[Math.max(16, expectedValues)];
+
+    }
+
+    //  Function to add a value to a key, after the values already added to it, returning the slot of the value.
+
+    public int put(int key)
+
+    {
+
+        int slot=allocateSlot();
+        next[slot]=EMPTY;
+        int bucket=findBucket(key);
+        if(heads[bucket]==EMPTY)    //  Checking if the key is new or not.
+        {
+            keys[bucket]=key;
+            heads[bucket]=slot;
+            counts[bucket]=0;
+            keyCount++;
+        }
+        else
+        {
+            next[tails[bucket]]=slot;
+        }
+        tails[bucket]=slot;
+        counts[bucket]++;
+        size++;
+        if(keyCount*2>heads.length) //  Keeping the load factor of the hash table at most one half.
+        {
+            resize(heads.length*2);
+        }
+
+        return slot;
+
+    }
+
+    //  Function to check if any value is stored for a key or not.
+
+    public boolean containsKey(int key)
+
+    {
+
+        return heads[findBucket(key)]!=EMPTY;
+
+    }
+
+    //  Function to return the first value slot of a key, or NONE if there is none.
+
+    public int first(int key)
+
+    {
+
+        return heads[findBucket(key)];
+
+    }
+
+    //  Function to return the value slot following the given one, or NONE after the last value of its key.
+
+    public int next(int slot)
+
+    {
+
+        return next[slot];
+
+    }
+
+    //  Function to remove all the values of a key, returning their number.
+
+    public int remove(int key)
+
+    {
+
+        int bucket=findBucket(key);
+        if(heads[bucket]==EMPTY)
+        {
+            return 0;
+        }
+        int removed=counts[bucket];
+        int slot=heads[bucket];
+        while(slot!=EMPTY)  //  Returning the value slots of the key to the free list.
+        {
+            int nextSlot=next[slot];
+            next[slot]=freeSlot;
+            freeSlot=slot;
+            slot=nextSlot;
+        }
+        deleteBucket(bucket);
+        keyCount--;
+        size-=removed;
+
+        return removed;
+
+    }
+
+    //  Function to copy the distinct keys into the given array, returning their number.
+
+    public int keysInto(int[] target)
+
+    {
+
+        int count=0;
+        for(int bucket=0; bucket<heads.length; bucket++)
+        {
+            if(heads[bucket]!=EMPTY)
+            {
+                target[count++]=keys[bucket];
+            }
+        }
+
+        return count;
+
+    }
+
+    //  Function to return the number of value slots in the pool, which bounds every slot handed out so far.
+
+    public int slotCapacity()
+
+    {
+
+        return next.length;
+
+    }
+
+    //  Function to return the number of distinct keys.
+
+    public int keyCount()
+
+    {
+
+        return keyCount;
+
+    }
+
+    //  Function to return the number of values stored under all the keys.
+
+    public int size()
+
+    {
+
+        return size;
+
+    }
+
+    //  Function to check if the multimap is empty or not.
+
+    public boolean isEmpty()
+
+    {
+
+        return size==0;
+
+    }
+
+    //  Function to find the bucket of a key, or the empty bucket where it would be stored.
+
+    private int findBucket(int key)
+
+    {
+
+        int bucket=hash(key);
+        while(heads[bucket]!=EMPTY && keys[bucket]!=key)
+        {
+            bucket=(bucket+1)&mask;
+        }
+
+        return bucket;
+
+    }
+
+    //  Function to empty a bucket, shifting back the keys that follow it.
+
+    private void deleteBucket(int bucket)
+
+    {
+
+        heads[bucket]=EMPTY;
+        int current=(bucket+1)&mask;
+        while(heads[current]!=EMPTY)
+        {
+            int home=hash(keys[current]);
+            if(((current-home)&mask)>=((current-bucket)&mask))
+            {
+                keys[bucket]=keys[current];
+                heads[bucket]=heads[current];
+                tails[bucket]=tails[current];
+                counts[bucket]=counts[current];
+                heads[current]=EMPTY;
+                bucket=current;
+            }
+            current=(current+1)&mask;
+        }
+
+    }
+
+    //  Function to take a value slot from the free list, or from the end of the pool.
+
+    private int allocateSlot()
+
+    {
+
+        if(freeSlot!=EMPTY)
+        {
+            int slot=freeSlot;
+            freeSlot=next[slot];
+            return slot;
+        }
+        if(usedSlots==next.length)
+        {
+            next=Arrays.copyOf(next, next.length*2);
+        }
+
+        return usedSlots++;
+
+    }
+
+    //  Function to allocate an empty hash table of the given size.
+
+    private void allocateTable(int tableSize)
+
+    {
+
+        keys=new int[tableSize];
+        heads=new int[tableSize];
+        tails=new int[tableSize];
+        counts=new int[tableSize];
+        Arrays.fill(heads, EMPTY);
+        mask=tableSize-1;
+
+    }
+
+    //  Function to move the keys into a larger hash table.
+
+    private void resize(int tableSize)
+
+    {
+
+        int[] oldKeys=keys;
+        int[] oldHeads=heads;
+        int[] oldTails=tails;
+        int[] oldCounts=counts;
+        allocateTable(tableSize);
+        for(int i=0; i<oldHeads.length; i++)
+        {
+            if(oldHeads[i]!=EMPTY)
+            {
+                int bucket=findBucket(oldKeys[i]);
+                keys[bucket]=oldKeys[i];
+                heads[bucket]=oldHeads[i];
+                tails[bucket]=oldTails[i];
+                counts[bucket]=oldCounts[i];
+            }
+        }
+
+    }
+
+    //  Function to compute the home bucket of a key.
+
+    private int hash(int key)
+
+    {
+
+        int hash=key*0x9E3779B9;    //  Spreading the sequential identifiers over the table.
+
+        return (hash^(hash>>>16))&mask;
+
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+
+    The JoinQueue class is the queue of the HybridJoin class, holding the join attribute value of
+    every stream tuple in arrival order, so the oldest waiting tuple selects the next partition of the
+    master data. The values are stored in a ring buffer of primitive ints, without boxing.
+
+    The tuples of a product all leave the multi-hash table at once, wherever their entries are in the
+    queue, so the entries of the joined tuples are discarded lazily: the number of joined entries of
+    every product is counted in an open-addressing hash table of primitive ints, and those entries
+    are skipped when they reach the head of the queue. The tuples of a product are joined in arrival
+    order, so its first entries in the queue are always the joined ones.
+
+*/
+
+public class JoinQueue
+
+{
+
+    private int[] values;   //  Ring buffer of the join attribute values.
+    private int head;   //  Index of the oldest entry.
+    private int size;
+    private int[] joinedKeys;
+    private int[] joinedCounts; //  Number of joined entries of every product (0 for an unused bucket).
+    private int joinedMask;
+    private int joinedKeyCount;
+
+    //  Constructor function.
+
+    public JoinQueue(int expectedValues)
+
+    {
+
+        int capacity=16;
+        while(capacity<expectedValues)
+        {
+            capacity<<=1;
+        }
+        this.values=new int[capacity];
+        allocateTable(16);
+
+    }
+
+    //  Function to add the join attribute value of a stream tuple at the end of the queue.
+
+    public void add(int productID)
+
+    {
+
+        if(size==values.length)
+        {
+            grow();
+        }
+        values[(head+size)&(values.length-1)]=productID;
+        size++;
+
+    }
+
+    //  Function to record that the given number of entries of a product have been joined, to be skipped once they reach the head.
+
+    public void markJoined(int productID, int entries)
+
+    {
+
+        int bucket=findBucket(productID);
+        if(joinedCounts[bucket]==0) //  Checking if the product is new or not.
+        {
+            joinedKeys[bucket]=productID;
+            joinedKeyCount++;
+        }
+        joinedCounts[bucket]+=entries;
+        if(joinedKeyCount*2>joinedCounts.length)    //  Keeping the load factor of the hash table at most one half.
+        {
+            resize(joinedCounts.length*2);
+        }
+
+    }
+
+    //  Function to discard the joined entries at the head of the queue, checking if any tuple is still waiting or not.
+
+    public boolean isEmpty()
+
+    {
+
+        while(size>0)
+        {
+            int bucket=findBucket(values[head]);
+            if(joinedCounts[bucket]==0) //  Checking if the oldest entry is still waiting or not.
+            {
+                return false;
+            }
+            if(--joinedCounts[bucket]==0)
+            {
+                deleteBucket(bucket);
+                joinedKeyCount--;
+            }
+            head=(head+1)&(values.length-1);
+            size--;
+        }
+
+        return true;
+
+    }
+
+    //  Function to return the oldest value still waiting, once the isEmpty function has returned false.
+
+    public int oldest()
+
+    {
+
+        return values[head];
+
+    }
+
+    //  Function to double the ring buffer, moving the entries to its start.
+
+    private void grow()
+
+    {
+
+        int[] grown=new int[values.length*2];
+        int firstPart=Math.min(size, values.length-head);
+        System.arraycopy(values, head, grown, 0, firstPart);
+        System.arraycopy(values, 0, grown, firstPart, size-firstPart);
+        values=grown;
+        head=0;
+
+    }
+
+    //  Function to find the bucket of a product, or the empty bucket where it would be stored.
+
+    private int findBucket(int productID)
+
+    {
+
+        int bucket=hash(productID);
+        while(joinedCounts[bucket]!=0 && joinedKeys[bucket]!=productID)
+        {
+            bucket=(bucket+1)&joinedMask;
+        }
+
+        return bucket;
+
+    }
+
+    //  Function to empty a bucket, shifting back the products that follow it.
+
+    private void deleteBucket(int bucket)
+
+    {
+
+        joinedCounts[bucket]=0;
+        int current=(bucket+1)&joinedMask;
+        while(joinedCounts[current]!=0)
+        {
+            int home=hash(joinedKeys[current]);
+            if(((current-home)&joinedMask)>=((current-bucket)&joinedMask))
+            {
+                joinedKeys[bucket]=joinedKeys[current];
+                joinedCounts[bucket]=joinedCounts[current];
+                joinedCounts[current]=0;
+                bucket=current;
+            }
+            current=(current+1)&joinedMask;
+        }
+
+    }
+
+    //  Function to allocate an empty hash table of the given size.
+
+    private void allocateTable(int tableSize)
+
+    {
+
+        joinedKeys=new int[tableSize];
+        joinedCounts=new int[tableSize];
+        joinedMask=tableSize-1;
+
+    }
+
+    //  Function to move the products into a larger hash table.
+
+    private void resize(int tableSize)
+
+    {
+
+        int[] oldKeys=joinedKeys;
+        int[] oldCounts=joinedCounts;
+        allocateTable(tableSize);
+        for(int i=0; i<oldCounts.length; i++)
+        {
+            if(oldCounts[i]!=0)
+            {
+                int bucket=findBucket(oldKeys[i]);
+                joinedKeys[bucket]=oldKeys[i];
+                joinedCounts[bucket]=oldCounts[i];
+            }
+        }
+
+    }
+
+    //  Function to compute the home bucket of a product.
+
+    private int hash(int productID)
+
+    {
+
+        int hash=productID*0x9E3779B9;  //  Spreading the sequential identifiers over the table.
+
+        return (hash^(hash>>>16))&joinedMask;
+
+    }
+
+}
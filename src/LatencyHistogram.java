@@ -0,0 +1,220 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+
+    The LatencyHistogram class records the latencies of a stage of the pipeline (in nanoseconds)
+    from any number of threads without locking. The latencies are counted in log-linear buckets:
+    every power of two is split into 16 buckets of equal width, so a percentile read from the
+    histogram is within about 6% of the exact value, whatever the range of the latencies. The
+    largest latency is kept exactly.
+
+*/
+
+public class LatencyHistogram implements LatencyHistogramMBean
+
+{
+
+    private static final int SUB_BUCKET_BITS=4;
+    private static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+    private static final int BUCKETS=(Long.SIZE-SUB_BUCKET_BITS+1)*SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts=new AtomicLongArray(BUCKETS);
+    private final LongAdder count=new LongAdder();
+    private final LongAdder total=new LongAdder();
+    private final AtomicLong maximum=new AtomicLong();
+
+    //  Constructor function.
+
+    public LatencyHistogram(String name)
+
+    {
+
+        this.name=name;
+
+    }
+
+    //  Function to return the name of the stage.
+
+    public String getName()
+
+    {
+
+        return name;
+
+    }
+
+    //  Function to record a latency.
+
+    public void record(long nanos)
+
+    {
+
+        if(nanos<0)
+        {
+            nanos=0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        total.add(nanos);
+        long current;
+        while(nanos>(current=maximum.get()) && !maximum.compareAndSet(current, nanos))
+        {
+            //  Retrying until the largest latency is stored.
+        }
+
+    }
+
+    //  Function to record the latency elapsed since the given start (from System.nanoTime).
+
+    public void recordSince(long startNanos)
+
+    {
+
+        record(System.nanoTime()-startNanos);
+
+    }
+
+    //  Function to return the number of latencies recorded.
+
+    @Override
+    public long getCount()
+
+    {
+
+        return count.sum();
+
+    }
+
+    //  Function to return the mean latency (microseconds).
+
+    @Override
+    public double getMeanMicros()
+
+    {
+
+        long recorded=count.sum();
+
+        return recorded==0 ? 0 : total.sum()/1000.0/recorded;
+
+    }
+
+    //  Function to return the median latency (microseconds).
+
+    @Override
+    public double getP50Micros()
+
+    {
+
+        return percentile(0.50)/1000.0;
+
+    }
+
+    //  Function to return the 99th percentile latency (microseconds).
+
+    @Override
+    public double getP99Micros()
+
+    {
+
+        return percentile(0.99)/1000.0;
+
+    }
+
+    //  Function to return the largest latency (microseconds).
+
+    @Override
+    public double getMaxMicros()
+
+    {
+
+        return maximum.get()/1000.0;
+
+    }
+
+    //  Function to return the latency below which the given fraction of the latencies fall (nanoseconds).
+
+    public long percentile(double fraction)
+
+    {
+
+        long[] snapshot=new long[BUCKETS];
+        long recorded=0;
+        for(int i=0; i<BUCKETS; i++)    //  Taking a snapshot, as the counts keep changing while being read.
+        {
+            snapshot[i]=counts.get(i);
+            recorded+=snapshot[i];
+        }
+        if(recorded==0)
+        {
+            return 0;
+        }
+        long rank=Math.max(1, (long)Math.ceil(fraction*recorded));
+        long seen=0;
+        for(int i=0; i<BUCKETS; i++)
+        {
+            seen+=snapshot[i];
+            if(seen>=rank)
+            {
+                return Math.min(upperBoundOf(i), maximum.get());
+            }
+        }
+
+        return maximum.get();
+
+    }
+
+    //  Function to forget the latencies recorded so far.
+
+    @Override
+    public void reset()
+
+    {
+
+        for(int i=0; i<BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        maximum.set(0);
+
+    }
+
+    //  Function to return the bucket of a latency.
+
+    private static int bucketOf(long nanos)
+
+    {
+
+        if(nanos<SUB_BUCKETS)   //  Counting the smallest latencies exactly.
+        {
+            return (int)nanos;
+        }
+        int exponent=63-Long.numberOfLeadingZeros(nanos);
+        int subBucket=(int)(nanos>>>(exponent-SUB_BUCKET_BITS))&(SUB_BUCKETS-1);
+
+        return (exponent-SUB_BUCKET_BITS+1)*SUB_BUCKETS+subBucket;
+
+    }
+
+    //  Function to return the largest latency counted in a bucket.
+
+    private static long upperBoundOf(int bucket)
+
+    {
+
+        if(bucket<SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent=bucket/SUB_BUCKETS+SUB_BUCKET_BITS-1;
+        long width=1L<<(exponent-SUB_BUCKET_BITS);
+
+        return ((SUB_BUCKETS+bucket%SUB_BUCKETS)*width)+width-1;
+
+    }
+
+}
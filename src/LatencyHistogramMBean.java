@@ -0,0 +1,24 @@
+/*
+
+    The LatencyHistogramMBean interface is the management interface of the LatencyHistogram class,
+    through which the latencies of a stage of the pipeline are read over JMX.
+
+*/
+
+public interface LatencyHistogramMBean
+
+{
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    void reset();
+
+}
@@ -0,0 +1,476 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+
+    The MappedCsvParser class is a purpose-built parser for the fixed-schema comma-separated values
+    (CSV) files in the `data` folder. It memory-maps the file through NIO and tokenises every row in
+    place, so the numeric columns are parsed directly from the mapped bytes into primitives and a
+    String is only created for the text columns that are actually read. The text fields repeat
+    from row to row (the order dates, genders and customer names), so every range keeps a bounded
+    cache of the strings it has decoded, and a field whose bytes are already cached returns the
+    same string without decoding or allocating anything.
+
+    The file can be split into byte ranges that are parsed in parallel by several threads. Every
+    range starts at the beginning of a row, so the files are expected not to contain line breaks
+    inside quoted fields. The parsed records are handed to the consumer in chunks, one chunk at a
+    time, so the consumer does not have to be thread-safe.
+
+*/
+
+public class MappedCsvParser
+
+{
+
+    private static final long MAXIMUM_RANGE_SIZE=1L<<30;    //  Largest range mapped at once, below the limit of a MappedByteBuffer.
+    private static final int INTERNED_STRINGS=4096; //  Number of entries of the cache of the text fields of a range (a power of two).
+
+    private final String csvFile;
+    private final int threads;
+    private final int chunkSize;
+
+    //  Interface to parse a tokenised row into a typed record.
+
+    public interface RowParser<R>
+    {
+        R parse(CsvRow row, int[] columnIndexes);
+    }
+
+    //  Interface to consume a chunk of typed records.
+
+    public interface ChunkConsumer<R>
+    {
+        void accept(List<R> chunk) throws Exception;
+    }
+
+    //  Constructor function.
+
+    public MappedCsvParser(String csvFile, int threads, int chunkSize)
+
+    {
+
+        this.csvFile=csvFile;
+        this.threads=Math.max(1, threads);
+        this.chunkSize=chunkSize;
+
+    }
+
+    //  Class to tokenise the rows of a mapped range of the file.
+
+    private static class MappedRow implements CsvRow
+
+    {
+
+        private final MappedByteBuffer buffer;
+        private int[] starts=new int[16];
+        private int[] ends=new int[16];
+        private boolean[] quoted=new boolean[16];
+        private int fields;
+        private byte[] scratch=new byte[256];
+        private final byte[][] internedBytes=new byte[INTERNED_STRINGS][];   //  Bytes of the string interned in every entry (null for an unused entry).
+        private final String[] internedStrings=new String[INTERNED_STRINGS];
+
+        //  Constructor function.
+
+        public MappedRow(MappedByteBuffer buffer)
+
+        {
+
+            this.buffer=buffer;
+
+        }
+
+        //  Function to tokenise the row starting at the given position, returning the position of the next row.
+
+        public int tokenise(int position, int limit)
+
+        {
+
+            fields=0;
+            while(true)
+            {
+                if(fields==starts.length)
+                {
+                    starts=Arrays.copyOf(starts, fields*2);
+                    ends=Arrays.copyOf(ends, fields*2);
+                    quoted=Arrays.copyOf(quoted, fields*2);
+                }
+                boolean isQuoted=position<limit && buffer.get(position)=='"';
+                int start=isQuoted ? position+1 : position;
+                int end;
+                if(isQuoted)
+                {
+
+                    //  Skipping to the closing quote, treating a doubled quote as an escaped one.
+
+                    position=start;
+                    while(position<limit)
+                    {
+                        if(buffer.get(position)=='"')
+                        {
+                            if(position+1<limit && buffer.get(position+1)=='"')
+                            {
+                                position+=2;
+                                continue;
+                            }
+                            break;
+                        }
+                        position++;
+                    }
+                    end=position;
+                    position=Math.min(limit, position+1);
+                    while(position<limit && buffer.get(position)!=',' && buffer.get(position)!='\n')
+                    {
+                        position++;
+                    }
+                }
+                else
+                {
+                    while(position<limit && buffer.get(position)!=',' && buffer.get(position)!='\n')
+                    {
+                        position++;
+                    }
+                    end=position;
+                    if(end>start && buffer.get(end-1)=='\r')    //  Ignoring the carriage return of Windows line endings.
+                    {
+                        end--;
+                    }
+                }
+                starts[fields]=start;
+                ends[fields]=end;
+                quoted[fields]=isQuoted;
+                fields++;
+                if(position>=limit || buffer.get(position)=='\n')   //  Checking if the row has ended or not.
+                {
+                    return position+1;
+                }
+                position++; //  Skipping the comma.
+            }
+
+        }
+
+        @Override
+        public int size()
+
+        {
+
+            return fields;
+
+        }
+
+        @Override
+        public int getInt(int index)
+
+        {
+
+            if(index>=fields)
+            {
+                throw new NumberFormatException("Missing field "+index+".");
+            }
+            int position=starts[index];
+            int end=ends[index];
+            while(position<end && buffer.get(position)==' ')
+            {
+                position++;
+            }
+            while(end>position && buffer.get(end-1)==' ')
+            {
+                end--;
+            }
+            boolean negative=position<end && buffer.get(position)=='-';
+            if(negative)
+            {
+                position++;
+            }
+            if(position==end)
+            {
+                throw new NumberFormatException("Empty numeric field.");
+            }
+            int limit=negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int value=0;    //  Accumulating negatively, as Integer.parseInt does, so the smallest integer fits as well.
+            for(; position<end; position++)    //  Accumulating the digits straight from the mapped bytes.
+            {
+                int digit=buffer.get(position)-'0';
+                if(digit<0 || digit>9)
+                {
+                    throw new NumberFormatException("Invalid numeric field.");
+                }
+                if(value<limit/10 || value*10<limit+digit)  //  Checking if the value still fits in an integer or not.
+                {
+                    throw new NumberFormatException("Numeric field out of range.");
+                }
+                value=value*10-digit;
+            }
+
+            return negative ? value : -value;
+
+        }
+
+        @Override
+        public String getString(int index)
+
+        {
+
+            if(index>=fields)
+            {
+                throw new NumberFormatException("Missing field "+index+".");
+            }
+            int length=0;
+            int hash=0;
+            if(scratch.length<ends[index]-starts[index])
+            {
+                scratch=new byte[ends[index]-starts[index]];
+            }
+            for(int position=starts[index]; position<ends[index]; position++)
+            {
+                byte value=buffer.get(position);
+                if(quoted[index] && value=='"') //  Collapsing the escaped quotes.
+                {
+                    position++;
+                }
+                scratch[length++]=value;
+                hash=hash*31+value;
+            }
+
+            //  Returning the string already decoded for the same bytes, as the dates and names repeat from row to row.
+
+            int entry=(hash^(hash>>>16))&(INTERNED_STRINGS-1);
+            byte[] bytes=internedBytes[entry];
+            if(bytes!=null && bytes.length==length && equalsScratch(bytes))
+            {
+                return internedStrings[entry];
+            }
+            String text=new String(scratch, 0, length, StandardCharsets.UTF_8);
+            internedBytes[entry]=Arrays.copyOf(scratch, length);    //  Replacing the previous string of the entry, so the cache stays bounded.
+            internedStrings[entry]=text;
+
+            return text;
+
+        }
+
+        //  Function to check if the given bytes are the ones in the scratch array or not.
+
+        private boolean equalsScratch(byte[] bytes)
+
+        {
+
+            for(int i=0; i<bytes.length; i++)
+            {
+                if(bytes[i]!=scratch[i])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+
+        }
+
+    }
+
+    //  Function to parse the file, handing the records to the consumer in chunks.
+
+    public <R> void parse(String[] columns, RowParser<R> rowParser, ChunkConsumer<R> chunkConsumer) throws Exception
+
+    {
+
+        try(FileChannel channel=FileChannel.open(Paths.get(csvFile), StandardOpenOption.READ))
+        {
+            long fileSize=channel.size();
+            if(fileSize==0)
+            {
+                return;
+            }
+
+            //  Reading the header row to resolve the columns.
+
+            MappedByteBuffer headerBuffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 65536));
+            MappedRow headerRow=new MappedRow(headerBuffer);
+            long dataStart=headerRow.tokenise(0, headerBuffer.limit());
+            int[] columnIndexes=resolveColumns(headerRow, columns);
+
+            //  Splitting the rest of the file into ranges that start at the beginning of a row.
+
+            long[] boundaries=splitRanges(channel, dataStart, fileSize);
+            Object consumerLock=new Object();
+            ExecutorService executor=Executors.newFixedThreadPool(Math.min(threads, boundaries.length-1));
+            try
+            {
+                List<Future<Integer>> futures=new ArrayList<>();
+                for(int i=0; i+1<boundaries.length; i++)
+                {
+                    long rangeStart=boundaries[i];
+                    long rangeEnd=boundaries[i+1];
+                    futures.add(executor.submit(()->parseRange(channel, rangeStart, rangeEnd, columnIndexes, rowParser, chunkConsumer, consumerLock)));
+                }
+                int skippedRows=0;
+                for(Future<Integer> future : futures)
+                {
+                    try
+                    {
+                        skippedRows+=future.get();
+                    }
+                    catch(ExecutionException Error)
+                    {
+                        throw (Error.getCause() instanceof Exception) ? (Exception)Error.getCause() : Error;
+                    }
+                }
+                if(skippedRows>0)
+                {
+                    System.out.println("- Ignoring "+skippedRows+" malformed row(s)...");
+                }
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+    }
+
+    //  Function to parse one range of the file, returning the number of malformed rows.
+
+    private <R> int parseRange(FileChannel channel, long rangeStart, long rangeEnd, int[] columnIndexes, RowParser<R> rowParser, ChunkConsumer<R> chunkConsumer, Object consumerLock) throws Exception
+
+    {
+
+        MappedByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, rangeStart, rangeEnd-rangeStart);
+        MappedRow row=new MappedRow(buffer);
+        int limit=buffer.limit();
+        int position=0;
+        int skippedRows=0;
+        List<R> chunk=new ArrayList<>(chunkSize);
+        while(position<limit)
+        {
+            int nextPosition=row.tokenise(position, limit);
+            boolean blankLine=row.size()==1 && row.ends[0]==row.starts[0];
+            position=nextPosition;
+            if(blankLine)
+            {
+                continue;
+            }
+            try
+            {
+                chunk.add(rowParser.parse(row, columnIndexes)); //  Parsing the current row into a record.
+            }
+            catch(NumberFormatException Error)
+            {
+                skippedRows++;  //  Ignoring the malformed rows.
+                continue;
+            }
+            if(chunk.size()>=chunkSize) //  Checking if the chunk is full or not.
+            {
+                synchronized(consumerLock)
+                {
+                    chunkConsumer.accept(chunk);
+                }
+                chunk=new ArrayList<>(chunkSize);
+            }
+        }
+        if(!chunk.isEmpty())    //  Checking if there are any remaining records in the chunk.
+        {
+            synchronized(consumerLock)
+            {
+                chunkConsumer.accept(chunk);
+            }
+        }
+
+        return skippedRows;
+
+    }
+
+    //  Function to split the data of the file into ranges, each ending right after a line break.
+
+    private long[] splitRanges(FileChannel channel, long dataStart, long fileSize) throws IOException
+
+    {
+
+        long dataSize=fileSize-dataStart;
+        int ranges=(int)Math.max(threads, (dataSize+MAXIMUM_RANGE_SIZE-1)/MAXIMUM_RANGE_SIZE);
+        List<Long> boundaries=new ArrayList<>();
+        boundaries.add(dataStart);
+        ByteBuffer probe=ByteBuffer.allocate(4096);
+        for(int i=1; i<ranges; i++)
+        {
+            long boundary=Math.max(boundaries.get(boundaries.size()-1), dataStart+dataSize*i/ranges);
+            boundary=findNextRow(channel, boundary, fileSize, probe);
+            if(boundary>boundaries.get(boundaries.size()-1) && boundary<fileSize)
+            {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(fileSize);
+        long[] result=new long[boundaries.size()];
+        for(int i=0; i<result.length; i++)
+        {
+            result[i]=boundaries.get(i);
+        }
+
+        return result;
+
+    }
+
+    //  Function to find the position right after the next line break.
+
+    private static long findNextRow(FileChannel channel, long position, long fileSize, ByteBuffer probe) throws IOException
+
+    {
+
+        while(position<fileSize)
+        {
+            probe.clear();
+            int read=channel.read(probe, position);
+            if(read<=0)
+            {
+                break;
+            }
+            for(int i=0; i<read; i++)
+            {
+                if(probe.get(i)=='\n')
+                {
+                    return position+i+1;
+                }
+            }
+            position+=read;
+        }
+
+        return fileSize;
+
+    }
+
+    //  Function to find the index of every expected column in the header row.
+
+    public static int[] resolveColumns(CsvRow header, String[] columns) throws IOException
+
+    {
+
+        int[] columnIndexes=new int[columns.length];
+        for(int i=0; i<columns.length; i++)
+        {
+            columnIndexes[i]=-1;
+            for(int j=0; j<header.size(); j++)
+            {
+                if(header.getString(j).trim().equals(columns[i]))
+                {
+                    columnIndexes[i]=j;
+                    break;
+                }
+            }
+            if(columnIndexes[i]<0)
+            {
+                throw new IOException("Column "+columns[i]+" not found in the header.");
+            }
+        }
+
+        return columnIndexes;
+
+    }
+
+}
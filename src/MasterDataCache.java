@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+/*
+
+    The MasterDataCache class is a read-through cache of the master data tuples used by the
+    HybridJoin class, keyed by the product identifier. The keys are kept as primitive ints in an
+    open-addressing hash table, and the entries are linked in least recently used (LRU) order
+    through arrays of slot indexes, so a lookup neither boxes the key nor allocates.
+
+    The number of entries is bounded by the capacity: once the cache is full, the least recently
+    used entry is evicted to make room for the new one. Products without any master data are cached
+    as well, so the stream tuples waiting for them do not query the database again.
+
+*/
+
+public class MasterDataCache
+
+{
+
+    private static final int EMPTY=-1;  //  Marks an unused bucket of the hash table, or the end of the LRU list.
+    public static final HybridJoin.MasterTuple MISSING=new HybridJoin.MasterTuple(0, 0, 0, 0, 0, 0);  //  Cached for the products without any master data.
+
+    private final int capacity;
+    private final int[] buckets;    //  Slot index of the entry stored in every bucket.
+    private final int mask;
+    private final int[] keys;
+    private final HybridJoin.MasterTuple[] values;
+    private final int[] previous;   //  Slot index of the previous entry in LRU order.
+    private final int[] next;   //  Slot index of the next entry in LRU order.
+    private int size;
+    private int head=EMPTY; //  Most recently used entry.
+    private int tail=EMPTY; //  Least recently used entry.
+    private volatile long hits; //  Written by the owning worker only, and read by the pipeline metrics.
+    private volatile long misses;
+    private volatile long evictions;
+
+    //  Constructor function.
+
+    public MasterDataCache(int capacity)
+
+    {
+
+        this.capacity=Math.max(0, capacity);
+        int tableSize=2;
+        while(tableSize<this.capacity*2)    //  Keeping the load factor of the hash table at most one half.
+        {
+            tableSize<<=1;
+        }
+        this.buckets=new int[tableSize];
+        Arrays.fill(buckets, EMPTY);
+        this.mask=tableSize-1;
+        this.keys=new int[this.capacity];
+        this.values=new HybridJoin.MasterTuple[this.capacity];
+        this.previous=new int[this.capacity];
+        this.next=new int[this.capacity];
+
+    }
+
+    //  Function to return the cached tuple of a product (MISSING if it has no master data), or null on a cache miss.
+
+    public HybridJoin.MasterTuple get(int productID)
+
+    {
+
+        int slot=findSlot(productID);
+        if(slot==EMPTY)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        moveToHead(slot);   //  Marking the entry as the most recently used one.
+
+        return values[slot];
+
+    }
+
+    //  Function to cache the master data tuple of a product.
+
+    public void put(int productID, HybridJoin.MasterTuple masterTuple)
+
+    {
+
+        if(capacity==0)
+        {
+            return;
+        }
+        int slot=findSlot(productID);
+        if(slot!=EMPTY) //  Checking if the product is already cached or not.
+        {
+            values[slot]=masterTuple;
+            moveToHead(slot);
+            return;
+        }
+        if(size<capacity)
+        {
+            slot=size++;
+        }
+        else
+        {
+            slot=tail;  //  Evicting the least recently used entry.
+            removeFromTable(keys[slot]);
+            unlink(slot);
+            evictions++;
+        }
+        keys[slot]=productID;
+        values[slot]=masterTuple;
+        int bucket=hash(productID);
+        while(buckets[bucket]!=EMPTY)
+        {
+            bucket=(bucket+1)&mask;
+        }
+        buckets[bucket]=slot;
+        linkAtHead(slot);
+
+    }
+
+    //  Function to cache a product without any master data.
+
+    public void putMissing(int productID)
+
+    {
+
+        put(productID, MISSING);
+
+    }
+
+    //  Function to return the number of lookups served from the cache.
+
+    public long getHits()
+
+    {
+
+        return hits;
+
+    }
+
+    //  Function to return the number of lookups not served from the cache.
+
+    public long getMisses()
+
+    {
+
+        return misses;
+
+    }
+
+    //  Function to return the number of entries evicted to make room for new ones.
+
+    public long getEvictions()
+
+    {
+
+        return evictions;
+
+    }
+
+    //  Function to return the number of cached entries.
+
+    public int size()
+
+    {
+
+        return size;
+
+    }
+
+    //  Function to find the slot of a product, or EMPTY if it is not cached.
+
+    private int findSlot(int productID)
+
+    {
+
+        if(capacity==0)
+        {
+            return EMPTY;
+        }
+        int bucket=hash(productID);
+        while(buckets[bucket]!=EMPTY)
+        {
+            if(keys[buckets[bucket]]==productID)
+            {
+                return buckets[bucket];
+            }
+            bucket=(bucket+1)&mask;
+        }
+
+        return EMPTY;
+
+    }
+
+    //  Function to remove a product from the hash table, shifting back the entries that follow it.
+
+    private void removeFromTable(int productID)
+
+    {
+
+        int bucket=hash(productID);
+        while(keys[buckets[bucket]]!=productID)
+        {
+            bucket=(bucket+1)&mask;
+        }
+        buckets[bucket]=EMPTY;
+        int current=(bucket+1)&mask;
+        while(buckets[current]!=EMPTY)  //  Moving the following entries into the gap when their home bucket allows it.
+        {
+            int home=hash(keys[buckets[current]]);
+            if(((current-home)&mask)>=((current-bucket)&mask))
+            {
+                buckets[bucket]=buckets[current];
+                buckets[current]=EMPTY;
+                bucket=current;
+            }
+            current=(current+1)&mask;
+        }
+
+    }
+
+    //  Function to compute the home bucket of a product.
+
+    private int hash(int productID)
+
+    {
+
+        int hash=productID*0x9E3779B9;  //  Spreading the sequential identifiers over the table.
+
+        return (hash^(hash>>>16))&mask;
+
+    }
+
+    //  Function to move an entry to the head of the LRU list.
+
+    private void moveToHead(int slot)
+
+    {
+
+        if(slot!=head)
+        {
+            unlink(slot);
+            linkAtHead(slot);
+        }
+
+    }
+
+    //  Function to insert an entry at the head of the LRU list.
+
+    private void linkAtHead(int slot)
+
+    {
+
+        previous[slot]=EMPTY;
+        next[slot]=head;
+        if(head!=EMPTY)
+        {
+            previous[head]=slot;
+        }
+        head=slot;
+        if(tail==EMPTY)
+        {
+            tail=slot;
+        }
+
+    }
+
+    //  Function to remove an entry from the LRU list.
+
+    private void unlink(int slot)
+
+    {
+
+        if(previous[slot]!=EMPTY)
+        {
+            next[previous[slot]]=next[slot];
+        }
+        else
+        {
+            head=next[slot];
+        }
+        if(next[slot]!=EMPTY)
+        {
+            previous[next[slot]]=previous[slot];
+        }
+        else
+        {
+            tail=previous[slot];
+        }
+
+    }
+
+}
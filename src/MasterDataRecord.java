@@ -0,0 +1,59 @@
+/*
+
+    The MasterDataRecord class is the typed form of a row of the `master_data.csv` file. The
+    identifiers are parsed once while streaming the file, while the product price is kept as
+    written, since it is transformed either by the StreamGenerator class or by the database.
+
+*/
+
+public class MasterDataRecord
+
+{
+
+    //  Columns of the `master_data.csv` file, in the order expected by the fromRow function.
+
+    public static final String[] COLUMNS={"productID", "productName", "productPrice", "supplierID", "supplierName", "storeID", "storeName"};
+
+    public final int productID;
+    public final String productName;
+    public final String productPrice;
+    public final int supplierID;
+    public final String supplierName;
+    public final int storeID;
+    public final String storeName;
+
+    //  Constructor function.
+
+    public MasterDataRecord(int productID, String productName, String productPrice, int supplierID, String supplierName, int storeID, String storeName)
+
+    {
+
+        this.productID=productID;
+        this.productName=productName;
+        this.productPrice=productPrice;
+        this.supplierID=supplierID;
+        this.supplierName=supplierName;
+        this.storeID=storeID;
+        this.storeName=storeName;
+
+    }
+
+    //  Function to create a record from a row, given the index of every column in the header.
+
+    public static MasterDataRecord fromRow(CsvRow row, int[] columnIndexes)
+
+    {
+
+        return new MasterDataRecord(
+            row.getInt(columnIndexes[0]),
+            row.getString(columnIndexes[1]),
+            row.getString(columnIndexes[2]),
+            row.getInt(columnIndexes[3]),
+            row.getString(columnIndexes[4]),
+            row.getInt(columnIndexes[5]),
+            row.getString(columnIndexes[6])
+        );
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+
+    The PendingBatches class is the queue of the batches not yet acknowledged, used by the
+    StreamCheckpoint and HybridJoin classes. Every batch is stored as an array of longs, in a ring
+    buffer, and gets a consecutive ordinal when it is added, so the batch of a given ordinal is found
+    in constant time instead of by scanning the queue, however many batches are pending.
+
+*/
+
+public class PendingBatches
+
+{
+
+    private long[][] batches=new long[16][];
+    private int head;   //  Index of the oldest batch in the ring buffer.
+    private int size;
+    private long firstOrdinal;  //  Ordinal of the oldest batch.
+
+    //  Function to add a batch at the end of the queue, returning its ordinal.
+
+    public long add(long[] batch)
+
+    {
+
+        if(size==batches.length)
+        {
+            grow();
+        }
+        batches[(head+size)&(batches.length-1)]=batch;
+        size++;
+
+        return firstOrdinal+size-1;
+
+    }
+
+    //  Function to return the batch of an ordinal, or null if it has already left the queue.
+
+    public long[] get(long ordinal)
+
+    {
+
+        long index=ordinal-firstOrdinal;
+        if(index<0 || index>=size)
+        {
+            return null;
+        }
+
+        return batches[(int)((head+index)&(batches.length-1))];
+
+    }
+
+    //  Function to return the oldest batch, or null if the queue is empty.
+
+    public long[] peek()
+
+    {
+
+        return size==0 ? null : batches[head];
+
+    }
+
+    //  Function to remove and return the oldest batch, or null if the queue is empty.
+
+    public long[] poll()
+
+    {
+
+        if(size==0)
+        {
+            return null;
+        }
+        long[] batch=batches[head];
+        batches[head]=null;
+        head=(head+1)&(batches.length-1);
+        size--;
+        firstOrdinal++;
+
+        return batch;
+
+    }
+
+    //  Function to check if the queue is empty or not.
+
+    public boolean isEmpty()
+
+    {
+
+        return size==0;
+
+    }
+
+    //  Function to double the ring buffer, moving the batches to its start.
+
+    private void grow()
+
+    {
+
+        long[][] grown=new long[batches.length*2][];
+        int firstPart=Math.min(size, batches.length-head);
+        System.arraycopy(batches, head, grown, 0, firstPart);
+        System.arraycopy(batches, 0, grown, firstPart, size-firstPart);
+        batches=grown;
+        head=0;
+
+    }
+
+}
@@ -0,0 +1,128 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/*
+
+    The PipelineConfig class holds the configuration of the pipeline: the connection settings of
+    the MySQL server and the options of the StreamGenerator, HybridJoin and Controller classes.
+
+    The settings are read from the `pipeline.properties` file in the working directory (or the file
+    given with `--config=<file>`) when it exists, and every setting can then be overridden on the
+    command line with `--<key>=<value>`. Any setting missing from both keeps its default value.
+
+*/
+
+public class PipelineConfig
+
+{
+
+    public static final String DEFAULT_CONFIG_FILE="pipeline.properties";
+
+    private final Properties properties=new Properties();
+
+    //  Constructor function.
+
+    public PipelineConfig(String[] args) throws IOException
+
+    {
+
+        String configFile=DEFAULT_CONFIG_FILE;
+        for(String arg : args)
+        {
+            if(arg.startsWith("--config="))
+            {
+                configFile=arg.substring("--config=".length());
+            }
+        }
+        if(Files.exists(Paths.get(configFile)))  //  Reading the properties file, if there is one.
+        {
+            try(InputStream inputStream=new FileInputStream(configFile))
+            {
+                properties.load(inputStream);
+            }
+            System.out.println("- Configuration read from "+configFile+".");
+        }
+
+        //  Overriding the settings given on the command line.
+
+        for(String arg : args)
+        {
+            if(!arg.startsWith("--") || arg.startsWith("--config="))
+            {
+                continue;
+            }
+            int separator=arg.indexOf('=');
+            if(separator<0)
+            {
+                throw new IllegalArgumentException("Expected --<key>=<value>, found "+arg+".");
+            }
+            properties.setProperty(arg.substring(2, separator), arg.substring(separator+1));
+        }
+
+    }
+
+    //  Function to return a text setting.
+
+    public String getString(String key, String defaultValue)
+
+    {
+
+        String value=properties.getProperty(key);
+
+        return value==null ? defaultValue : value.trim();
+
+    }
+
+    //  Function to return an integer setting.
+
+    public int getInt(String key, int defaultValue)
+
+    {
+
+        String value=properties.getProperty(key);
+
+        return value==null ? defaultValue : Integer.parseInt(value.trim());
+
+    }
+
+    //  Function to return a long integer setting.
+
+    public long getLong(String key, long defaultValue)
+
+    {
+
+        String value=properties.getProperty(key);
+
+        return value==null ? defaultValue : Long.parseLong(value.trim());
+
+    }
+
+    //  Function to return a boolean setting.
+
+    public boolean getBoolean(String key, boolean defaultValue)
+
+    {
+
+        String value=properties.getProperty(key);
+
+        return value==null ? defaultValue : Boolean.parseBoolean(value.trim());
+
+    }
+
+    //  Function to return a setting naming a constant of an enumeration.
+
+    public <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue)
+
+    {
+
+        String value=properties.getProperty(key);
+
+        return value==null ? defaultValue : Enum.valueOf(type, value.trim().toUpperCase());
+
+    }
+
+}
@@ -0,0 +1,42 @@
+import java.util.concurrent.CountDownLatch;
+
+/*
+
+    The PipelineContext class holds what the stages of the pipeline share: the executor running them,
+    the pool of connections, the loader of the tables, the latch released once the master data has
+    been loaded, the reporter and the metrics registry. The optional parts, the sales cube, the
+    checkpoint and the publisher of the dimension snapshots, are null unless the Controller class
+    enables them. The stages read the context once, when they are created.
+
+*/
+
+public class PipelineContext
+
+{
+
+    public final PipelineExecutor pipelineExecutor;
+    public final ConnectionPool connectionPool;
+    public final BulkLoader bulkLoader;
+    public final CountDownLatch masterDataLoaded;   //  Released by the StreamGenerator class once the master data has been committed.
+    public final ResultReporter resultReporter;
+    public final PipelineMetrics pipelineMetrics;
+    public SalesCube salesCube; //  Aggregate of the joined facts (or null).
+    public StreamCheckpoint streamCheckpoint;   //  Checkpoint of the stream (or null).
+    public DimensionUpdater dimensionUpdater;   //  Publisher of the snapshots of the master data (or null).
+
+    //  Constructor function.
+
+    public PipelineContext(PipelineExecutor pipelineExecutor, ConnectionPool connectionPool, BulkLoader bulkLoader, CountDownLatch masterDataLoaded, ResultReporter resultReporter, PipelineMetrics pipelineMetrics)
+
+    {
+
+        this.pipelineExecutor=pipelineExecutor;
+        this.connectionPool=connectionPool;
+        this.bulkLoader=bulkLoader;
+        this.masterDataLoaded=masterDataLoaded;
+        this.resultReporter=resultReporter;
+        this.pipelineMetrics=pipelineMetrics;
+
+    }
+
+}
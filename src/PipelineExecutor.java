@@ -0,0 +1,169 @@
+import java.sql.SQLException;
+import java.util.concurrent.*;
+
+/*
+
+    The PipelineExecutor class runs the stages of the pipeline (the StreamGenerator class, the
+    HybridJoin workers and the Controller class) and the blocking database tasks submitted by them.
+
+    In the platform-thread mode, every stage and task runs on a platform thread of a cached pool,
+    and the stages keep their database round trips synchronous, as before. In the virtual-thread
+    mode, a new virtual thread is started per stage and task, so the dimension loaders and fact
+    commits can run as many concurrent tasks whose blocking round trips overlap. The join lookups
+    are not split into tasks: every HybridJoin worker runs its lookups one at a time, so their
+    concurrency is the number of workers. Virtual threads are looked up at runtime, so the class
+    still compiles for Java 8, but the virtual-thread mode must run on a JDK 21 (or later) runtime:
+    on an older runtime, the configuration is rejected instead of silently falling back to platform
+    threads.
+
+    In both modes, the number of concurrent database round trips is bounded by a semaphore, so the
+    concurrency of the tasks never exceeds what the MySQL server is configured to accept.
+
+*/
+
+public class PipelineExecutor implements AutoCloseable
+
+{
+
+    //  Modes in which the stages and tasks of the pipeline are run.
+
+    public enum ThreadMode
+    {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    //  Interface to perform a blocking database round trip.
+
+    public interface DatabaseCall<T>
+    {
+        T call() throws SQLException;
+    }
+
+    private final ThreadMode threadMode;
+    private final ExecutorService executor;
+    private final Semaphore connectionPermits;  //  Bounding the number of concurrent database round trips.
+
+    //  Constructor function.
+
+    public PipelineExecutor(ThreadMode threadMode, int maximumConnections)
+
+    {
+
+        this.threadMode=threadMode;
+        this.executor=threadMode==ThreadMode.VIRTUAL ? newVirtualThreadExecutor() : Executors.newCachedThreadPool();
+        this.connectionPermits=new Semaphore(Math.max(1, maximumConnections), true);
+
+    }
+
+    //  Function to create an executor starting a new virtual thread per task, failing if the runtime has no virtual threads.
+
+    private static ExecutorService newVirtualThreadExecutor()
+
+    {
+
+        try
+        {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException Error)
+        {
+            throw new IllegalArgumentException("threadMode=VIRTUAL requires a JDK 21 (or later) runtime, found Java "+System.getProperty("java.version")+".", Error);
+        }
+
+    }
+
+    //  Function to check if the stages and tasks run on virtual threads or not.
+
+    public boolean isVirtual()
+
+    {
+
+        return threadMode==ThreadMode.VIRTUAL;
+
+    }
+
+    //  Function to start a stage of the pipeline.
+
+    public Future<?> start(Runnable stage)
+
+    {
+
+        return executor.submit(stage);
+
+    }
+
+    //  Function to submit a task of a stage.
+
+    public <T> Future<T> submit(Callable<T> task)
+
+    {
+
+        return executor.submit(task);
+
+    }
+
+    //  Function to perform a database round trip once a connection permit is available.
+
+    public <T> T withPermit(DatabaseCall<T> call) throws SQLException
+
+    {
+
+        try
+        {
+            connectionPermits.acquire();
+        }
+        catch(InterruptedException Error)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection permit.", Error);
+        }
+        try
+        {
+            return call.call();
+        }
+        finally
+        {
+            connectionPermits.release();
+        }
+
+    }
+
+    //  Function to wait for a task, rethrowing its database error.
+
+    public static <T> T await(Future<T> future) throws SQLException
+
+    {
+
+        try
+        {
+            return future.get();
+        }
+        catch(InterruptedException Error)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a task.", Error);
+        }
+        catch(ExecutionException Error)
+        {
+            if(Error.getCause() instanceof SQLException)
+            {
+                throw (SQLException)Error.getCause();
+            }
+            throw new SQLException(Error.getCause());
+        }
+
+    }
+
+    //  Function to stop accepting new stages and tasks.
+
+    @Override
+    public void close()
+
+    {
+
+        executor.shutdown();
+
+    }
+
+}
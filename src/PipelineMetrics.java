@@ -0,0 +1,311 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import javax.management.*;
+
+/*
+
+    The PipelineMetrics class gathers the instrumentation of the pipeline: a latency histogram per
+    stage (parsing, dimension loads, waits on the stream buffer, master data lookups, fact inserts
+    and commits), and gauges read on demand from the StreamGenerator, HybridJoin and Controller
+    classes (stream buffer depth, multi-hash table size, cache hit rate, throughput and the rates of
+    the control loop).
+
+    Every histogram is registered as an MBean named `Electronica_DW:type=Stage,name=<stage>`, and
+    the gauges as the attributes of the `Electronica_DW:type=Pipeline` MBean, so they can be read
+    with JConsole or any JMX client while the pipeline runs. When a log file is configured, the
+    class also runs as a stage of the pipeline appending a line per stage and per gauge to the file
+    at every interval.
+
+*/
+
+public class PipelineMetrics implements DynamicMBean, Runnable
+
+{
+
+    //  Names of the stages whose latencies are recorded.
+
+    public static final String PARSE="parse";
+    public static final String DIMENSION_LOAD="dimensionLoad";
+    public static final String BUFFER_PUT="bufferPut";
+    public static final String BUFFER_TAKE="bufferTake";
+    public static final String LOOKUP="lookup";
+    public static final String INSERT="insert";
+    public static final String COMMIT="commit";
+
+    private static final String DOMAIN="Electronica_DW";
+
+    private final Map<String, LatencyHistogram> histograms=new ConcurrentSkipListMap<>();
+    private final Map<String, Supplier<Number>> gauges=new ConcurrentSkipListMap<>();
+    private final Map<ObjectName, Object> registeredBeans=new ConcurrentHashMap<>();
+    private final String logPath;
+    private final long logInterval;
+    private boolean running=true;   //  Guarded by the lock of the instance, which the logging stage waits on.
+
+    //  Constructor function.
+
+    public PipelineMetrics(String logPath, long logInterval)
+
+    {
+
+        this.logPath=logPath;
+        this.logInterval=Math.max(1, logInterval);
+        register("type=Pipeline", this);
+
+    }
+
+    //  Function to return the histogram of a stage, creating and registering it on first use.
+
+    public LatencyHistogram histogram(String stage)
+
+    {
+
+        return histograms.computeIfAbsent(stage, name->{
+            LatencyHistogram histogram=new LatencyHistogram(name);
+            register("type=Stage,name="+name, histogram);
+            return histogram;
+        });
+
+    }
+
+    //  Function to add a gauge, read every time the attribute is read or logged.
+
+    public void gauge(String name, Supplier<Number> supplier)
+
+    {
+
+        gauges.put(name, supplier);
+
+    }
+
+    //  Function to check if the metrics are logged to a file or not.
+
+    public boolean isLogEnabled()
+
+    {
+
+        return logPath!=null;
+
+    }
+
+    //  Function to stop the logging stage, once it has written the last values.
+
+    public synchronized void stop()
+
+    {
+
+        running=false;
+        notifyAll();    //  Waking the logging stage up, so the last values are written now.
+
+    }
+
+    //  Driver function, appending the metrics to the log file at every interval.
+
+    @Override
+    public void run()
+
+    {
+
+        try(PrintWriter writer=new PrintWriter(new FileWriter(logPath, true)))
+        {
+            while(awaitNextDump())
+            {
+                writeSnapshot(writer);
+            }
+            writeSnapshot(writer);
+        }
+        catch(IOException Error)
+        {
+            Error.printStackTrace();
+        }
+
+    }
+
+    //  Function to wait for the next dump, returning false once the stage has been stopped.
+
+    private synchronized boolean awaitNextDump()
+
+    {
+
+        long deadline=System.currentTimeMillis()+logInterval;
+        long remaining;
+        while(running && (remaining=deadline-System.currentTimeMillis())>0)
+        {
+            try
+            {
+                wait(remaining);
+            }
+            catch(InterruptedException Error)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return running;
+
+    }
+
+    //  Function to write the current value of every histogram and gauge.
+
+    private void writeSnapshot(PrintWriter writer)
+
+    {
+
+        String timestamp=LocalDateTime.now().toString();
+        for(LatencyHistogram histogram : histograms.values())
+        {
+            writer.printf("%s stage=%s count=%d mean_us=%.1f p50_us=%.1f p99_us=%.1f max_us=%.1f\n", timestamp, histogram.getName(),
+                histogram.getCount(), histogram.getMeanMicros(), histogram.getP50Micros(), histogram.getP99Micros(), histogram.getMaxMicros());
+        }
+        for(Map.Entry<String, Supplier<Number>> gauge : gauges.entrySet())
+        {
+            writer.println(timestamp+" gauge="+gauge.getKey()+" value="+gauge.getValue().get());
+        }
+        writer.flush();
+
+    }
+
+    //  Function to unregister the MBeans.
+
+    public void close()
+
+    {
+
+        MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+        for(ObjectName objectName : registeredBeans.keySet())
+        {
+            try
+            {
+                server.unregisterMBean(objectName);
+            }
+            catch(JMException Error)
+            {
+                //  Ignoring the error, as the MBean is gone anyway.
+            }
+        }
+        registeredBeans.clear();
+
+    }
+
+    //  Function to register an MBean, replacing the one left by a previous run in the same process.
+
+    private void register(String properties, Object bean)
+
+    {
+
+        try
+        {
+            MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName=new ObjectName(DOMAIN+":"+properties);
+            if(server.isRegistered(objectName))
+            {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+            registeredBeans.put(objectName, bean);
+        }
+        catch(JMException Error)
+        {
+            Error.printStackTrace();    //  Leaving the metrics out of JMX, as they are still recorded.
+        }
+
+    }
+
+    //  Function to read a gauge over JMX.
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+
+    {
+
+        Supplier<Number> gauge=gauges.get(attribute);
+        if(gauge==null)
+        {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return gauge.get();
+
+    }
+
+    //  Function to refuse the writes over JMX, as every gauge is read-only.
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+
+    {
+
+        throw new AttributeNotFoundException("The attribute "+attribute.getName()+" is read-only.");
+
+    }
+
+    //  Function to read several gauges over JMX.
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+
+    {
+
+        AttributeList values=new AttributeList();
+        for(String attribute : attributes)
+        {
+            Supplier<Number> gauge=gauges.get(attribute);
+            if(gauge!=null)
+            {
+                values.add(new Attribute(attribute, gauge.get()));
+            }
+        }
+
+        return values;
+
+    }
+
+    //  Function to refuse the writes over JMX, returning the attributes set (none).
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+
+    {
+
+        return new AttributeList();
+
+    }
+
+    //  Function to refuse the operations over JMX, as there are none.
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+
+    {
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+
+    }
+
+    //  Function to describe the gauges registered so far as the attributes of the MBean.
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+
+    {
+
+        List<MBeanAttributeInfo> attributes=new ArrayList<>();
+        for(String name : gauges.keySet())
+        {
+            attributes.add(new MBeanAttributeInfo(name, Number.class.getName(), name, true, false, false));
+        }
+
+        return new MBeanInfo(getClass().getName(), "Gauges of the Electronica_DW pipeline.", attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+
+    }
+
+}
@@ -0,0 +1,269 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+
+    The ResultReporter class is the reporting stage of the pipeline. The HybridJoin workers (through
+    their FactWriter) and the StreamGenerator class only publish to it: the committed rows go into a
+    bounded ring buffer and the numbers of streamed, shed and committed rows into counters, so none of
+    them waits on the console. The reporter thread drains the ring buffer and does all the printing.
+
+    The verbosity setting decides what is printed:
+
+    - NONE: nothing at all.
+    - SUMMARY: a throughput summary at every report interval.
+    - SAMPLED: the summaries, and one committed row out of every `sampleRate` rows.
+    - ALL: the summaries, and every committed row.
+
+    Publishing a row never blocks: a row that finds the ring buffer full is dropped and counted, and
+    the number of dropped rows is part of the next summary.
+
+*/
+
+public class ResultReporter implements Runnable
+
+{
+
+    //  Enumeration of the verbosity levels of the report.
+
+    public enum Verbosity
+    {
+        NONE,
+        SUMMARY,
+        SAMPLED,
+        ALL
+    }
+
+    private static final int FIELDS=4;  //  Number of int fields stored per row.
+    private static final int HEADER_INTERVAL=50;    //  Number of rows printed between two headers of the table.
+    private static final long IDLE_WAIT=1_000_000;  //  Time waited when the ring buffer is empty (nanoseconds).
+
+    private final Verbosity verbosity;
+    private final int sampleRate;
+    private final long reportInterval;  //  Interval between two summaries (milliseconds).
+    private final int mask;
+    private final int[] rowFields;  //  Product, customer, time and store identifiers of every row in the ring buffer.
+    private final long[] rowTotals; //  Total sale (in cents) of every row in the ring buffer.
+    private final AtomicLongArray publishedSequences;   //  Sequence number of the row stored in every slot, once it is readable.
+    private final AtomicLong claimedSequence=new AtomicLong();  //  Next sequence number claimed by a publisher.
+    private volatile long consumedSequence; //  Next sequence number read by the reporter thread.
+    private final LongAdder streamedRows=new LongAdder();
+    private final LongAdder shedRows=new LongAdder();
+    private final LongAdder committedRows=new LongAdder();
+    private final LongAdder droppedRows=new LongAdder();
+    private volatile boolean running=true;
+    private int printedRows;
+
+    //  Constructor function.
+
+    public ResultReporter(Verbosity verbosity, int sampleRate, long reportInterval, int bufferCapacity)
+
+    {
+
+        this.verbosity=verbosity;
+        this.sampleRate=Math.max(1, sampleRate);
+        this.reportInterval=Math.max(1, reportInterval);
+        int capacity=1;
+        while(capacity<Math.max(2, bufferCapacity)) //  Rounding the capacity up to a power of two.
+        {
+            capacity<<=1;
+        }
+        this.mask=capacity-1;
+        this.rowFields=new int[capacity*FIELDS];
+        this.rowTotals=new long[capacity];
+        this.publishedSequences=new AtomicLongArray(capacity);
+        for(int i=0; i<capacity; i++)
+        {
+            publishedSequences.set(i, -1);
+        }
+
+    }
+
+    //  Function to return the rate at which the committed rows should be published (one row out of this many), or 0 if they are not reported.
+
+    public int getRowSampleRate()
+
+    {
+
+        switch(verbosity)
+        {
+            case ALL:
+                return 1;
+            case SAMPLED:
+                return sampleRate;
+            default:
+                return 0;
+        }
+
+    }
+
+    //  Function to check if the summaries are printed or not.
+
+    public boolean isSummaryEnabled()
+
+    {
+
+        return verbosity!=Verbosity.NONE;
+
+    }
+
+    //  Function to publish a committed row to the ring buffer, dropping it if the buffer is full.
+
+    public void publishRow(int productID, int customerID, int timeID, int storeID, long totalSaleCents)
+
+    {
+
+        long sequence;
+        do
+        {
+            sequence=claimedSequence.get();
+            if(sequence-consumedSequence>mask)  //  Checking if the ring buffer is full or not.
+            {
+                droppedRows.increment();
+                return;
+            }
+        }
+        while(!claimedSequence.compareAndSet(sequence, sequence+1));
+        int slot=(int)sequence&mask;
+        int offset=slot*FIELDS;
+        rowFields[offset]=productID;
+        rowFields[offset+1]=customerID;
+        rowFields[offset+2]=timeID;
+        rowFields[offset+3]=storeID;
+        rowTotals[slot]=totalSaleCents;
+        publishedSequences.lazySet(slot, sequence); //  Making the row readable once its fields are written.
+
+    }
+
+    //  Function to count the rows streamed to the HybridJoin workers.
+
+    public void recordStreamed(int rows)
+
+    {
+
+        streamedRows.add(rows);
+
+    }
+
+    //  Function to count the rows shed by a full stream buffer.
+
+    public void recordShed(int rows)
+
+    {
+
+        shedRows.add(rows);
+
+    }
+
+    //  Function to count the rows committed to the `Sales_Fact` table.
+
+    public void recordCommitted(int rows)
+
+    {
+
+        committedRows.add(rows);
+
+    }
+
+    //  Function to return the number of rows committed so far.
+
+    public long getCommittedRows()
+
+    {
+
+        return committedRows.sum();
+
+    }
+
+    //  Function to stop the reporter thread once it has printed the rows already published.
+
+    public void stop()
+
+    {
+
+        running=false;
+
+    }
+
+    //  Driver function.
+
+    @Override
+    public void run()
+
+    {
+
+        long lastTime=System.nanoTime();
+        long nextSummary=System.currentTimeMillis()+reportInterval;
+        long lastCommitted=0;
+        while(running)
+        {
+            if(drainRows()==0)
+            {
+                LockSupport.parkNanos(IDLE_WAIT);   //  Waiting for new rows without spinning.
+            }
+            if(System.currentTimeMillis()>=nextSummary) //  Checking if the next summary is due or not.
+            {
+                long currentTime=System.nanoTime();
+                long committed=committedRows.sum();
+                printSummary((committed-lastCommitted)/((currentTime-lastTime)/1e9));
+                lastTime=currentTime;
+                lastCommitted=committed;
+                nextSummary+=reportInterval;
+            }
+        }
+        drainRows();
+        long committed=committedRows.sum();
+        printSummary((committed-lastCommitted)/Math.max(1e-9, (System.nanoTime()-lastTime)/1e9));
+
+    }
+
+    //  Function to print the rows published so far, returning their number.
+
+    private int drainRows()
+
+    {
+
+        int drained=0;
+        long sequence=consumedSequence;
+        while(true)
+        {
+            int slot=(int)sequence&mask;
+            if(publishedSequences.get(slot)!=sequence)  //  Checking if the next row has been written or not.
+            {
+                break;
+            }
+            int offset=slot*FIELDS;
+            if(printedRows%HEADER_INTERVAL==0)
+            {
+                System.out.printf("| %-10s | %-12s | %-8s | %-8s | %-10s |\n", "Product ID", "Customer ID", "Time ID", "Store ID", "Total Sale");
+                System.out.println("+------------+--------------+----------+----------+------------+");
+            }
+            System.out.printf("| %-10d | %-12d | %-8d | %-8d | %-10.2f |\n", rowFields[offset], rowFields[offset+1], rowFields[offset+2], rowFields[offset+3], rowTotals[slot]/100.0);
+            printedRows++;
+            sequence++;
+            consumedSequence=sequence;  //  Freeing the slot for the publishers.
+            drained++;
+        }
+
+        return drained;
+
+    }
+
+    //  Function to print the throughput summary.
+
+    private void printSummary(double commitRate)
+
+    {
+
+        if(!isSummaryEnabled())
+        {
+            return;
+        }
+        System.out.printf("- Reporter: %d row(s) streamed, %d row(s) shed, %d row(s) committed (%.0f row(s)/s), %d row(s) left out of the report\n",
+            streamedRows.sum(), shedRows.sum(), committedRows.sum(), commitRate, droppedRows.sum());
+
+    }
+
+}
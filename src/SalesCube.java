@@ -0,0 +1,707 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+
+    The SalesCube class is an in-memory aggregate of the `Sales_Fact` table, maintained by the
+    HybridJoin workers as every fact is joined, so the analytical reports of the `queriesDW.sql`
+    file are answered from memory instead of joining the dimension tables in MySQL.
+
+    The cube is made of cells, one per combination of supplier, product, store, year, quarter,
+    month and day of the week, each holding the quantity ordered and the total sales (in cents) of
+    its facts. The quarter is determined by the month, so it adds no cells. The supplier is part of
+    the key of a cell, as a master data change can move a product to another supplier: the facts
+    joined after the change then go to the cells of the new supplier, and the ones joined before it
+    stay with the old one. The cells are read with two operations:
+
+    - groupBy: the totals of the cells matching a filter, grouped by the given dimensions.
+    - rollup: the same, with the subtotal of every prefix of the dimensions (as `WITH ROLLUP`).
+
+    The filters slice and dice the cube by dimension values (see the where function), and combine
+    with the and function. The days of the week follow ISO-8601: 1 is Monday and 7 is Sunday.
+
+    The cells are stored in segments, each an open-addressing hash table of primitive arrays guarded
+    by its own lock, so adding a fact neither allocates nor boxes: its key is packed into two longs
+    (the product and store, and the supplier and order date), and its totals are added in place. The
+    cells of a product are all in the same segment, and the workers adding the facts of different
+    products rarely share a lock. The reports read the cells in place, one segment at a time under its
+    lock, and add them to an open-addressing table of primitive arrays keyed by the grouped values, so
+    a report only allocates its rows.
+
+    The cube is only maintained in the direct join mode, where every joined tuple carries its order
+    date. It is off by default, as it adds work to every joined fact.
+
+*/
+
+public class SalesCube
+
+{
+
+    public static final int ALL=Integer.MIN_VALUE; //  Value of a dimension rolled up in a subtotal row.
+
+    //  Dimensions of the cube.
+
+    public enum Dimension
+    {
+        SUPPLIER,
+        PRODUCT,
+        STORE,
+        YEAR,
+        QUARTER,
+        MONTH,
+        DAY_OF_WEEK
+    }
+
+    private static final int SEGMENT_BITS=6;    //  Number of bits of the product hash selecting the segment of a cell.
+
+    private static final Dimension[] DIMENSIONS=Dimension.values();
+
+    private final Segment[] segments=new Segment[1<<SEGMENT_BITS];
+    private final Map<Integer, String> productNames=new ConcurrentHashMap<>();
+    private final Map<Integer, String> supplierNames=new ConcurrentHashMap<>();
+
+    //  Class to filter the cells of the cube by the values of their dimensions.
+
+    public static final class Filter
+
+    {
+
+        private final int[][] values=new int[DIMENSIONS.length][];  //  Sorted values kept for every dimension (null to keep any value).
+
+        //  Function to create a filter keeping the cells matched by both filters.
+
+        public Filter and(Filter other)
+
+        {
+
+            Filter filter=new Filter();
+            for(int i=0; i<values.length; i++)
+            {
+                if(values[i]==null || other.values[i]==null)
+                {
+                    filter.values[i]=values[i]==null ? other.values[i] : values[i];
+                }
+                else
+                {
+                    int[] kept=new int[Math.min(values[i].length, other.values[i].length)];
+                    int count=0;
+                    for(int value : values[i])
+                    {
+                        if(Arrays.binarySearch(other.values[i], value)>=0)
+                        {
+                            kept[count++]=value;
+                        }
+                    }
+                    filter.values[i]=Arrays.copyOf(kept, count);
+                }
+            }
+
+            return filter;
+
+        }
+
+        //  Function to check if a cell is kept or not, given the values of its dimensions.
+
+        private boolean test(int[] cellValues)
+
+        {
+
+            for(int i=0; i<values.length; i++)
+            {
+                if(values[i]!=null && Arrays.binarySearch(values[i], cellValues[i])<0)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+
+        }
+
+    }
+
+    /*  Class to store a segment of the cells, in an open-addressing hash table of primitive arrays.
+        A bucket is unused while its supplier and order date are 0, which no cell has, as its month
+        is never 0. */
+
+    private static class Segment
+
+    {
+
+        private long[] productStores;   //  Product (high half) and store (low half) of every cell.
+        private long[] supplierDates;   //  Supplier (high half) and packed order date (low half) of every cell.
+        private long[] quantities;
+        private long[] salesCents;
+        private int mask;
+        private int size;
+
+        //  Constructor function.
+
+        public Segment()
+
+        {
+
+            allocateTable(16);
+
+        }
+
+        //  Function to add a fact to the totals of its cell, creating the cell if it is the first fact of its combination.
+
+        public synchronized void add(long productStore, long supplierDate, int quantity, long sales)
+
+        {
+
+            int bucket=findBucket(productStore, supplierDate);
+            if(supplierDates[bucket]==0)    //  Checking if the cell is new or not.
+            {
+                productStores[bucket]=productStore;
+                supplierDates[bucket]=supplierDate;
+                size++;
+            }
+            quantities[bucket]+=quantity;
+            salesCents[bucket]+=sales;
+            if(size*2>supplierDates.length) //  Keeping the load factor of the hash table at most one half.
+            {
+                resize(supplierDates.length*2);
+            }
+
+        }
+
+        /*  Function to add the totals of the cells matching the filter (null for all) to their groups,
+            given the dimensions grouped by, and to the subtotal of every prefix of them if asked. The
+            values of a cell and its key are decoded into the given arrays, reused for every cell. */
+
+        public synchronized void aggregateInto(Groups groups, Filter filter, Dimension[] dimensions, boolean subtotals, int[] cellValues, int[] key)
+
+        {
+
+            for(int bucket=0; bucket<supplierDates.length; bucket++)
+            {
+                if(supplierDates[bucket]==0)
+                {
+                    continue;
+                }
+                int date=(int)supplierDates[bucket];
+                int month=(date>>>3)&15;
+                cellValues[Dimension.SUPPLIER.ordinal()]=(int)(supplierDates[bucket]>>>32);
+                cellValues[Dimension.PRODUCT.ordinal()]=(int)(productStores[bucket]>>>32);
+                cellValues[Dimension.STORE.ordinal()]=(int)productStores[bucket];
+                cellValues[Dimension.YEAR.ordinal()]=date>>>7;
+                cellValues[Dimension.QUARTER.ordinal()]=(month-1)/3+1;
+                cellValues[Dimension.MONTH.ordinal()]=month;
+                cellValues[Dimension.DAY_OF_WEEK.ordinal()]=date&7;
+                if(filter!=null && !filter.test(cellValues))
+                {
+                    continue;
+                }
+                for(int i=0; i<dimensions.length; i++)
+                {
+                    key[i]=cellValues[dimensions[i].ordinal()];
+                }
+                groups.add(key, quantities[bucket], salesCents[bucket]);
+                for(int rolledUp=dimensions.length-1; subtotals && rolledUp>=0; rolledUp--)
+                {
+                    key[rolledUp]=ALL;  //  Rolling the last grouped dimension up into the subtotal.
+                    groups.add(key, quantities[bucket], salesCents[bucket]);
+                }
+            }
+
+        }
+
+        //  Function to return the number of cells in the segment.
+
+        public synchronized int size()
+
+        {
+
+            return size;
+
+        }
+
+        //  Function to find the bucket of a cell, or the empty bucket where it would be stored.
+
+        private int findBucket(long productStore, long supplierDate)
+
+        {
+
+            long hash=(productStore*0x9E3779B97F4A7C15L)^supplierDate*0xC2B2AE3D27D4EB4FL;
+            int bucket=(int)(hash^(hash>>>32))&mask;
+            while(supplierDates[bucket]!=0 && (productStores[bucket]!=productStore || supplierDates[bucket]!=supplierDate))
+            {
+                bucket=(bucket+1)&mask;
+            }
+
+            return bucket;
+
+        }
+
+        //  Function to allocate an empty hash table of the given size.
+
+        private void allocateTable(int tableSize)
+
+        {
+
+            productStores=new long[tableSize];
+            supplierDates=new long[tableSize];
+            quantities=new long[tableSize];
+            salesCents=new long[tableSize];
+            mask=tableSize-1;
+
+        }
+
+        //  Function to move the cells into a larger hash table.
+
+        private void resize(int tableSize)
+
+        {
+
+            long[] oldProductStores=productStores;
+            long[] oldSupplierDates=supplierDates;
+            long[] oldQuantities=quantities;
+            long[] oldSalesCents=salesCents;
+            allocateTable(tableSize);
+            for(int i=0; i<oldSupplierDates.length; i++)
+            {
+                if(oldSupplierDates[i]!=0)
+                {
+                    int bucket=findBucket(oldProductStores[i], oldSupplierDates[i]);
+                    productStores[bucket]=oldProductStores[i];
+                    supplierDates[bucket]=oldSupplierDates[i];
+                    quantities[bucket]=oldQuantities[i];
+                    salesCents[bucket]=oldSalesCents[i];
+                }
+            }
+
+        }
+
+    }
+
+    /*  Class to store the groups of a report, in an open-addressing hash table of primitive arrays:
+        the values of the grouped dimensions of every group are stored side by side in a flat array,
+        so adding the totals of a cell to its group neither allocates nor boxes. */
+
+    private static class Groups
+
+    {
+
+        private final int width;    //  Number of grouped dimensions.
+        private int[] keys;
+        private boolean[] used;
+        private long[] quantities;
+        private long[] salesCents;
+        private int mask;
+        private int size;
+
+        //  Constructor function.
+
+        public Groups(int width)
+
+        {
+
+            this.width=width;
+            allocateTable(16);
+
+        }
+
+        //  Function to add the totals of a cell to the group of the given key, creating the group if it is new.
+
+        public void add(int[] key, long quantity, long sales)
+
+        {
+
+            int bucket=findBucket(key, 0);
+            if(!used[bucket])   //  Checking if the group is new or not.
+            {
+                System.arraycopy(key, 0, keys, bucket*width, width);
+                used[bucket]=true;
+                size++;
+            }
+            quantities[bucket]+=quantity;
+            salesCents[bucket]+=sales;
+            if(size*2>used.length)  //  Keeping the load factor of the hash table at most one half.
+            {
+                resize(used.length*2);
+            }
+
+        }
+
+        //  Function to return the groups as the rows of a report, in no particular order.
+
+        public List<Aggregate> toAggregates()
+
+        {
+
+            List<Aggregate> aggregates=new ArrayList<>(size);
+            for(int bucket=0; bucket<used.length; bucket++)
+            {
+                if(used[bucket])
+                {
+                    aggregates.add(new Aggregate(Arrays.copyOfRange(keys, bucket*width, bucket*width+width), quantities[bucket], salesCents[bucket]));
+                }
+            }
+
+            return aggregates;
+
+        }
+
+        //  Function to find the bucket of a key, stored in the given array at the given offset, or the empty bucket where it would be stored.
+
+        private int findBucket(int[] key, int offset)
+
+        {
+
+            int hash=0;
+            for(int i=0; i<width; i++)
+            {
+                hash=(hash+key[offset+i])*0x9E3779B9;   //  Spreading the small and sequential values over the table.
+            }
+            int bucket=(hash^(hash>>>16))&mask;
+            while(used[bucket] && !sameKey(bucket, key, offset))
+            {
+                bucket=(bucket+1)&mask;
+            }
+
+            return bucket;
+
+        }
+
+        //  Function to check if a bucket holds the given key or not.
+
+        private boolean sameKey(int bucket, int[] key, int offset)
+
+        {
+
+            for(int i=0; i<width; i++)
+            {
+                if(keys[bucket*width+i]!=key[offset+i])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+
+        }
+
+        //  Function to allocate an empty hash table of the given size.
+
+        private void allocateTable(int tableSize)
+
+        {
+
+            keys=new int[tableSize*width];
+            used=new boolean[tableSize];
+            quantities=new long[tableSize];
+            salesCents=new long[tableSize];
+            mask=tableSize-1;
+
+        }
+
+        //  Function to move the groups into a larger hash table.
+
+        private void resize(int tableSize)
+
+        {
+
+            int[] oldKeys=keys;
+            boolean[] oldUsed=used;
+            long[] oldQuantities=quantities;
+            long[] oldSalesCents=salesCents;
+            allocateTable(tableSize);
+            for(int i=0; i<oldUsed.length; i++)
+            {
+                if(oldUsed[i])
+                {
+                    int bucket=findBucket(oldKeys, i*width);
+                    System.arraycopy(oldKeys, i*width, keys, bucket*width, width);
+                    used[bucket]=true;
+                    quantities[bucket]=oldQuantities[i];
+                    salesCents[bucket]=oldSalesCents[i];
+                }
+            }
+
+        }
+
+    }
+
+    //  Class to store a row of a report: the values of the grouped dimensions and their totals.
+
+    public static class Aggregate
+
+    {
+
+        public final int[] key;
+        public final long quantity;
+        public final long salesCents;
+
+        //  Constructor function.
+
+        public Aggregate(int[] key, long quantity, long salesCents)
+
+        {
+
+            this.key=key;
+            this.quantity=quantity;
+            this.salesCents=salesCents;
+
+        }
+
+    }
+
+    //  Constructor function.
+
+    public SalesCube()
+
+    {
+
+        for(int i=0; i<segments.length; i++)
+        {
+            segments[i]=new Segment();
+        }
+
+    }
+
+    //  Function to record the names of a product and its supplier, used by the reports.
+
+    public void registerProduct(int productID, String productName, int supplierID, String supplierName)
+
+    {
+
+        productNames.put(productID, productName);
+        supplierNames.put(supplierID, supplierName);
+
+    }
+
+    //  Function to return the name of a product, or null if it is unknown.
+
+    public String getProductName(int productID)
+
+    {
+
+        return productNames.get(productID);
+
+    }
+
+    //  Function to return the name of a supplier, or null if it is unknown.
+
+    public String getSupplierName(int supplierID)
+
+    {
+
+        return supplierNames.get(supplierID);
+
+    }
+
+    //  Function to add a joined fact to its cell.
+
+    public void add(int supplierID, int productID, int storeID, StreamGenerator.OrderDate orderDate, int quantity, long salesCents)
+
+    {
+
+        add(supplierID, productID, storeID, orderDate.year, orderDate.month, orderDate.dayOfWeek, quantity, salesCents);
+
+    }
+
+    //  Function to add a fact to its cell, given the year, month and day of the week of its order.
+
+    public void add(int supplierID, int productID, int storeID, int year, int month, int dayOfWeek, int quantity, long salesCents)
+
+    {
+
+        long productStore=(long)productID<<32|(storeID&0xFFFFFFFFL);
+        long supplierDate=(long)supplierID<<32|(year<<7|month<<3|dayOfWeek);    //  Packing the order date into the low half, never 0.
+        segments[(productID*0x9E3779B9)>>>(32-SEGMENT_BITS)].add(productStore, supplierDate, quantity, salesCents);
+
+    }
+
+    //  Function to return the number of cells.
+
+    public int size()
+
+    {
+
+        int size=0;
+        for(Segment segment : segments)
+        {
+            size+=segment.size();
+        }
+
+        return size;
+
+    }
+
+    //  Function to create a filter keeping the cells with any of the given values of a dimension.
+
+    public static Filter where(Dimension dimension, int... values)
+
+    {
+
+        Filter filter=new Filter();
+        filter.values[dimension.ordinal()]=values.clone();
+        Arrays.sort(filter.values[dimension.ordinal()]);
+
+        return filter;
+
+    }
+
+    //  Function to return the totals of the cells matching the filter (null for all) grouped by the given dimensions, sorted by their values.
+
+    public List<Aggregate> groupBy(Filter filter, Dimension... dimensions)
+
+    {
+
+        return aggregate(filter, dimensions, false);
+
+    }
+
+    //  Function to return the grouped totals along with the subtotal of every prefix of the dimensions, the rolled-up values being ALL.
+
+    public List<Aggregate> rollup(Filter filter, Dimension... dimensions)
+
+    {
+
+        return aggregate(filter, dimensions, true);
+
+    }
+
+    //  Function to aggregate the matching cells, sorting the groups by their values with the subtotals after their details.
+
+    private List<Aggregate> aggregate(Filter filter, Dimension[] dimensions, boolean subtotals)
+
+    {
+
+        Groups groups=new Groups(dimensions.length);
+        int[] cellValues=new int[DIMENSIONS.length];
+        int[] key=new int[dimensions.length];
+        for(Segment segment : segments)
+        {
+            segment.aggregateInto(groups, filter, dimensions, subtotals, cellValues, key);
+        }
+        List<Aggregate> aggregates=groups.toAggregates();
+        aggregates.sort((first, second)->{
+            for(int i=0; i<first.key.length; i++)
+            {
+                if(first.key[i]!=second.key[i])
+                {
+                    return first.key[i]==ALL ? 1 : second.key[i]==ALL ? -1 : Integer.compare(first.key[i], second.key[i]);
+                }
+            }
+            return 0;
+        });
+
+        return aggregates;
+
+    }
+
+    //  Function to present the total sales of each supplier with respect to year, quarter and month (Q1, drill down).
+
+    public List<Aggregate> salesBySupplierQuarterAndMonth()
+
+    {
+
+        return groupBy(null, Dimension.SUPPLIER, Dimension.YEAR, Dimension.QUARTER, Dimension.MONTH);
+
+    }
+
+    //  Function to find the total sales of the products of a supplier in a year with respect to month, rolled up on month (Q2).
+
+    public List<Aggregate> productSalesByMonth(String supplierName, int year)
+
+    {
+
+        List<Integer> supplierIDs=new ArrayList<>();
+        for(Map.Entry<Integer, String> supplier : supplierNames.entrySet())
+        {
+            if(supplier.getValue().equals(supplierName))
+            {
+                supplierIDs.add(supplier.getKey());
+            }
+        }
+        int[] suppliers=new int[supplierIDs.size()];
+        for(int i=0; i<suppliers.length; i++)
+        {
+            suppliers[i]=supplierIDs.get(i);
+        }
+
+        return rollup(where(Dimension.SUPPLIER, suppliers).and(where(Dimension.YEAR, year)), Dimension.PRODUCT, Dimension.MONTH);
+
+    }
+
+    //  Function to find the most popular products sold over the weekends, by quantity (Q3).
+
+    public List<Aggregate> topWeekendProducts(int limit)
+
+    {
+
+        List<Aggregate> products=groupBy(where(Dimension.DAY_OF_WEEK, 6, 7), Dimension.PRODUCT);
+        products.sort((first, second)->Long.compare(second.quantity, first.quantity));
+
+        return products.subList(0, Math.min(limit, products.size()));
+
+    }
+
+    //  Function to present the quantity sold of each product per quarter of a year, followed by its yearly total (Q4, pivoted).
+
+    public Map<Integer, long[]> quarterlyQuantities(int year)
+
+    {
+
+        Map<Integer, long[]> products=new TreeMap<>();
+        for(Aggregate aggregate : groupBy(where(Dimension.YEAR, year), Dimension.PRODUCT, Dimension.QUARTER))
+        {
+            long[] quarters=products.computeIfAbsent(aggregate.key[0], productID->new long[5]);
+            quarters[aggregate.key[1]-1]=aggregate.quantity;
+            quarters[4]+=aggregate.quantity;
+        }
+
+        return products;
+
+    }
+
+    //  Function to find the products whose total sales are more than two standard deviations away from the mean (Q5).
+
+    public List<Aggregate> salesAnomalies()
+
+    {
+
+        List<Aggregate> products=groupBy(null, Dimension.PRODUCT);
+        if(products.size()<2)
+        {
+            return Collections.emptyList();
+        }
+        double mean=0;
+        for(Aggregate product : products)
+        {
+            mean+=product.salesCents;
+        }
+        mean/=products.size();
+        double variance=0;
+        for(Aggregate product : products)
+        {
+            variance+=(product.salesCents-mean)*(product.salesCents-mean);
+        }
+        double standardDeviation=Math.sqrt(variance/(products.size()-1));   //  Sample standard deviation, as STDDEV_SAMP.
+        List<Aggregate> anomalies=new ArrayList<>();
+        for(Aggregate product : products)
+        {
+            if(Math.abs(product.salesCents-mean)>2*standardDeviation)
+            {
+                anomalies.add(product);
+            }
+        }
+
+        return anomalies;
+
+    }
+
+    //  Function to present the product-wise sales of each store (Q6, as the `StoreAnalysis_MV` view).
+
+    public List<Aggregate> storeAnalysis()
+
+    {
+
+        return groupBy(null, Dimension.STORE, Dimension.PRODUCT);
+
+    }
+
+}
@@ -0,0 +1,272 @@
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+
+/*
+
+    The StreamBatch class is a batch of stream tuples handed from the StreamGenerator class to a
+    HybridJoin worker. The fields of the tuples are stored column by column in parallel primitive
+    arrays, so a batch holds no object per tuple, and the arrays grow only when a larger batch than
+    any before has to be stored.
+
+    A published batch belongs to the HybridJoin worker until it has copied the tuples into its
+    multi-hash table, after which the worker recycles it: the batch is cleared and returned to the
+    pool it was taken from, to be filled again by the StreamGenerator class. The HybridJoin class
+    also uses a batch as the column store of the tuples waiting in its multi-hash table.
+
+    The order dates are shared with the memoised date parser of the StreamGenerator class, so
+    storing them does not allocate either. The columns other than the product and customer
+    identifiers are only filled in the direct join mode.
+
+*/
+
+public class StreamBatch
+
+{
+
+    private static final int RADIX_BITS=8;
+    private static final int RADIX_SIZE=1<<RADIX_BITS;
+    private static final int RADIX_PASSES=Integer.SIZE/RADIX_BITS;
+
+    public int[] productIDs;
+    public int[] customerIDs;
+    public int[] timeIDs;   //  Time_ID assigned to every transaction by the StreamGenerator class.
+    public int[] orderIDs;
+    public int[] quantities;
+    public StreamGenerator.OrderDate[] orderDates;
+    public long sequence;   //  Checkpoint sequence of the published batch this batch is part of.
+    private int size;
+    private final BlockingQueue<StreamBatch> pool;  //  Pool the batch is returned to once consumed (null if it is not pooled).
+
+    //  Arrays reused by every sort of the batch.
+
+    private int[] sortedOrder=new int[0];
+    private int[] sortBuffer=new int[0];
+    private final int[] digitCounts=new int[RADIX_PASSES*RADIX_SIZE];
+
+    //  Constructor function.
+
+    public StreamBatch(int capacity, BlockingQueue<StreamBatch> pool)
+
+    {
+
+        allocate(Math.max(1, capacity));
+        this.pool=pool;
+
+    }
+
+    //  Function to take a cleared batch from the pool, or create one if the pool is empty.
+
+    public static StreamBatch obtain(BlockingQueue<StreamBatch> pool, int capacity)
+
+    {
+
+        StreamBatch batch=pool.poll();
+
+        return batch!=null ? batch : new StreamBatch(capacity, pool);
+
+    }
+
+    //  Function to append a tuple made of its join attributes only.
+
+    public void add(int productID, int customerID)
+
+    {
+
+        ensureCapacity(size+1);
+        productIDs[size]=productID;
+        customerIDs[size]=customerID;
+        size++;
+
+    }
+
+    //  Function to append a tuple carrying its whole transaction.
+
+    public void add(TransactionRecord transaction, int timeID, StreamGenerator.OrderDate orderDate)
+
+    {
+
+        ensureCapacity(size+1);
+        productIDs[size]=transaction.productID;
+        customerIDs[size]=transaction.customerID;
+        timeIDs[size]=timeID;
+        orderIDs[size]=transaction.orderID;
+        quantities[size]=transaction.quantity;
+        orderDates[size]=orderDate;
+        size++;
+
+    }
+
+    //  Function to append a tuple of another batch.
+
+    public void add(StreamBatch source, int index)
+
+    {
+
+        ensureCapacity(size+1);
+        set(size++, source, index);
+
+    }
+
+    //  Function to overwrite a tuple with a tuple of another batch, the index being within the capacity of the batch.
+
+    public void set(int index, StreamBatch source, int sourceIndex)
+
+    {
+
+        productIDs[index]=source.productIDs[sourceIndex];
+        customerIDs[index]=source.customerIDs[sourceIndex];
+        timeIDs[index]=source.timeIDs[sourceIndex];
+        orderIDs[index]=source.orderIDs[sourceIndex];
+        quantities[index]=source.quantities[sourceIndex];
+        orderDates[index]=source.orderDates[sourceIndex];
+
+    }
+
+    /*  Function to sort the tuples by the product identifier, returning the indexes of the tuples in
+        sorted order (valid until the next sort). The sort is an LSD radix sort on bytes, so equal
+        product identifiers keep their arrival order, and the passes on bytes that are the same in
+        every identifier (the high bytes of small identifiers) are skipped. */
+
+    public int[] sortByProductID()
+
+    {
+
+        if(sortedOrder.length<size)
+        {
+            sortedOrder=new int[productIDs.length];
+            sortBuffer=new int[productIDs.length];
+        }
+        int[] order=sortedOrder;
+        int[] buffer=sortBuffer;
+        for(int i=0; i<size; i++)
+        {
+            order[i]=i;
+        }
+
+        //  Counting the digits of every pass at once.
+
+        Arrays.fill(digitCounts, 0);
+        for(int i=0; i<size; i++)
+        {
+            int key=productIDs[i]^Integer.MIN_VALUE;    //  Flipping the sign bit, so the negative identifiers sort first.
+            for(int pass=0; pass<RADIX_PASSES; pass++)
+            {
+                digitCounts[pass*RADIX_SIZE+((key>>>(pass*RADIX_BITS))&(RADIX_SIZE-1))]++;
+            }
+        }
+
+        //  Distributing the indexes by every digit, from the least to the most significant.
+
+        for(int pass=0; pass<RADIX_PASSES; pass++)
+        {
+            int offset=pass*RADIX_SIZE;
+            int shift=pass*RADIX_BITS;
+            if(size==0 || digitCounts[offset+(((productIDs[0]^Integer.MIN_VALUE)>>>shift)&(RADIX_SIZE-1))]==size)
+            {
+                continue;   //  Skipping the digit, as it is the same for every tuple.
+            }
+            int position=0;
+            for(int digit=0; digit<RADIX_SIZE; digit++)  //  Turning the counts into starting positions.
+            {
+                int count=digitCounts[offset+digit];
+                digitCounts[offset+digit]=position;
+                position+=count;
+            }
+            for(int i=0; i<size; i++)
+            {
+                int index=order[i];
+                int digit=((productIDs[index]^Integer.MIN_VALUE)>>>shift)&(RADIX_SIZE-1);
+                buffer[digitCounts[offset+digit]++]=index;
+            }
+            int[] swap=order;
+            order=buffer;
+            buffer=swap;
+        }
+        sortedOrder=order;
+        sortBuffer=buffer;
+
+        return order;
+
+    }
+
+    //  Function to grow the columns so they hold at least the given number of tuples.
+
+    public void ensureCapacity(int capacity)
+
+    {
+
+        if(capacity<=productIDs.length)
+        {
+            return;
+        }
+        int newCapacity=Math.max(capacity, productIDs.length*2);
+        productIDs=Arrays.copyOf(productIDs, newCapacity);
+        customerIDs=Arrays.copyOf(customerIDs, newCapacity);
+        timeIDs=Arrays.copyOf(timeIDs, newCapacity);
+        orderIDs=Arrays.copyOf(orderIDs, newCapacity);
+        quantities=Arrays.copyOf(quantities, newCapacity);
+        orderDates=Arrays.copyOf(orderDates, newCapacity);
+
+    }
+
+    //  Function to return the number of tuples in the batch.
+
+    public int size()
+
+    {
+
+        return size;
+
+    }
+
+    //  Function to check if the batch is empty or not.
+
+    public boolean isEmpty()
+
+    {
+
+        return size==0;
+
+    }
+
+    //  Function to empty the batch, keeping its columns for the next tuples.
+
+    public void clear()
+
+    {
+
+        Arrays.fill(orderDates, 0, size, null);
+        size=0;
+
+    }
+
+    //  Function to clear the batch and return it to its pool, once its tuples have been consumed.
+
+    public void recycle()
+
+    {
+
+        clear();
+        if(pool!=null)
+        {
+            pool.offer(this);   //  Leaving the batch to the garbage collector if the pool is full.
+        }
+
+    }
+
+    //  Function to allocate the columns.
+
+    private void allocate(int capacity)
+
+    {
+
+        productIDs=new int[capacity];
+        customerIDs=new int[capacity];
+        timeIDs=new int[capacity];
+        orderIDs=new int[capacity];
+        quantities=new int[capacity];
+        orderDates=new StreamGenerator.OrderDate[capacity];
+
+    }
+
+}
@@ -0,0 +1,224 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+
+    The StreamBuffer class is the bounded stream buffer between the StreamGenerator and HybridJoin
+    classes. It is a lock-free single-producer single-consumer ring buffer of batches, so that the
+    stream can be produced and joined on two different threads without contending on a lock.
+
+    When the buffer is full, the producer either blocks until the HybridJoin class frees a slot,
+    or sheds the batch, depending on the overflow policy. Closing the buffer marks the end of the
+    stream; the consumer then drains the remaining batches and receives null.
+
+    A waiting thread spins briefly, then parks until the other side publishes or releases a slot
+    and unparks it, so an idle consumer does not burn CPU while the stream waits for input. The
+    parks are also bounded by a timeout growing exponentially up to a cap, as a safety net.
+
+*/
+
+public class StreamBuffer<T>
+
+{
+
+    //  Policies to apply when the producer finds the buffer full.
+
+    public enum OverflowPolicy
+    {
+        BLOCK,
+        SHED
+    }
+
+    private static final int SPIN_LIMIT=100;    //  Number of spins before the waiting thread is parked.
+    private static final long MINIMUM_PARK_NANOS=50_000L;   //  First timeout of a parked thread, doubled by every park.
+    private static final long MAXIMUM_PARK_NANOS=10_000_000L;   //  Longest timeout of a parked thread.
+    private static final int MAXIMUM_PARKS=8;   //  Number of parks after which the timeout stays at its cap.
+
+    private final Object[] slots;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong head=new AtomicLong(); //  Index of the next batch to be consumed.
+    private final AtomicLong tail=new AtomicLong(); //  Index of the next slot to be produced.
+    private final AtomicLong shedBatches=new AtomicLong();  //  Number of batches shed by the producer.
+    private volatile boolean closed;
+    private volatile Thread waitingProducer;    //  Producer parked on a full buffer (or null).
+    private volatile Thread waitingConsumer;    //  Consumer parked on an empty buffer (or null).
+
+    //  Constructor function.
+
+    public StreamBuffer(int capacity, OverflowPolicy overflowPolicy)
+
+    {
+
+        int size=1;
+        while(size<capacity)    //  Rounding the capacity up to a power of two.
+        {
+            size<<=1;
+        }
+        this.slots=new Object[size];
+        this.mask=size-1;
+        this.overflowPolicy=overflowPolicy;
+
+    }
+
+    /*  Function to publish a batch to the buffer. Returns false if the batch was shed or the
+        buffer has been closed by the consumer. */
+
+    public boolean put(T batch)
+
+    {
+
+        long currentTail=tail.get();
+        int spins=0;
+        while(currentTail-head.get()>=slots.length) //  Checking if the buffer is full or not.
+        {
+            if(closed)
+            {
+                return false;
+            }
+            if(overflowPolicy==OverflowPolicy.SHED)
+            {
+                shedBatches.incrementAndGet();
+                return false;
+            }
+            if(spins<SPIN_LIMIT)
+            {
+                Thread.yield();
+                spins++;
+                continue;
+            }
+            waitingProducer=Thread.currentThread();
+            if(currentTail-head.get()>=slots.length && !closed) //  Checking again once registered, so a released slot is never missed.
+            {
+                LockSupport.parkNanos(this, parkNanos(spins-SPIN_LIMIT));   //  Waiting for the consumer to free a slot.
+            }
+            waitingProducer=null;
+            spins=Math.min(spins+1, SPIN_LIMIT+MAXIMUM_PARKS);   //  Lengthening the next park, up to the cap.
+        }
+        if(closed)
+        {
+            return false;
+        }
+        slots[(int)currentTail&mask]=batch;
+        tail.set(currentTail+1);    //  Publishing the batch to the consumer.
+        unpark(waitingConsumer);
+
+        return true;
+
+    }
+
+    //  Function to retrieve the next batch, waiting if necessary. Returns null once the stream has ended.
+
+    @SuppressWarnings("unchecked")
+    public T take()
+
+    {
+
+        long currentHead=head.get();
+        int spins=0;
+        while(currentHead>=tail.get())  //  Checking if the buffer is empty or not.
+        {
+            if(closed && currentHead>=tail.get())
+            {
+                return null;
+            }
+            if(spins<SPIN_LIMIT)
+            {
+                Thread.yield();
+                spins++;
+                continue;
+            }
+            waitingConsumer=Thread.currentThread();
+            if(currentHead>=tail.get() && !closed)  //  Checking again once registered, so a published batch is never missed.
+            {
+                LockSupport.parkNanos(this, parkNanos(spins-SPIN_LIMIT));   //  Waiting for the producer to publish a batch.
+            }
+            waitingConsumer=null;
+            spins=Math.min(spins+1, SPIN_LIMIT+MAXIMUM_PARKS);   //  Lengthening the next park, up to the cap.
+        }
+        int index=(int)currentHead&mask;
+        T batch=(T)slots[index];
+        slots[index]=null;
+        head.set(currentHead+1);    //  Releasing the slot to the producer.
+        unpark(waitingProducer);
+
+        return batch;
+
+    }
+
+    //  Function to mark the end of the stream.
+
+    public void close()
+
+    {
+
+        closed=true;
+        unpark(waitingProducer);    //  Waking both sides up to see the end of the stream.
+        unpark(waitingConsumer);
+
+    }
+
+    //  Function to check if the stream has ended or not.
+
+    public boolean isClosed()
+
+    {
+
+        return closed;
+
+    }
+
+    //  Function to return the number of batches waiting in the buffer.
+
+    public int size()
+
+    {
+
+        return (int)(tail.get()-head.get());
+
+    }
+
+    //  Function to return the capacity of the buffer.
+
+    public int capacity()
+
+    {
+
+        return slots.length;
+
+    }
+
+    //  Function to return the number of batches shed by the producer.
+
+    public long getShedBatches()
+
+    {
+
+        return shedBatches.get();
+
+    }
+
+    //  Function to return the timeout of the given park of a waiting thread, doubling up to the cap.
+
+    private static long parkNanos(int parks)
+
+    {
+
+        return parks>=MAXIMUM_PARKS ? MAXIMUM_PARK_NANOS : Math.min(MAXIMUM_PARK_NANOS, MINIMUM_PARK_NANOS<<parks);
+
+    }
+
+    //  Function to wake a parked thread up, if any.
+
+    private static void unpark(Thread thread)
+
+    {
+
+        if(thread!=null)
+        {
+            LockSupport.unpark(thread);
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+
+    The StreamCheckpoint class records how far the stream of transactions has been durably joined,
+    so an interrupted run can resume from there instead of rebuilding the data warehouse.
+
+    Every batch published by the StreamGenerator class is registered with the position of the stream
+    after it (the number of transactions read) and the last Time_ID assigned in it, along with the
+    number of join workers it was split over. A worker acknowledges its part of the batch once every
+    tuple of that part has left its multi-hash table and the transaction holding their rows has been
+    committed. The checkpoint is the last batch before which every batch has been fully acknowledged,
+    so every transaction up to its position is in the data warehouse, whatever order the workers
+    commit in.
+
+    The checkpoint is saved to a properties file at batch boundaries, at most once per interval, by
+    writing a temporary file, forcing it to the disk and moving it over the previous checkpoint, so
+    a crash leaves either the old or the new checkpoint. The file is written outside the lock of the
+    checkpoint, so only the worker saving it waits for the disk, while the others go on
+    acknowledging their batches; a save falling due while another one is writing is left to the next
+    acknowledgement. The join state itself is not saved: the tuples after the checkpoint are
+    streamed again on resume, with the same Time_IDs, and the rows they had already written are
+    overwritten by the idempotent inserts.
+
+*/
+
+public class StreamCheckpoint
+
+{
+
+    private final Path checkpointPath;
+    private final long saveInterval;    //  Minimum time between two saves (milliseconds).
+    private final PendingBatches pendingBatches=new PendingBatches();   //  Position, last Time_ID and unacknowledged parts of every batch not yet checkpointed, indexed by sequence.
+    private final ReentrantLock saveLock=new ReentrantLock();   //  Held while the file is written, so the saves never overlap.
+    private long position;  //  Number of transactions of the stream durably joined.
+    private int timeID; //  Last Time_ID assigned before the position.
+    private boolean dirty;  //  Whether the checkpoint has moved since it was last saved.
+    private long lastSave;
+
+    //  Constructor function.
+
+    public StreamCheckpoint(String checkpointPath, long saveInterval)
+
+    {
+
+        this.checkpointPath=Paths.get(checkpointPath);
+        this.saveInterval=saveInterval;
+
+    }
+
+    //  Function to read the saved checkpoint, returning false if there is none.
+
+    public synchronized boolean load() throws IOException
+
+    {
+
+        if(!Files.exists(checkpointPath))
+        {
+            return false;
+        }
+        Properties properties=new Properties();
+        try(InputStream inputStream=Files.newInputStream(checkpointPath))
+        {
+            properties.load(inputStream);
+        }
+        position=Long.parseLong(properties.getProperty("streamPosition", "0").trim());
+        timeID=Integer.parseInt(properties.getProperty("timeID", "0").trim());
+
+        return true;
+
+    }
+
+    //  Function to return the number of transactions of the stream durably joined.
+
+    public synchronized long getPosition()
+
+    {
+
+        return position;
+
+    }
+
+    //  Function to return the last Time_ID assigned before the checkpointed position.
+
+    public synchronized int getTimeID()
+
+    {
+
+        return timeID;
+
+    }
+
+    //  Function to register a published batch split over the given number of parts, returning its sequence number.
+
+    public long register(long batchPosition, int batchTimeID, int parts)
+
+    {
+
+        long sequence;
+        boolean saveDue;
+        synchronized(this)
+        {
+            sequence=pendingBatches.add(new long[]{batchPosition, batchTimeID, parts});
+            saveDue=advance();
+        }
+        if(saveDue)
+        {
+            save(false);
+        }
+
+        return sequence;
+
+    }
+
+    //  Function to acknowledge a part of a batch, as durably joined (or shed).
+
+    public void acknowledge(long sequence)
+
+    {
+
+        boolean saveDue;
+        synchronized(this)
+        {
+            long[] batch=pendingBatches.get(sequence);
+            if(batch!=null)
+            {
+                batch[2]--;
+            }
+            saveDue=advance();
+        }
+        if(saveDue)
+        {
+            save(false);
+        }
+
+    }
+
+    //  Function to move the checkpoint past the fully acknowledged batches at the head of the queue, returning true if a save is due.
+
+    private boolean advance()
+
+    {
+
+        while(!pendingBatches.isEmpty() && pendingBatches.peek()[2]<=0)
+        {
+            long[] batch=pendingBatches.poll();
+            position=batch[0];
+            timeID=(int)batch[1];
+            dirty=true;
+        }
+
+        return dirty && System.currentTimeMillis()-lastSave>=saveInterval;
+
+    }
+
+    //  Function to save the checkpoint, if it has moved since the last save.
+
+    public void save()
+
+    {
+
+        save(true);
+
+    }
+
+    //  Function to write the checkpoint to the file outside the lock of the checkpoint, waiting for a save in progress or leaving the save to it.
+
+    private void save(boolean wait)
+
+    {
+
+        if(wait)
+        {
+            saveLock.lock();
+        }
+        else if(!saveLock.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            Properties properties=new Properties();
+            synchronized(this)
+            {
+                if(!dirty)
+                {
+                    return;
+                }
+                properties.setProperty("streamPosition", String.valueOf(position));
+                properties.setProperty("timeID", String.valueOf(timeID));
+                dirty=false;    //  Letting the acknowledgements made while writing mark the checkpoint as moved again.
+            }
+            Path temporaryPath=checkpointPath.resolveSibling(checkpointPath.getFileName()+".tmp");
+            try
+            {
+                try(FileChannel channel=FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    OutputStream outputStream=Channels.newOutputStream(channel))
+                {
+                    properties.store(outputStream, "Checkpoint of the Electronica_DW stream");
+                    outputStream.flush();
+                    channel.force(true);    //  Making the new checkpoint durable before it replaces the old one.
+                }
+                Files.move(temporaryPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                synchronized(this)
+                {
+                    lastSave=System.currentTimeMillis();
+                }
+            }
+            catch(IOException Error)
+            {
+                Error.printStackTrace();    //  Keeping the previous checkpoint, as the next save retries.
+                synchronized(this)
+                {
+                    dirty=true;
+                }
+            }
+        }
+        finally
+        {
+            saveLock.unlock();
+        }
+
+    }
+
+}
@@ -1,9 +1,20 @@
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.sql.*;
 import java.io.FileReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.io.IOException;
 import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
 
 /*
 
@@ -11,8 +22,37 @@ import com.opencsv.exceptions.CsvException;
     by simulating a data-processing stream. It is responsible for reading the data from the
     comma-separated values (CSV) files and inserting them into relevant dimension tables in the database.
 
-    This class also utilises an instance of the HybridJoin class to join the dimension tables using the
-    HYBRIDJOIN algorithm and create the fact table for the data warehouse.
+    The files are streamed row by row into typed records, which are handed to the dimension loaders
+    in chunks, so the memory used by the ingestion is bounded by the chunk size rather than the size
+    of the files.
+
+    The outer relation is then streamed in sorted batches through the stream buffer to an instance of
+    the HybridJoin class, which joins the dimension tables on its own thread using the HYBRIDJOIN
+    algorithm and creates the fact table for the data warehouse.
+
+    In the direct join mode, the transactions are not inserted here at all: every parsed transaction is
+    given its Time_ID in-process and streamed to the HybridJoin class as it is read, and the
+    `Time_Dimension` rows are written alongside the fact rows, which saves writing the whole stream
+    to the database and reading it back as the outer relation. Only the new customers are inserted
+    here, before their transactions are streamed, as they may be referenced by the fact rows of
+    any join worker.
+
+    The dimension loaders run as concurrent tasks of the PipelineExecutor class, each dimension table
+    on its own connection, committing chunk by chunk. The chunks of a table are loaded in order, and
+    the `Product_Dimension` loader waits for the `Supplier_Dimension` chunk its foreign keys refer
+    to. The transactions are streamed while the master data is still being loaded, and the
+    HybridJoin workers only wait for the master data once they need to look it up.
+
+    The stream can be hash-partitioned by productID across several HybridJoin workers, each
+    consuming its own stream buffer, so every sorted batch is split into one sub-batch per worker.
+
+    In the synthetic mode, the transactions are generated by the SyntheticStream class instead of
+    being read from the `transactions.csv` file, and so is the master data if it is not read from the
+    `master_data.csv` file, so the pipeline can be stressed at scale with skewed keys.
+
+    In the client-side transform mode, the product prices and order dates are parsed here once
+    (with a memoised date parser) instead of by the BEFORE INSERT triggers of the database, so the
+    triggers are dropped and every row reaches the server with its final values.
 
 */
 
@@ -20,34 +60,259 @@ public class StreamGenerator implements Runnable
 
 {
 
-    private final HybridJoin hybridJoin;
-    private final int batchSize;
-    private final int batchSpeed;
+    private final List<StreamBuffer<StreamBatch>> streamBuffers;    //  One stream buffer per HybridJoin worker.
+    private volatile int batchSize; //  Adjusted at runtime by the Controller class.
+    private volatile int batchSpeed;    //  Adjusted at runtime by the Controller class.
+    private final AtomicLong producedTuples=new AtomicLong();  //  Number of tuples published to the stream buffer.
+    private final boolean clientSideTransform;  //  Transforming the prices and dates in Java instead of the database triggers.
+    private final CsvParser csvParser;  //  Parser used for the comma-separated values (CSV) files.
+    private final int parserThreads;    //  Number of threads parsing the ranges of a memory-mapped file.
+    private final String followPath;    //  Transactions file or directory followed for appended rows (null to read once).
+    private final boolean directJoin;   //  Streaming the parsed transactions straight to the HybridJoin class.
+    private final PipelineExecutor pipelineExecutor;
+    private final ConnectionPool connectionPool;
+    private final BulkLoader bulkLoader;    //  Preparing the statements of the dimension loaders, inserting or bulk loading the rows.
+    private final Map<String, Connection> loaderConnections=new HashMap<>();    //  Connection of every dimension loader.
+    private final Map<String, Future<Integer>> lastLoads=new HashMap<>();   //  Last chunk load submitted for every dimension table.
+    private final Deque<Future<Integer>> pendingLoads=new ArrayDeque<>();   //  Chunk loads that may not have finished yet.
+    private final Map<String, Long> rowsAffected=Collections.synchronizedMap(new HashMap<>());
+    private final CountDownLatch masterDataLoaded;  //  Released once the master data has been committed.
+    private final ResultReporter resultReporter;
+    private final SalesCube salesCube;  //  Cube of the reports, naming its products and suppliers from the master data (or null).
+    private final StreamCheckpoint streamCheckpoint;    //  Checkpoint the published batches are registered with (or null).
+    private final SyntheticStream syntheticStream;  //  Generator of the transactions, replacing the files (or null).
+    private final DimensionUpdater dimensionUpdater;    //  Publisher of the snapshots the master data is added to (or null).
+    private final long resumePosition;  //  Number of transactions skipped, as they were joined before the checkpoint.
+    private long streamPosition;    //  Number of transactions read from the stream so far.
+    private String masterDataFile="data/master_data.csv";
+    private String transactionsFile="data/transactions.csv";
+    private final LatencyHistogram parseLatency;
+    private final LatencyHistogram dimensionLoadLatency;
+    private final LatencyHistogram bufferPutLatency;
+    private int lastTimeID; //  Last Time_ID assigned in the direct join mode.
+    private volatile boolean running=true;
+    private final StreamBatch batchEntries; //  Batch currently being filled, reused for every batch.
+    private final StreamBatch[] workerBatches;  //  Sub-batch of the current batch for every HybridJoin worker.
+    private final BlockingQueue<StreamBatch> recycledBatches;   //  Batches returned by the HybridJoin workers once consumed.
+    private final StreamBatch newCustomers; //  New customers of the chunk being followed.
+
+    //  Creating a memoised parser for the order dates, as the same timestamps recur across transactions.
+
+    private static final int ORDER_DATE_CACHE_LIMIT=65536;
+    private static final DateTimeFormatter ORDER_DATE_FORMAT=DateTimeFormatter.ofPattern("MM/dd/yy HH:mm");
+    private static final DateTimeFormatter STORED_DATE_FORMAT=DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final static Map<String, OrderDate> orderDateCache=new HashMap<>();
+
+    private static final int CHUNK_SIZE=1000;   //  Number of records handed to the dimension loaders at a time.
+    private static final int MAXIMUM_PENDING_LOADS=32;  //  Largest number of chunk loads queued before the parser waits for them.
+    private static final long FOLLOW_POLL_INTERVAL=500; //  Longest wait for a file change notification in follow mode (milliseconds).
+
+    //  Creating sets to store the unique identifiers of the dimension tables to avoid duplicate entries.
 
-    //  Creating dictionaries to store the data from the comma-separated values (CSV) files.
+    private final static IntHashSet processedSupplierIDs=new IntHashSet(1024);
+    private final static IntHashSet processedProductIDs=new IntHashSet(1024);
+    private final static IntHashSet processedCustomerIDs=new IntHashSet(1024);
+    private final static IntHashSet processedStoreIDs=new IntHashSet(1024);
 
-    private final static Map<String, Map<String, String>> transactionsDictionary=new HashMap<>();
-    private final static Map<String, Map<String, String>> masterDataDictionary=new HashMap<>();
+    //  Parsers available for the comma-separated values (CSV) files.
 
-    //  Creating sets to store the unique identifiers of the dimension tables to avoid duplicate entries.
+    public enum CsvParser
+    {
+        OPENCSV,
+        MAPPED
+    }
 
-    private final static Set<String> processedSupplierIDs=new HashSet<>();
-    private final static Set<String> processedProductIDs=new HashSet<>();
-    private final static Set<String> processedCustomerIDs=new HashSet<>();
-    private final static Set<String> processedStoreIDs=new HashSet<>();
+    //  Interface to consume a chunk of typed records.
+
+    interface ChunkConsumer<R>
+    {
+        void accept(List<R> chunk) throws SQLException;
+    }
+
+    //  Interface to load a chunk into a dimension table, returning the number of rows.
+
+    private interface ChunkLoader
+    {
+        int load(Connection connection) throws SQLException;
+    }
+
+    //  Class to store the settings of the stream generator, defaulting to the ones of the Controller class.
+
+    public static class Options
+
+    {
+
+        public int batchSize=10;    //  Size of the batch for processing.
+        public int batchSpeed=1000; //  Speed of the batch processing (delay).
+        public boolean clientSideTransform=false;   //  Transforming the prices and dates in Java instead of the database triggers.
+        public CsvParser csvParser=CsvParser.OPENCSV;   //  Parser used for the comma-separated values (CSV) files.
+        public int parserThreads=Runtime.getRuntime().availableProcessors(); //  Number of threads parsing the ranges of a memory-mapped file.
+        public String followPath;   //  Transactions file or directory followed for appended rows (null to read once).
+        public boolean directJoin=true; //  Streaming the parsed transactions straight to the HybridJoin class.
+        public boolean resume=false;    //  Resuming the stream from the checkpoint of the context.
+        public SyntheticStream syntheticStream; //  Generator of the transactions, replacing the files (or null).
+
+    }
 
     //  Constructor function.
 
-    public StreamGenerator(HybridJoin hybridJoin, int batchSize, int batchSpeed)
+    public StreamGenerator(List<StreamBuffer<StreamBatch>> streamBuffers, Options options, PipelineContext context)
     
     {
 
-        this.hybridJoin=hybridJoin;
+        this.streamBuffers=streamBuffers;
+        this.batchSize=options.batchSize;
+        this.batchSpeed=options.batchSpeed;
+        this.clientSideTransform=options.clientSideTransform;
+        this.csvParser=options.csvParser;
+        this.parserThreads=options.parserThreads;
+        this.followPath=options.followPath;
+        this.directJoin=options.directJoin;
+        this.pipelineExecutor=context.pipelineExecutor;
+        this.connectionPool=context.connectionPool;
+        this.bulkLoader=context.bulkLoader;
+        this.masterDataLoaded=context.masterDataLoaded;
+        this.resultReporter=context.resultReporter;
+        this.salesCube=context.salesCube;
+        this.streamCheckpoint=context.streamCheckpoint;
+        this.resumePosition=options.resume && streamCheckpoint!=null ? streamCheckpoint.getPosition() : 0;
+        this.syntheticStream=options.syntheticStream;
+        this.dimensionUpdater=context.dimensionUpdater;
+        this.parseLatency=context.pipelineMetrics.histogram(PipelineMetrics.PARSE);
+        this.dimensionLoadLatency=context.pipelineMetrics.histogram(PipelineMetrics.DIMENSION_LOAD);
+        this.bufferPutLatency=context.pipelineMetrics.histogram(PipelineMetrics.BUFFER_PUT);
+        this.batchEntries=new StreamBatch(batchSize, null);
+        this.workerBatches=new StreamBatch[streamBuffers.size()];
+        int pooledBatches=streamBuffers.size();
+        for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+        {
+            pooledBatches+=streamBuffer.capacity(); //  Enough batches to fill every stream buffer, plus one being filled per worker.
+        }
+        this.recycledBatches=new ArrayBlockingQueue<>(pooledBatches);
+        this.newCustomers=new StreamBatch(CHUNK_SIZE, null);
+
+    }
+
+    //  Class to store an order date parsed into the attributes of the `Time_Dimension` table.
+
+    static class OrderDate
+
+    {
+
+        public final String text;   //  Order date as it appears in the transactions.
+        public final String timestamp;
+        public final int hour;
+        public final int minute;
+        public final int day;
+        public final int month;
+        public final int year;
+        public final int quarter;
+        public final int dayOfWeek; //  Day of the week, from 1 (Monday) to 7 (Sunday).
+
+        //  Constructor function.
+
+        public OrderDate(String text, LocalDateTime dateTime)
+
+        {
+
+            this.text=text;
+            this.timestamp=dateTime.format(STORED_DATE_FORMAT);
+            this.hour=dateTime.getHour();
+            this.minute=dateTime.getMinute();
+            this.day=dateTime.getDayOfMonth();
+            this.month=dateTime.getMonthValue();
+            this.year=dateTime.getYear();
+            this.quarter=(month-1)/3+1;
+            this.dayOfWeek=dateTime.getDayOfWeek().getValue();
+
+        }
+
+    }
+
+    //  Function to read the master data and transactions from other files than the ones in the `data` directory (used by the benchmarks).
+
+    void setDataFiles(String masterDataFile, String transactionsFile)
+
+    {
+
+        this.masterDataFile=masterDataFile;
+        this.transactionsFile=transactionsFile;
+
+    }
+
+    //  Function to forget the identifiers already inserted, so the dimension tables are loaded again by the next run in the same process (used by the benchmarks).
+
+    static void clearProcessedIdentifiers()
+
+    {
+
+        processedSupplierIDs.clear();
+        processedProductIDs.clear();
+        processedCustomerIDs.clear();
+        processedStoreIDs.clear();
+
+    }
+
+    //  Function to return the size of the batch.
+
+    public int getBatchSize()
+
+    {
+
+        return batchSize;
+
+    }
+
+    //  Function to set the size of the batch.
+
+    public void setBatchSize(int batchSize)
+
+    {
+
         this.batchSize=batchSize;
+
+    }
+
+    //  Function to return the delay between two batches.
+
+    public int getBatchSpeed()
+
+    {
+
+        return batchSpeed;
+
+    }
+
+    //  Function to set the delay between two batches.
+
+    public void setBatchSpeed(int batchSpeed)
+
+    {
+
         this.batchSpeed=batchSpeed;
 
     }
 
+    //  Function to return the number of tuples published to the stream buffer.
+
+    public long getProducedTuples()
+
+    {
+
+        return producedTuples.get();
+
+    }
+
+    //  Function to stop the stream, ending the follow mode.
+
+    public void stop()
+
+    {
+
+        running=false;
+
+    }
+
     //  Driver function.
 
     @Override
@@ -55,7 +320,17 @@ public class StreamGenerator implements Runnable
     
     {
 
-        processData();
+        try
+        {
+            processData();
+        }
+        finally
+        {
+            for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+            {
+                streamBuffer.close();   //  Marking the end of the stream for the HybridJoin workers.
+            }
+        }
 
     }
 
@@ -65,32 +340,87 @@ public class StreamGenerator implements Runnable
     
     {
 
-        String transactionsFile="data/transactions.csv";
-        String masterDataFile="data/master_data.csv";
-        readAndStoreData(transactionsFile, transactionsDictionary);
-        readAndStoreData(masterDataFile, masterDataDictionary);
-
         //  Connecting to the database.
 
-        try(Connection connection=DriverManager.getConnection("jdbc:mysql://localhost:3306/Electronica_DW", "root", "password"))
+        try(Connection connection=connectionPool.getConnection())
         {
             
+            if(clientSideTransform)
+            {
+                dropTransformTriggers(connection);  //  Dropping the triggers made redundant by the client-side transform.
+            }
+
             //  Processing the dimension tables.
-            
-            insertIntoSupplierDimension(connection, masterDataDictionary);
-            insertIntoProductDimension(connection, masterDataDictionary);
-            insertIntoCustomerDimension(connection, transactionsDictionary);
-            insertIntoTimeDimension(connection, transactionsDictionary);
-            insertIntoStoreDimension(connection, masterDataDictionary);
+
+            System.out.println("- Processing the Supplier_Dimension, Product_Dimension and Store_Dimension tables...");
+            readMasterData(chunk->{
+                if(salesCube!=null)
+                {
+                    for(MasterDataRecord record : chunk)
+                    {
+                        salesCube.registerProduct(record.productID, record.productName, record.supplierID, record.supplierName);   //  Naming the products and suppliers of the reports.
+                    }
+                }
+                if(dimensionUpdater!=null)
+                {
+                    dimensionUpdater.load(chunk);   //  Collecting the master data for the snapshot the HybridJoin workers look it up in.
+                }
+                Future<Integer> suppliers=submitLoader("Supplier_Dimension", loaderConnection->insertIntoSupplierDimension(loaderConnection, bulkLoader, chunk), null);
+                submitLoader("Store_Dimension", loaderConnection->insertIntoStoreDimension(loaderConnection, bulkLoader, chunk), null);
+                submitLoader("Product_Dimension", loaderConnection->insertIntoProductDimension(loaderConnection, bulkLoader, chunk, clientSideTransform), suppliers);
+            });
+            if(dimensionUpdater!=null)
+            {
+                dimensionUpdater.publishMasterData();   //  Publishing the whole master data as the first snapshot, ahead of the first lookup.
+            }
+            signalMasterDataLoaded();   //  Releasing the HybridJoin workers once the master data loads have finished.
+            if(directJoin)
+            {
+                if(resumePosition>0)
+                {
+                    lastTimeID=streamCheckpoint.getTimeID();    //  Assigning the same Time_IDs as the interrupted run after the checkpoint.
+                    System.out.println("- Resuming after "+resumePosition+" transaction(s) (Time_ID "+lastTimeID+")...");
+                    if(salesCube!=null)
+                    {
+                        rebuildSalesCube(connection, lastTimeID);   //  Adding the facts joined before the checkpoint, as the stream only replays the ones after it.
+                    }
+                }
+                else
+                {
+                    lastTimeID=queryLastTimeID(connection); //  Continuing after the orders already in the `Time_Dimension` table.
+                }
+            }
+            if(followPath!=null)
+            {
+                followTransactions(connection); //  Following the transactions feed until the stream is stopped.
+                return;
+            }
+            if(directJoin)
+            {
+
+                //  Streaming the transactions straight to the HybridJoin class.
+
+                System.out.println("- Processing the Sales_Fact table...");
+                readTransactions(chunk->publishTransactions(connection, chunk));
+                publishRemainingBatch();
+                return;
+            }
+            System.out.println("- Processing the Customer_Dimension and Time_Dimension tables...");
+            readTransactions(chunk->{
+                submitLoader("Customer_Dimension", loaderConnection->insertIntoCustomerDimension(loaderConnection, bulkLoader, chunk, null), null);
+                submitLoader("Time_Dimension", loaderConnection->insertIntoTimeDimension(loaderConnection, bulkLoader, chunk, clientSideTransform), null);
+            });
+            awaitLoads();   //  Waiting for the outer relation to be committed.
+            printRowsAffected("Customer_Dimension", "Time_Dimension");
 
             //  Processing the fact table.
 
             System.out.println("- Processing the Sales_Fact table...");
-            ResultSet outerResultSet=connection.createStatement().executeQuery(
+            Statement outerStatement=connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            outerStatement.setFetchSize(Integer.MIN_VALUE); //  Streaming the outer relation row by row instead of buffering it.
+            ResultSet outerResultSet=outerStatement.executeQuery(
                 "SELECT * FROM Customer_Dimension"
             );  //  Outer relation for the HYBRIDJOIN algorithm.
-            List<HybridJoin.SortEntry> batchEntries=new ArrayList<>();  //  Creating a list to store the batch entries.
-            int totalRows=0;
 
             //  Iterating over the outer relation.
 
@@ -98,242 +428,655 @@ public class StreamGenerator implements Runnable
             {
                 int productID=outerResultSet.getInt("productID");   //  Retrieving the product identifier from the outer relation.
                 int customerID=outerResultSet.getInt("CustomerID"); //  Retrieving the customer identifier from the outer relation.
-                batchEntries.add(new HybridJoin.SortEntry(productID, customerID));  //  Adding the entry to the batch.
-                if(batchEntries.size()>=batchSize)  //  Checking if the batch is full or not.
+                if(!addToBatch(productID, customerID))  //  Adding the entry to the batch.
                 {
-                    totalRows+=batchEntries.size(); //  Incrementing the total number of rows processed.
-                    System.out.println("\n- Processing batch...");
-                    System.out.println("("+totalRows+" row(s) processed)\n");
-                    processBatch(batchEntries, connection); //  Processing the batch.
-                    batchEntries.clear();   //  Clearing the batch.
-                    try
-                    {
-                        Thread.sleep(batchSpeed);   //  Delaying the processing of the next batch.
-                    }
-                    catch(InterruptedException Error)
+                    break;
+                }
+            }
+            publishRemainingBatch();
+        }
+        catch(SQLException Error)
+        {
+            Error.printStackTrace();
+        }
+        finally
+        {
+            try
+            {
+                awaitLoads();
+            }
+            catch(SQLException Error)
+            {
+                Error.printStackTrace();
+            }
+            masterDataLoaded.countDown();   //  Never leaving the HybridJoin workers waiting.
+            closeLoaderConnections();
+        }
+
+    }
+
+    /*  Function to submit a dimension loader for a chunk as a task on the connection of its table. The
+        task waits for the previous chunk of the table, and for the load its foreign keys depend on (if
+        any), and commits the chunk once it has been loaded. */
+
+    private Future<Integer> submitLoader(String tableName, ChunkLoader chunkLoader, Future<Integer> dependency) throws SQLException
+
+    {
+
+        Connection loaderConnection=loaderConnections.get(tableName);
+        if(loaderConnection==null)
+        {
+            loaderConnection=connectionPool.getConnection();
+            loaderConnection.setAutoCommit(false);  //  Committing the rows chunk by chunk.
+            loaderConnections.put(tableName, loaderConnection);
+        }
+        Connection taskConnection=loaderConnection;
+        Future<Integer> previousLoad=lastLoads.get(tableName);
+        Future<Integer> load=pipelineExecutor.submit(()->{
+            if(previousLoad!=null)
+            {
+                PipelineExecutor.await(previousLoad);   //  Keeping the chunks of the table in order on its connection.
+            }
+            if(dependency!=null)
+            {
+                PipelineExecutor.await(dependency); //  Waiting for the rows referenced by the foreign key.
+            }
+            int rows=pipelineExecutor.withPermit(()->{
+                long loadStart=System.nanoTime();
+                int loadedRows=chunkLoader.load(taskConnection);
+                taskConnection.commit();
+                dimensionLoadLatency.recordSince(loadStart);
+                return loadedRows;
+            });
+            rowsAffected.merge(tableName, (long)rows, Long::sum);
+            return rows;
+        });
+        lastLoads.put(tableName, load);
+        pendingLoads.add(load);
+        while(pendingLoads.size()>MAXIMUM_PENDING_LOADS)    //  Bounding the number of chunks held in memory.
+        {
+            PipelineExecutor.await(pendingLoads.poll());
+        }
+
+        return load;
+
+    }
+
+    //  Function to wait for every chunk load submitted so far.
+
+    private void awaitLoads() throws SQLException
+
+    {
+
+        while(!pendingLoads.isEmpty())
+        {
+            PipelineExecutor.await(pendingLoads.poll());
+        }
+
+    }
+
+    //  Function to release the HybridJoin workers once the master data loads submitted so far have been committed.
+
+    private void signalMasterDataLoaded()
+
+    {
+
+        List<Future<Integer>> masterLoads=new ArrayList<>(lastLoads.values());
+        pipelineExecutor.submit(()->{
+            try
+            {
+                for(Future<Integer> masterLoad : masterLoads)
+                {
+                    PipelineExecutor.await(masterLoad);
+                }
+                printRowsAffected("Supplier_Dimension", "Product_Dimension", "Store_Dimension");
+            }
+            catch(SQLException Error)
+            {
+                Error.printStackTrace();
+            }
+            finally
+            {
+                masterDataLoaded.countDown();
+            }
+            return null;
+        });
+
+    }
+
+    //  Function to return the connections of the dimension loaders to the pool.
+
+    private void closeLoaderConnections()
+
+    {
+
+        for(Connection loaderConnection : loaderConnections.values())
+        {
+            try
+            {
+                loaderConnection.close();
+            }
+            catch(SQLException Error)
+            {
+                Error.printStackTrace();
+            }
+        }
+        loaderConnections.clear();
+
+    }
+
+    /*  Function to follow the transactions feed. The rows appended to the feed are loaded into the
+        `Customer_Dimension` and `Time_Dimension` tables as they arrive, and every new customer is
+        streamed to the HybridJoin class straight away, instead of being read back from the table. */
+
+    private void followTransactions(Connection connection)
+
+    {
+
+        System.out.println("- Following "+followPath+" for appended transactions...");
+        System.out.println("- Processing the Sales_Fact table...");
+        try(TransactionTailer tailer=new TransactionTailer(followPath, FOLLOW_POLL_INTERVAL, CHUNK_SIZE))
+        {
+            tailer.follow(chunk->{
+                if(directJoin)
+                {
+                    publishTransactions(connection, chunk);
+                    return;
+                }
+                newCustomers.clear();
+                insertIntoCustomerDimension(connection, bulkLoader, chunk, newCustomers);
+                insertIntoTimeDimension(connection, bulkLoader, chunk, clientSideTransform);
+                for(int i=0; i<newCustomers.size(); i++)
+                {
+                    if(!addToBatch(newCustomers.productIDs[i], newCustomers.customerIDs[i]))    //  Adding the entry to the batch.
                     {
-                        Error.printStackTrace();
+                        break;
                     }
                 }
+            }, this::publishRemainingBatch, ()->running && !isStreamClosed());
+            publishRemainingBatch();
+        }
+        catch(Exception Error)
+        {
+            Error.printStackTrace();
+        }
+        System.out.println("- Stopped following "+followPath+".");
+
+    }
+
+    //  Function to retrieve the last Time_ID in the `Time_Dimension` table.
+
+    private static int queryLastTimeID(Connection connection) throws SQLException
+
+    {
+
+        try(Statement statement=connection.createStatement();
+            ResultSet resultSet=statement.executeQuery("SELECT COALESCE(MAX(Time_ID), 0) FROM Time_Dimension"))
+        {
+            resultSet.next();
+
+            return resultSet.getInt(1);
+
+        }
+
+    }
+
+    /*  Function to add the fact rows up to the given Time_ID to the sales cube, when resuming from a
+        checkpoint. The facts after it are added again as the stream replays them, so every fact is
+        counted once. */
+
+    private void rebuildSalesCube(Connection connection, int timeID) throws SQLException
+
+    {
+
+        String query="SELECT p.supplierID, f.productID, f.storeID, t.Year, t.Month, t.Day, t.`Quantity Ordered`, f.Total_Sale "+
+            "FROM Sales_Fact f JOIN Time_Dimension t ON t.Time_ID=f.Time_ID JOIN Product_Dimension p ON p.productID=f.productID WHERE f.Time_ID<=?";
+        int facts=0;
+        try(PreparedStatement statement=connection.prepareStatement(query))
+        {
+            statement.setInt(1, timeID);
+            try(ResultSet resultSet=statement.executeQuery())
+            {
+                while(resultSet.next())
+                {
+                    int year=resultSet.getInt(4);
+                    int month=resultSet.getInt(5);
+                    int dayOfWeek=LocalDate.of(year, month, resultSet.getInt(6)).getDayOfWeek().getValue();
+                    long salesCents=resultSet.getBigDecimal(8).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+                    salesCube.add(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3), year, month, dayOfWeek, resultSet.getInt(7), salesCents);
+                    facts++;
+                }
+            }
+        }
+        System.out.println("- Sales cube rebuilt from "+facts+" fact row(s) before the checkpoint.");
+
+    }
+
+    /*  Function to stream a chunk of transactions straight to the HybridJoin class, assigning the
+        Time_ID of every order in-process. The new customers of the chunk are inserted first, so they
+        are committed before any join worker writes a fact row referencing them. On resume, the
+        transactions before the checkpoint are counted but not published. */
+
+    private void publishTransactions(Connection connection, List<TransactionRecord> chunk)
+
+    {
+
+        if(streamPosition+chunk.size()<=resumePosition)  //  Skipping the chunks joined before the checkpoint.
+        {
+            streamPosition+=chunk.size();
+            return;
+        }
+        insertIntoCustomerDimension(connection, bulkLoader, chunk, null);
+        int rowsIgnored=0;
+        for(TransactionRecord record : chunk)
+        {
+            if(isStreamClosed())    //  Checking if the HybridJoin workers have stopped consuming or not.
+            {
+                return;
+            }
+            if(++streamPosition<=resumePosition)
+            {
+                continue;
             }
-            if(!batchEntries.isEmpty()) //  Checking if there are any remaining entries in the batch.
+            OrderDate orderDate=parseOrderDate(record.orderDate);
+            if(orderDate==null)
             {
-                totalRows+=batchEntries.size(); //  Incrementing the total number of rows processed.
-                System.out.println("\n- Processing remaining batch...");
-                System.out.println("("+totalRows+" row(s) processed)\n");
-                processBatch(batchEntries, connection); //  Processing the remaining batch.
+                rowsIgnored++;  //  Ignoring the incorrect datetime values.
+                continue;
             }
-            System.out.println("\n- Sales_Fact filled successfully!\n");
-            System.out.println("- Electronica_DW created successfully!");
+            batchEntries.add(record, ++lastTimeID, orderDate);  //  Adding the entry to the batch.
+            publishIfFull();
         }
-        catch(SQLException Error)
+        if(rowsIgnored>0)
         {
-            Error.printStackTrace();
+            System.out.println("- Ignoring "+rowsIgnored+" incorrect datetime value(s)...");
+        }
+
+    }
+
+    //  Function to print the number of rows affected in the given dimension tables.
+
+    private void printRowsAffected(String... tableNames)
+
+    {
+
+        for(String tableName : tableNames)
+        {
+            System.out.println("- "+tableName+" filled successfully!");
+            System.out.println("("+rowsAffected.getOrDefault(tableName, 0L)+" row(s) affected)\n");
+        }
+
+    }
+
+    //  Function to read the master data as chunks of records, from its file or the SyntheticStream class.
+
+    private void readMasterData(ChunkConsumer<MasterDataRecord> chunkConsumer) throws SQLException
+
+    {
+
+        if(syntheticStream!=null && syntheticStream.isMasterDataSynthetic())
+        {
+            System.out.println("- Generating the synthetic master data...");
+            syntheticStream.generateMasterData(CHUNK_SIZE, chunkConsumer);
+            System.out.println("- Synthetic master data generated successfully!\n");
+            return;
+        }
+        streamRecords(masterDataFile, 1, MasterDataRecord.COLUMNS, MasterDataRecord::fromRow, chunk->{
+            if(syntheticStream!=null)
+            {
+                syntheticStream.addProducts(chunk); //  Drawing the synthetic transactions from the products of the file.
+            }
+            chunkConsumer.accept(chunk);
+        });
+
+    }
+
+    //  Function to read the transactions as chunks of records, from their file or the SyntheticStream class.
+
+    private void readTransactions(ChunkConsumer<TransactionRecord> chunkConsumer) throws SQLException
+
+    {
+
+        if(syntheticStream!=null)
+        {
+            syntheticStream.generateTransactions(CHUNK_SIZE, chunkConsumer, ()->running && !isStreamClosed());
+            System.out.println("- "+syntheticStream.getGeneratedTransactions()+" synthetic transaction(s) generated successfully!\n");
+            return;
         }
+        streamRecords(transactionsFile, parserThreads, TransactionRecord.COLUMNS, TransactionRecord::fromRow, chunkConsumer);
 
     }
 
-    //  Function to read and store the data from the comma-separated values (CSV) files into dictionaries.
+    //  Function to stream the rows of a comma-separated values (CSV) file as chunks of typed records.
 
-    private static void readAndStoreData(String csvFile, Map<String, Map<String, String>> dataDictionary)
+    private <R> void streamRecords(String csvFile, int threads, String[] columns, MappedCsvParser.RowParser<R> rowParser, ChunkConsumer<R> chunkConsumer) throws SQLException
 
     {
 
         System.out.println("- Streaming data from "+csvFile+"...");
+        long[] parseStart={System.nanoTime()};
+        ChunkConsumer<R> timedConsumer=chunk->{   //  Timing the parsing of every chunk, leaving out the time spent consuming it.
+            parseLatency.recordSince(parseStart[0]);
+            chunkConsumer.accept(chunk);
+            parseStart[0]=System.nanoTime();
+        };
+        if(csvParser==CsvParser.MAPPED)
+        {
+            try
+            {
+                new MappedCsvParser(csvFile, threads, CHUNK_SIZE).parse(columns, rowParser, timedConsumer::accept);   //  Parsing the memory-mapped file.
+            }
+            catch(SQLException Error)
+            {
+                throw Error;
+            }
+            catch(Exception Error)
+            {
+                Error.printStackTrace();
+            }
+        }
+        else
+        {
+            readRecords(csvFile, columns, rowParser, timedConsumer);
+        }
+        System.out.println("- "+csvFile+" processed successfully!\n");
+
+    }
+
+    //  Function to read the rows of a comma-separated values (CSV) file with opencsv as chunks of typed records.
+
+    static <R> void readRecords(String csvFile, String[] columns, MappedCsvParser.RowParser<R> rowParser, ChunkConsumer<R> chunkConsumer) throws SQLException
+
+    {
+
+        int skippedRows=0;
         try(CSVReader reader=new CSVReader(new FileReader(csvFile)))
         {
-            List<String[]> rows=reader.readAll();   //  Reading the data from the comma-separated values (CSV) file.
-            String[] header=rows.get(0);    //  Retrieving the header row.
+            String[] header=reader.readNext();  //  Retrieving the header row.
+            if(header==null)
+            {
+                return;
+            }
+            StringArrayRow row=new StringArrayRow();
+            row.setFields(header);
+            int[] columnIndexes=MappedCsvParser.resolveColumns(row, columns);
+            List<R> chunk=new ArrayList<>(CHUNK_SIZE);  //  Creating a list to store the current chunk.
+            String[] fields;
 
             //  Iterating over the rows of the comma-separated values (CSV) file.
 
-            for(int i=1; i<rows.size(); i++)
+            while((fields=reader.readNext())!=null)
             {
-                String[] row=rows.get(i);   //  Retrieving the current row.
-                Map<String, String> rowData=new HashMap<>();    //  Creating a dictionary to store the data of the current row.
-                
-                //  Iterating over the columns of the current row.
-                
-                for(int j=0; j<header.length; j++)
+                row.setFields(fields);
+                try
+                {
+                    chunk.add(rowParser.parse(row, columnIndexes));    //  Parsing the current row into a record.
+                }
+                catch(NumberFormatException Error)
                 {
-                    rowData.put(header[j], row[j]); //  Storing the data of the current column in the dictionary.
+                    skippedRows++;  //  Ignoring the malformed rows.
+                    continue;
                 }
-                dataDictionary.put("Row "+i, rowData);  //  Storing the data of the current row in the dictionary.
+                if(chunk.size()>=CHUNK_SIZE)    //  Checking if the chunk is full or not.
+                {
+                    chunkConsumer.accept(chunk);
+                    chunk=new ArrayList<>(CHUNK_SIZE);  //  Starting a new chunk, as the consumer may still be loading the previous one.
+                }
+            }
+            if(!chunk.isEmpty())    //  Checking if there are any remaining records in the chunk.
+            {
+                chunkConsumer.accept(chunk);
             }
         }
-        catch(IOException | CsvException Error)
+        catch(IOException | CsvValidationException Error)
         {
             Error.printStackTrace();
         }
-        System.out.println("- "+csvFile+" processed successfully!\n");
+        if(skippedRows>0)
+        {
+            System.out.println("- Ignoring "+skippedRows+" malformed row(s)...");
+        }
+
+    }
+
+    //  Function to drop the BEFORE INSERT triggers that transform the rows on the server.
+
+    private static void dropTransformTriggers(Connection connection) throws SQLException
+
+    {
+
+        System.out.println("- Dropping the server-side transform triggers...");
+        try(Statement statement=connection.createStatement())
+        {
+            statement.execute("DROP TRIGGER IF EXISTS Transform_Product_Dimension");
+            statement.execute("DROP TRIGGER IF EXISTS Transform_Time_Dimension");
+            statement.execute("DROP TRIGGER IF EXISTS Calculate_Total_Sale");
+        }
+        System.out.println("- Triggers dropped successfully!\n");
+
+    }
+
+    //  Function to parse the product price by removing the Dollar sign.
+
+    static BigDecimal parsePrice(String productPrice)
+
+    {
+
+        return new BigDecimal(productPrice.replace("$", "").trim());
+
+    }
+
+    //  Function to parse the order date, reusing the result for timestamps that have already been parsed.
+
+    private static OrderDate parseOrderDate(String orderDate)
+
+    {
+
+        OrderDate parsedDate=orderDateCache.get(orderDate);
+        if(parsedDate==null)
+        {
+            try
+            {
+                parsedDate=new OrderDate(orderDate, LocalDateTime.parse(orderDate, ORDER_DATE_FORMAT));
+            }
+            catch(DateTimeParseException Error)
+            {
+                return null;    //  Leaving the incorrect datetime values out.
+            }
+            if(orderDateCache.size()>=ORDER_DATE_CACHE_LIMIT)   //  Keeping the memory of the parser bounded.
+            {
+                orderDateCache.clear();
+            }
+            orderDateCache.put(orderDate, parsedDate);
+        }
+
+        return parsedDate;
+
     }
 
     //  Function to insert the data into the `Supplier_Dimension` table.
 
-    private static void insertIntoSupplierDimension(Connection connection, Map<String, Map<String, String>> dataDictionary)
+    private static int insertIntoSupplierDimension(Connection connection, BulkLoader bulkLoader, List<MasterDataRecord> chunk)
 
     {
 
-        System.out.println("- Processing the Supplier_Dimension table...");
         int rowsProcessed=0;
         try
         {
             String tableName="Supplier_Dimension";
             String[] relevantColumns={"supplierID", "supplierName"};
-            String sql="INSERT INTO "+tableName+"("+String.join(",", relevantColumns)+") VALUES (?, ?)";    //  Query to insert the data into the table.
-            try(PreparedStatement preparedStatement=connection.prepareStatement(sql))
+            try(PreparedStatement preparedStatement=bulkLoader.prepare(connection, tableName, relevantColumns, 1))  //  Statement loading the data into the table.
             {
 
-                //  Iterating over the rows of the dictionary.
+                //  Iterating over the records of the chunk.
 
-                for(Map<String, String> rowData : dataDictionary.values())
+                for(MasterDataRecord record : chunk)
                 {
-                    String supplierID=rowData.get("supplierID");    //  Retrieving the supplier identifier from the dictionary.
-                    if(!processedSupplierIDs.contains(supplierID))  //  Checking if the supplier identifier has already been processed or not.
+                    if(processedSupplierIDs.add(record.supplierID)) //  Checking if the supplier identifier has already been processed or not.
                     {
 
                         //  Inserting the relevant data into the table.
 
-                        preparedStatement.setString(1, supplierID);
-                        preparedStatement.setString(2, rowData.get("supplierName"));
+                        preparedStatement.setInt(1, record.supplierID);
+                        preparedStatement.setString(2, record.supplierName);
                         preparedStatement.addBatch();   //  Adding the entry to the batch.
-                        processedSupplierIDs.add(supplierID);   //  Adding the supplier identifier to the set.
                         rowsProcessed++;
                     }
                 }
                 preparedStatement.executeBatch();   //  Executing the batch.
             }
-            System.out.println("- Supplier_Dimension filled successfully!");
-            System.out.println("("+rowsProcessed+" row(s) affected)\n");
         }
         catch(SQLException Error)
         {
             Error.printStackTrace();
         }
 
+        return rowsProcessed;
+
     }
 
     //  Function to insert the data into the `Product_Dimension` table.
 
-    private static void insertIntoProductDimension(Connection connection, Map<String, Map<String, String>> dataDictionary)
+    private static int insertIntoProductDimension(Connection connection, BulkLoader bulkLoader, List<MasterDataRecord> chunk, boolean clientSideTransform)
 
     {
 
-        System.out.println("- Processing the Product_Dimension table...");
         int rowsProcessed=0;
         try
         {
             String tableName="Product_Dimension";
             String[] relevantColumns={"productID", "productName", "productPrice", "supplierID"};
-            String sql="INSERT INTO "+tableName+"("+String.join(",", relevantColumns)+") VALUES (?, ?, ?, ?)";  //  Query to insert the data into the table.
-            try(PreparedStatement preparedStatement=connection.prepareStatement(sql))
+            try(PreparedStatement preparedStatement=bulkLoader.prepare(connection, tableName, relevantColumns, 1))  //  Statement loading the data into the table.
             {
 
-                //  Iterating over the rows of the dictionary.
+                //  Iterating over the records of the chunk.
 
-                for(Map<String, String> rowData : dataDictionary.values())
+                for(MasterDataRecord record : chunk)
                 {
-                    String productID=rowData.get("productID");  //  Retrieving the product identifier from the dictionary.
-                    if(!processedProductIDs.contains(productID))    //  Checking if the product identifier has already been processed or not.
+                    if(processedProductIDs.add(record.productID))   //  Checking if the product identifier has already been processed or not.
                     {
 
                         //  Inserting the relevant data into the table.
 
-                        preparedStatement.setString(1, productID);
-                        preparedStatement.setString(2, rowData.get("productName"));
-                        preparedStatement.setString(3, rowData.get("productPrice"));
-                        preparedStatement.setString(4, rowData.get("supplierID"));
+                        preparedStatement.setInt(1, record.productID);
+                        preparedStatement.setString(2, record.productName);
+                        if(clientSideTransform)
+                        {
+                            preparedStatement.setBigDecimal(3, parsePrice(record.productPrice));
+                        }
+                        else
+                        {
+                            preparedStatement.setString(3, record.productPrice);
+                        }
+                        preparedStatement.setInt(4, record.supplierID);
                         preparedStatement.addBatch();   //  Adding the entry to the batch.
-                        processedProductIDs.add(productID); //  Adding the product identifier to the set.
                         rowsProcessed++;
                     }
                 }
                 preparedStatement.executeBatch();   //  Executing the batch.
             }
-            System.out.println("- Customer_Dimension filled successfully!");
-            System.out.println("("+rowsProcessed+" row(s) affected)\n");
         }
         catch(SQLException Error)
         {
             Error.printStackTrace();
         }
 
+        return rowsProcessed;
+
     }
 
     //  Function to insert the data into the `Customer_Dimension` table.
 
-    private static void insertIntoCustomerDimension(Connection connection, Map<String, Map<String, String>> dataDictionary)
+    private static int insertIntoCustomerDimension(Connection connection, BulkLoader bulkLoader, List<TransactionRecord> chunk, StreamBatch newCustomers)
 
     {
 
-        System.out.println("- Processing the Customer_Dimension table...");
         int rowsProcessed=0;
         try
         {
             String tableName="Customer_Dimension";
             String[] relevantColumns={"CustomerID", "CustomerName", "Gender", "productID"};
-            String sql="INSERT INTO "+tableName+"("+String.join(",", relevantColumns)+") VALUES (?, ?, ?, ?)";  //  Query to insert the data into the table.
-            try(PreparedStatement preparedStatement=connection.prepareStatement(sql))
+            try(PreparedStatement preparedStatement=bulkLoader.prepare(connection, tableName, relevantColumns, 1))  //  Statement loading the data into the table.
             {
 
-                //  Iterating over the rows of the dictionary.
+                //  Iterating over the records of the chunk.
 
-                for(Map<String, String> rowData : dataDictionary.values())
+                for(TransactionRecord record : chunk)
                 {
-                    String customerID=rowData.get("CustomerID");    //  Retrieving the customer identifier from the dictionary.
-                    if(!processedCustomerIDs.contains(customerID))  //  Checking if the customer identifier has already been processed or not.
+                    if(processedCustomerIDs.add(record.customerID)) //  Checking if the customer identifier has already been processed or not.
                     {
 
                         //  Inserting the relevant data into the table.
 
-                        preparedStatement.setString(1, customerID);
-                        preparedStatement.setString(2, rowData.get("CustomerName"));
-                        preparedStatement.setString(3, rowData.get("Gender"));
-                        preparedStatement.setString(4, rowData.get("ProductID"));
+                        preparedStatement.setInt(1, record.customerID);
+                        preparedStatement.setString(2, record.customerName);
+                        preparedStatement.setString(3, record.gender);
+                        preparedStatement.setInt(4, record.productID);
                         preparedStatement.addBatch();   //  Adding the entry to the batch.
-                        processedCustomerIDs.add(customerID);   //  Adding the customer identifier to the set.
+                        if(newCustomers!=null)
+                        {
+                            newCustomers.add(record.productID, record.customerID);
+                        }
                         rowsProcessed++;
                     }
                 }
                 preparedStatement.executeBatch();   //  Executing the batch.
             }
-            System.out.println("- Customer_Dimension filled successfully!");
-            System.out.println("("+rowsProcessed+" row(s) affected)\n");
         }
         catch(SQLException Error)
         {
             Error.printStackTrace();
         }
 
+        return rowsProcessed;
+
     }
 
-    //  Function to insert the data into the `Time_Dimension` table.
+    /*  Function to insert the data into the `Time_Dimension` table. The order dates are validated
+        by the memoised parser in both modes, so a single incorrect datetime value cannot fail the
+        multi-row insert of the whole chunk. */
 
-    private static void insertIntoTimeDimension(Connection connection, Map<String, Map<String, String>> dataDictionary)
+    private static int insertIntoTimeDimension(Connection connection, BulkLoader bulkLoader, List<TransactionRecord> chunk, boolean clientSideTransform)
 
     {
 
-        System.out.println("- Processing the Time_Dimension table...");
         int rowsProcessed=0;
+        int rowsIgnored=0;
         try
         {
             String tableName="Time_Dimension";
-            String[] relevantColumns={"`Order ID`", "`Order Date`", "`Quantity Ordered`", "productID"};
-            String sql="INSERT INTO "+tableName+"("+String.join(",", relevantColumns)+") VALUES (?, ?, ?, ?)";  //  Query to insert the data into the table.
-            try(PreparedStatement preparedStatement=connection.prepareStatement(sql))
+            String[] relevantColumns=clientSideTransform
+                ? new String[]{"`Order ID`", "`Order Date`", "`Quantity Ordered`", "productID", "Hour", "Minute", "Day", "Month", "Year", "Quarter"}
+                : new String[]{"`Order ID`", "`Order Date`", "`Quantity Ordered`", "productID"};
+            try(PreparedStatement preparedStatement=bulkLoader.prepare(connection, tableName, relevantColumns, 0))  //  Statement loading the data into the table (the Time_ID is left to the AUTO_INCREMENT column).
             {
 
-                //  Iterating over the rows of the dictionary.
+                //  Iterating over the records of the chunk.
 
-                for(Map<String, String> rowData : dataDictionary.values())
+                for(TransactionRecord record : chunk)
                 {
+                    OrderDate orderDate=parseOrderDate(record.orderDate);
+                    if(orderDate==null)
+                    {
+                        rowsIgnored++;  //  Ignoring the incorrect datetime values.
+                        continue;
+                    }
 
                     //  Inserting the relevant data into the table.
 
-                    preparedStatement.setString(1, rowData.get("Order ID"));
-                    preparedStatement.setString(2, rowData.get("Order Date"));
-                    preparedStatement.setString(3, rowData.get("Quantity Ordered"));
-                    preparedStatement.setString(4, rowData.get("ProductID"));
+                    preparedStatement.setInt(1, record.orderID);
+                    preparedStatement.setString(2, clientSideTransform ? orderDate.timestamp : record.orderDate);
+                    preparedStatement.setInt(3, record.quantity);
+                    preparedStatement.setInt(4, record.productID);
+                    if(clientSideTransform)
+                    {
+                        preparedStatement.setInt(5, orderDate.hour);
+                        preparedStatement.setInt(6, orderDate.minute);
+                        preparedStatement.setInt(7, orderDate.day);
+                        preparedStatement.setInt(8, orderDate.month);
+                        preparedStatement.setInt(9, orderDate.year);
+                        preparedStatement.setInt(10, orderDate.quarter);
+                    }
                     preparedStatement.addBatch();   //  Adding the entry to the batch.
                     rowsProcessed++;
                 }
@@ -356,70 +1099,204 @@ public class StreamGenerator implements Runnable
                     }
                 }
             }
-            System.out.println("- Time_Dimension filled successfully!");
-            System.out.println("("+rowsProcessed+" row(s) affected)\n");
+            if(rowsIgnored>0)
+            {
+                System.out.println("- Ignoring "+rowsIgnored+" incorrect datetime value(s)...");
+            }
         }
         catch(SQLException Error)
         {
             Error.printStackTrace();
         }
 
+        return rowsProcessed;
+
     }
 
     //  Function to insert the data into the `Store_Dimension` table.
 
-    private static void insertIntoStoreDimension(Connection connection, Map<String, Map<String, String>> dataDictionary)
+    private static int insertIntoStoreDimension(Connection connection, BulkLoader bulkLoader, List<MasterDataRecord> chunk)
 
     {
 
-        System.out.println("- Processing the Store_Dimension table...");
         int rowsProcessed=0;
         try
         {
             String tableName="Store_Dimension";
             String[] relevantColumns={"storeID", "storeName", "productID"};
-            String sql="INSERT INTO "+tableName+"("+String.join(",", relevantColumns)+") VALUES (?, ?, ?)"; //  Query to insert the data into the table.
-            try(PreparedStatement preparedStatement=connection.prepareStatement(sql))
+            try(PreparedStatement preparedStatement=bulkLoader.prepare(connection, tableName, relevantColumns, 1))  //  Statement loading the data into the table.
             {
 
-                //  Iterating over the rows of the dictionary.
+                //  Iterating over the records of the chunk.
 
-                for(Map<String, String> rowData : dataDictionary.values())
+                for(MasterDataRecord record : chunk)
                 {
-                    String storeID=rowData.get("storeID");  //  Retrieving the store identifier from the dictionary.
-                    if(!processedStoreIDs.contains(storeID))    //  Checking if the store identifier has already been processed or not.
+                    if(processedStoreIDs.add(record.storeID))   //  Checking if the store identifier has already been processed or not.
                     {
 
                         //  Inserting the relevant data into the table.
 
-                        preparedStatement.setString(1, storeID);
-                        preparedStatement.setString(2, rowData.get("storeName"));
-                        preparedStatement.setString(3, rowData.get("productID"));
+                        preparedStatement.setInt(1, record.storeID);
+                        preparedStatement.setString(2, record.storeName);
+                        preparedStatement.setInt(3, record.productID);
                         preparedStatement.addBatch();   //  Adding the entry to the batch.
-                        processedStoreIDs.add(storeID); //  Adding the store identifier to the set.
                         rowsProcessed++;
                     }
                 }
                 preparedStatement.executeBatch();   //  Executing the batch.
             }
-            System.out.println("- Store_Dimension filled successfully!");
-            System.out.println("("+rowsProcessed+" row(s) affected)\n");
         }
         catch(SQLException Error)
         {
             Error.printStackTrace();
         }
 
+        return rowsProcessed;
+
     }
 
-    //  Function to process the batch entries.
+    //  Function to add an entry to the current batch, publishing the batch once it is full. Returns false once the stream buffer is closed.
+
+    private boolean addToBatch(int productID, int customerID)
+
+    {
+
+        batchEntries.add(productID, customerID);
+
+        return publishIfFull();
+
+    }
 
-    private void processBatch(List<HybridJoin.SortEntry> batchEntries, Connection connection) throws SQLException
+    //  Function to publish the current batch once it is full. Returns false once the stream buffer is closed.
+
+    private boolean publishIfFull()
+
+    {
+
+        if(batchEntries.size()<batchSize)   //  Checking if the batch is full or not.
+        {
+            return true;
+        }
+        processBatch(batchEntries); //  Publishing the batch to the stream buffer.
+        batchEntries.clear();   //  Emptying the batch, as its entries have been copied into the published sub-batches.
+        if(isStreamClosed())    //  Checking if the HybridJoin workers have stopped consuming or not.
+        {
+            return false;
+        }
+        try
+        {
+            Thread.sleep(batchSpeed);   //  Delaying the arrival of the next batch.
+        }
+        catch(InterruptedException Error)
+        {
+            Error.printStackTrace();
+        }
+
+        return true;
+
+    }
+
+    //  Function to publish the entries remaining in the current batch.
+
+    private void publishRemainingBatch()
+
+    {
+
+        if(!batchEntries.isEmpty()) //  Checking if there are any remaining entries in the batch.
+        {
+            processBatch(batchEntries); //  Publishing the remaining batch to the stream buffer.
+            batchEntries.clear();
+        }
+
+    }
+
+    /*  Function to sort the batch entries by the product identifier and publish them to the stream
+        buffers. The entries are copied in sorted order into one pooled sub-batch per HybridJoin worker,
+        so every worker receives a sorted batch of its own products. */
+
+    void processBatch(StreamBatch batchEntries)
     
     {
 
-        Collections.sort(batchEntries, Comparator.comparingInt(HybridJoin.SortEntry::getProductID));    //  Sorting the batch entries by the product identifier.
-        hybridJoin.processBatchEntries(batchEntries, connection);   //  Joining the dimension tables using the HYBRIDJOIN algorithm.
+        int[] sortedOrder=batchEntries.sortByProductID();   //  Sorting the batch entries by the product identifier.
+        int workers=workerBatches.length;
+        for(int i=0; i<batchEntries.size(); i++)
+        {
+            int index=sortedOrder[i];
+            int worker=workers==1 ? 0 : HybridJoin.workerOf(batchEntries.productIDs[index], workers);
+            if(workerBatches[worker]==null)
+            {
+                workerBatches[worker]=StreamBatch.obtain(recycledBatches, batchSize);
+            }
+            workerBatches[worker].add(batchEntries, index);
+        }
+        long sequence=0;
+        if(streamCheckpoint!=null)  //  Registering the batch, so the checkpoint moves past it once every part has been committed.
+        {
+            int parts=0;
+            for(StreamBatch workerBatch : workerBatches)
+            {
+                parts+=workerBatch!=null ? 1 : 0;
+            }
+            sequence=streamCheckpoint.register(streamPosition, lastTimeID, parts);
+        }
+        for(int i=0; i<workers; i++)
+        {
+            if(workerBatches[i]!=null)
+            {
+                workerBatches[i].sequence=sequence;
+                if(!publishToWorker(i, workerBatches[i]) && streamCheckpoint!=null && !streamBuffers.get(i).isClosed())
+                {
+                    streamCheckpoint.acknowledge(sequence); //  Counting a shed part as done, as the overflow policy drops it for good.
+                }
+                workerBatches[i]=null;
+            }
+        }
+
+    }
+
+    //  Function to publish a sorted batch to the stream buffer of a HybridJoin worker, returning false if it was shed.
+
+    private boolean publishToWorker(int worker, StreamBatch workerBatch)
+
+    {
+
+        StreamBuffer<StreamBatch> streamBuffer=streamBuffers.get(worker);
+        int tuples=workerBatch.size();
+        long putStart=System.nanoTime();
+        boolean published=streamBuffer.put(workerBatch);    //  Handing the batch over to the HybridJoin worker.
+        bufferPutLatency.recordSince(putStart); //  Time spent waiting for a free slot.
+        if(published)
+        {
+            producedTuples.addAndGet(tuples);
+            resultReporter.recordStreamed(tuples);
+            return true;
+        }
+        workerBatch.recycle();  //  Taking the batch back, as it was not handed over.
+        if(!streamBuffer.isClosed())
+        {
+            resultReporter.recordShed(tuples);
+        }
+
+        return false;
+
+    }
+
+    //  Function to check if any HybridJoin worker has stopped consuming, which ends the stream.
+
+    private boolean isStreamClosed()
+
+    {
+
+        for(StreamBuffer<StreamBatch> streamBuffer : streamBuffers)
+        {
+            if(streamBuffer.isClosed())
+            {
+                return true;
+            }
+        }
+
+        return false;
 
     }
     
@@ -0,0 +1,61 @@
+/*
+
+    The StringArrayRow class exposes a row that has already been tokenised into strings, such as a
+    row read by opencsv, as a comma-separated values (CSV) row for the typed records.
+
+*/
+
+public class StringArrayRow implements CsvRow
+
+{
+
+    private String[] fields=new String[0];
+
+    //  Function to point the row at a new set of fields.
+
+    public void setFields(String[] fields)
+
+    {
+
+        this.fields=fields;
+
+    }
+
+    @Override
+    public int size()
+
+    {
+
+        return fields.length;
+
+    }
+
+    @Override
+    public int getInt(int index)
+
+    {
+
+        if(index>=fields.length)
+        {
+            throw new NumberFormatException("Missing field "+index+".");
+        }
+
+        return Integer.parseInt(fields[index].trim());
+
+    }
+
+    @Override
+    public String getString(int index)
+
+    {
+
+        if(index>=fields.length)
+        {
+            throw new NumberFormatException("Missing field "+index+".");
+        }
+
+        return fields[index];
+
+    }
+
+}
@@ -0,0 +1,327 @@
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+
+    The SyntheticStream class generates the transactions streamed by the StreamGenerator class in
+    place of the `transactions.csv` file, to stress the pipeline with more transactions, more keys
+    and more skew than the file holds. The stream is sized or unbounded, and produced at a target
+    rate (or as fast as the pipeline takes it).
+
+    The products and customers of the transactions are drawn from Zipf distributions of the given
+    exponent: the k-th most frequent key is drawn with a probability proportional to 1/k^s, so an
+    exponent of 0 draws the keys uniformly and an exponent around 1 reproduces the hot keys of a real
+    stream. The draws use the rejection-inversion method of Hormann and Derflinger, which takes a
+    constant time and memory whatever the number of keys. The ranks of the products are shuffled
+    over their identifiers, so the hot products are not simply the smallest ones.
+
+    The master data is either read from the `master_data.csv` file, the transactions then being
+    drawn from its products, or synthesized at scale with the given numbers of products, suppliers
+    and stores. The order dates advance by a minute every few orders from the start of 2019, and the
+    generation is reproducible from its seed.
+
+*/
+
+public class SyntheticStream
+
+{
+
+    private static final int ORDERS_PER_MINUTE=10;  //  Number of orders sharing an order date.
+    private static final LocalDateTime START_DATE=LocalDateTime.of(2019, 1, 1, 0, 0);
+    private static final DateTimeFormatter ORDER_DATE_FORMAT=DateTimeFormatter.ofPattern("MM/dd/yy HH:mm");
+    private static final int CHUNKS_PER_SECOND=100; //  Smallest number of chunks per second at the target rate, so the pace stays smooth.
+
+    private final long transactions;    //  Number of transactions to generate (0 for an unbounded stream).
+    private final double rate;  //  Target rate of the stream (transactions per second, 0 for no limit).
+    private final boolean syntheticMasterData;
+    private final int products;
+    private final int customers;
+    private final int suppliers;
+    private final int stores;
+    private final double skew;  //  Exponent of the Zipf distributions of the products and customers.
+    private final SplittableRandom random;
+    private final List<Integer> fileProductIDs=new ArrayList<>();   //  Products read from the master data file, if it is not synthesized.
+    private long generatedTransactions;
+
+    //  Constructor function.
+
+    public SyntheticStream(PipelineConfig config)
+
+    {
+
+        this.transactions=Math.max(0, config.getLong("synthetic.transactions", 1_000_000));
+        this.rate=Math.max(0, config.getLong("synthetic.rate", 0));
+        this.syntheticMasterData=config.getBoolean("synthetic.generateMasterData", false);
+        this.products=Math.max(1, config.getInt("synthetic.products", 10_000));
+        this.customers=Math.max(1, config.getInt("synthetic.customers", 100_000));
+        this.suppliers=Math.max(1, config.getInt("synthetic.suppliers", 100));
+        this.stores=Math.max(1, config.getInt("synthetic.stores", 50));
+        this.skew=Math.max(0, Double.parseDouble(config.getString("synthetic.skew", "1.0")));
+        this.random=new SplittableRandom(config.getLong("synthetic.seed", 42));
+
+    }
+
+    //  Function to check if the master data is synthesized or read from the file.
+
+    public boolean isMasterDataSynthetic()
+
+    {
+
+        return syntheticMasterData;
+
+    }
+
+    //  Function to record the products of a chunk of the master data file, which the transactions are drawn from.
+
+    public void addProducts(List<MasterDataRecord> chunk)
+
+    {
+
+        for(MasterDataRecord record : chunk)
+        {
+            fileProductIDs.add(record.productID);
+        }
+
+    }
+
+    //  Function to synthesize the master data, handing it to the consumer in chunks.
+
+    public void generateMasterData(int chunkSize, StreamGenerator.ChunkConsumer<MasterDataRecord> chunkConsumer) throws SQLException
+
+    {
+
+        List<MasterDataRecord> chunk=new ArrayList<>(chunkSize);
+        for(int productID=1; productID<=products; productID++)
+        {
+
+            //  Spreading the products over the suppliers and stores in turn, so every one of them has products.
+
+            int supplierID=(productID-1)%suppliers+1;
+            int storeID=(productID-1)%stores+1;
+            String price=String.format("%d.%02d$", 5+random.nextInt(1995), random.nextInt(100));
+            chunk.add(new MasterDataRecord(productID, "Product "+productID, price, supplierID, "Supplier "+supplierID, storeID, "Store "+storeID));
+            if(chunk.size()>=chunkSize)
+            {
+                chunkConsumer.accept(chunk);
+                chunk=new ArrayList<>(chunkSize);
+            }
+        }
+        if(!chunk.isEmpty())
+        {
+            chunkConsumer.accept(chunk);
+        }
+
+    }
+
+    /*  Function to generate the transactions, handing them to the consumer in chunks at the target
+        rate, until the size of the stream is reached or the running condition turns false. */
+
+    public void generateTransactions(int chunkSize, StreamGenerator.ChunkConsumer<TransactionRecord> chunkConsumer, BooleanSupplier running) throws SQLException
+
+    {
+
+        int[] productIDs=drawableProductIDs();
+        ZipfSampler productSampler=new ZipfSampler(productIDs.length, skew);
+        ZipfSampler customerSampler=new ZipfSampler(customers, skew);
+        int pacedChunkSize=rate>0 ? (int)Math.max(1, Math.min(chunkSize, rate/CHUNKS_PER_SECOND)) : chunkSize;
+        System.out.println("- Generating "+(transactions>0 ? transactions : "unbounded")+" synthetic transaction(s) at "+(rate>0 ? (long)rate+"/s" : "full speed")+
+            " over "+productIDs.length+" product(s) and "+customers+" customer(s), with a skew of "+skew+"...");
+        long startTime=System.nanoTime();
+        long generatedSinceStart=0;
+        long minute=-1;
+        String orderDate=null;
+        while(running.getAsBoolean() && (transactions==0 || generatedTransactions<transactions))
+        {
+            int size=(int)(transactions>0 ? Math.min(pacedChunkSize, transactions-generatedTransactions) : pacedChunkSize);
+            List<TransactionRecord> chunk=new ArrayList<>(size);
+            for(int i=0; i<size; i++)
+            {
+                long sequence=generatedTransactions++;
+                if(sequence/ORDERS_PER_MINUTE!=minute)   //  Formatting the order date once per minute.
+                {
+                    minute=sequence/ORDERS_PER_MINUTE;
+                    orderDate=START_DATE.plusMinutes(minute).format(ORDER_DATE_FORMAT);
+                }
+                int productID=productIDs[productSampler.sample(random)-1];
+                int customerID=customerSampler.sample(random);
+                int quantity=1;
+                while(quantity<9 && random.nextInt(10)==0)  //  Ordering more than one unit now and then, as in the transactions file.
+                {
+                    quantity++;
+                }
+                chunk.add(new TransactionRecord((int)(sequence%Integer.MAX_VALUE)+1, orderDate, productID, customerID, "Customer "+customerID, customerID%2==0 ? "Female" : "Male", quantity));
+            }
+            chunkConsumer.accept(chunk);
+            generatedSinceStart+=size;
+            if(rate>0)  //  Waiting until the chunks generated so far are due at the target rate.
+            {
+                long dueTime=startTime+(long)(generatedSinceStart*TimeUnit.SECONDS.toNanos(1)/rate);
+                long delay;
+                while((delay=dueTime-System.nanoTime())>0 && running.getAsBoolean())
+                {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+        }
+
+    }
+
+    //  Function to return the number of transactions generated so far.
+
+    public long getGeneratedTransactions()
+
+    {
+
+        return generatedTransactions;
+
+    }
+
+    //  Function to return the products the transactions are drawn from, shuffled so their ranks in the Zipf distribution are spread over the identifiers.
+
+    private int[] drawableProductIDs()
+
+    {
+
+        int[] productIDs;
+        if(syntheticMasterData || fileProductIDs.isEmpty())
+        {
+            productIDs=new int[products];
+            for(int i=0; i<products; i++)
+            {
+                productIDs[i]=i+1;
+            }
+        }
+        else
+        {
+            productIDs=fileProductIDs.stream().mapToInt(Integer::intValue).distinct().toArray();
+            Arrays.sort(productIDs);    //  Ordering the products of the file, so the shuffle only depends on the seed.
+        }
+        for(int i=productIDs.length-1; i>0; i--)   //  Shuffling the products (Fisher-Yates).
+        {
+            int j=random.nextInt(i+1);
+            int productID=productIDs[i];
+            productIDs[i]=productIDs[j];
+            productIDs[j]=productID;
+        }
+
+        return productIDs;
+
+    }
+
+    /*  Class to draw the ranks 1 to n from a Zipf distribution by rejection-inversion (W. Hormann and
+        G. Derflinger, "Rejection-inversion to generate variates from monotone discrete
+        distributions", 1996): a continuous hat function is inverted, and the few draws falling
+        outside the histogram of the distribution are rejected. */
+
+    private static class ZipfSampler
+
+    {
+
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        //  Constructor function.
+
+        public ZipfSampler(int n, double exponent)
+
+        {
+
+            this.n=n;
+            this.exponent=exponent;
+            this.hIntegralX1=hIntegral(1.5)-1;
+            this.hIntegralN=hIntegral(n+0.5);
+            this.s=2-hIntegralInverse(hIntegral(2.5)-h(2));
+
+        }
+
+        //  Function to draw a rank.
+
+        public int sample(SplittableRandom random)
+
+        {
+
+            if(exponent==0)
+            {
+                return random.nextInt(n)+1;
+            }
+            while(true)
+            {
+                double u=hIntegralN+random.nextDouble()*(hIntegralX1-hIntegralN);
+                double x=hIntegralInverse(u);
+                int k=(int)Math.max(1, Math.min(n, x+0.5));
+                if(k-x<=s || u>=hIntegral(k+0.5)-h(k))  //  Accepting the draws under the histogram.
+                {
+                    return k;
+                }
+            }
+
+        }
+
+        //  Function to return the hat function, 1/x^exponent.
+
+        private double h(double x)
+
+        {
+
+            return Math.exp(-exponent*Math.log(x));
+
+        }
+
+        //  Function to return the integral of the hat function, (x^(1-exponent)-1)/(1-exponent), or log(x) for an exponent of 1.
+
+        private double hIntegral(double x)
+
+        {
+
+            double logX=Math.log(x);
+
+            return expm1Ratio((1-exponent)*logX)*logX;
+
+        }
+
+        //  Function to return the inverse of the integral of the hat function.
+
+        private double hIntegralInverse(double x)
+
+        {
+
+            double t=Math.max(-1, x*(1-exponent));
+
+            return Math.exp(log1pRatio(t)*x);
+
+        }
+
+        //  Function to return log(1+x)/x, continued by its series around 0.
+
+        private static double log1pRatio(double x)
+
+        {
+
+            return Math.abs(x)>1e-8 ? Math.log1p(x)/x : 1-x*(0.5-x*(1.0/3-0.25*x));
+
+        }
+
+        //  Function to return (e^x-1)/x, continued by its series around 0.
+
+        private static double expm1Ratio(double x)
+
+        {
+
+            return Math.abs(x)>1e-8 ? Math.expm1(x)/x : 1+x*0.5*(1+x/3*(1+0.25*x));
+
+        }
+
+    }
+
+}
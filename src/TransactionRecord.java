@@ -0,0 +1,59 @@
+/*
+
+    The TransactionRecord class is the typed form of a row of the `transactions.csv` file. The
+    numeric columns are parsed once while streaming the file, so the rest of the pipeline does
+    not have to look the values up by column name or convert them again.
+
+*/
+
+public class TransactionRecord
+
+{
+
+    //  Columns of the `transactions.csv` file, in the order expected by the fromRow function.
+
+    public static final String[] COLUMNS={"Order ID", "Order Date", "ProductID", "CustomerID", "CustomerName", "Gender", "Quantity Ordered"};
+
+    public final int orderID;
+    public final String orderDate;
+    public final int productID;
+    public final int customerID;
+    public final String customerName;
+    public final String gender;
+    public final int quantity;
+
+    //  Constructor function.
+
+    public TransactionRecord(int orderID, String orderDate, int productID, int customerID, String customerName, String gender, int quantity)
+
+    {
+
+        this.orderID=orderID;
+        this.orderDate=orderDate;
+        this.productID=productID;
+        this.customerID=customerID;
+        this.customerName=customerName;
+        this.gender=gender;
+        this.quantity=quantity;
+
+    }
+
+    //  Function to create a record from a row, given the index of every column in the header.
+
+    public static TransactionRecord fromRow(CsvRow row, int[] columnIndexes)
+
+    {
+
+        return new TransactionRecord(
+            row.getInt(columnIndexes[0]),
+            row.getString(columnIndexes[1]),
+            row.getInt(columnIndexes[2]),
+            row.getInt(columnIndexes[3]),
+            row.getString(columnIndexes[4]),
+            row.getString(columnIndexes[5]),
+            row.getInt(columnIndexes[6])
+        );
+
+    }
+
+}
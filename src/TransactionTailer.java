@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import com.opencsv.CSVParser;
+
+/*
+
+    The TransactionTailer class follows the transactions feed for near-real-time ingestion. It
+    watches either a single transactions file or a directory of rolling transactions files with a
+    file watcher, and keeps the byte offset reached in every file, so only the complete rows that
+    have been appended since the last read are parsed and handed on.
+
+    A row is only consumed once its line break has been written, so a row that is still being
+    appended is picked up on the next read. A file that shrinks below its offset is treated as
+    replaced and is read again from the start. A file whose size has not changed since the last
+    read is not opened at all, and the offsets of the deleted files are forgotten.
+
+*/
+
+public class TransactionTailer implements AutoCloseable
+
+{
+
+    private static final int INITIAL_READ_SIZE=1<<20;   //  Number of bytes read from a file at a time.
+
+    private final Path followPath;
+    private final boolean directory;
+    private final long pollInterval;
+    private final int chunkSize;
+    private final WatchService watchService;
+    private final Map<Path, FileState> fileStates=new HashMap<>();
+    private final CSVParser lineParser=new CSVParser();
+    private final StringArrayRow row=new StringArrayRow();
+
+    //  Interface to be notified once the appended rows have all been read.
+
+    public interface IdleListener
+    {
+        void onIdle() throws Exception;
+    }
+
+    //  Class to store the position reached in a followed file.
+
+    private static class FileState
+
+    {
+
+        public long offset;
+        public int[] columnIndexes; //  Resolved from the header row of the file.
+
+    }
+
+    //  Constructor function.
+
+    public TransactionTailer(String followPath, long pollInterval, int chunkSize) throws IOException
+
+    {
+
+        this.followPath=Paths.get(followPath).toAbsolutePath();
+        this.directory=Files.isDirectory(this.followPath);
+        this.pollInterval=pollInterval;
+        this.chunkSize=chunkSize;
+        this.watchService=FileSystems.getDefault().newWatchService();
+        Path watchedDirectory=directory ? this.followPath : this.followPath.getParent();
+        watchedDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+    }
+
+    //  Function to read the rows appended to the followed files until the tailer is stopped.
+
+    public void follow(StreamGenerator.ChunkConsumer<TransactionRecord> chunkConsumer, IdleListener idleListener, BooleanSupplier running) throws Exception
+
+    {
+
+        while(running.getAsBoolean())
+        {
+            readAppendedRows(chunkConsumer);    //  Reading the rows appended since the last read.
+            idleListener.onIdle();  //  Signalling that the feed has been drained for now.
+
+            //  Waiting for the file watcher, falling back to polling for file systems without change notifications.
+
+            WatchKey watchKey=watchService.poll(pollInterval, TimeUnit.MILLISECONDS);
+            if(watchKey!=null)
+            {
+                watchKey.pollEvents();
+                watchKey.reset();
+            }
+        }
+
+    }
+
+    //  Function to read the complete rows appended to every followed file.
+
+    public void readAppendedRows(StreamGenerator.ChunkConsumer<TransactionRecord> chunkConsumer) throws Exception
+
+    {
+
+        List<Path> files=listFollowedFiles();
+        fileStates.keySet().retainAll(files);   //  Forgetting the files that have been deleted since the last read.
+        for(Path file : files)
+        {
+            FileState fileState=fileStates.get(file);
+            if(fileState==null)
+            {
+                fileState=new FileState();
+                fileStates.put(file, fileState);
+            }
+            try
+            {
+                if(Files.size(file)==fileState.offset)  //  Checking if anything has been appended to the file or not, without opening it.
+                {
+                    continue;
+                }
+                readFile(file, fileState, chunkConsumer);
+            }
+            catch(NoSuchFileException Error)
+            {
+                fileStates.remove(file);    //  Ignoring a file deleted since the listing.
+            }
+        }
+
+    }
+
+    //  Function to list the followed files, in the order in which they were rolled.
+
+    private List<Path> listFollowedFiles() throws IOException
+
+    {
+
+        List<Path> files=new ArrayList<>();
+        if(!directory)
+        {
+            if(Files.exists(followPath))
+            {
+                files.add(followPath);
+            }
+            return files;
+        }
+        try(DirectoryStream<Path> stream=Files.newDirectoryStream(followPath, "*.csv"))
+        {
+            for(Path file : stream)
+            {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        return files;
+
+    }
+
+    //  Function to read the complete rows appended to a file since its last offset.
+
+    private void readFile(Path file, FileState fileState, StreamGenerator.ChunkConsumer<TransactionRecord> chunkConsumer) throws Exception
+
+    {
+
+        try(FileChannel channel=FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long fileSize=channel.size();
+            if(fileSize<fileState.offset)   //  Checking if the file has been truncated or replaced or not.
+            {
+                fileState.offset=0;
+                fileState.columnIndexes=null;
+            }
+            int readSize=INITIAL_READ_SIZE;
+            List<TransactionRecord> chunk=new ArrayList<>(chunkSize);
+            int skippedRows=0;
+            while(fileState.offset<fileSize)
+            {
+                ByteBuffer buffer=ByteBuffer.allocate((int)Math.min(readSize, fileSize-fileState.offset));
+                while(buffer.hasRemaining())
+                {
+                    if(channel.read(buffer, fileState.offset+buffer.position())<=0)
+                    {
+                        break;
+                    }
+                }
+                byte[] bytes=buffer.array();
+                int length=buffer.position();
+                int lastLineBreak=length-1;
+                while(lastLineBreak>=0 && bytes[lastLineBreak]!='\n')
+                {
+                    lastLineBreak--;
+                }
+                if(lastLineBreak<0) //  Checking if a complete row has been written or not.
+                {
+                    if(length<readSize) //  Waiting for the rest of the row to be appended.
+                    {
+                        break;
+                    }
+                    readSize*=2;    //  Reading more at once to reach the end of a long row.
+                    continue;
+                }
+
+                //  Iterating over the complete rows of the block.
+
+                int lineStart=0;
+                for(int i=0; i<=lastLineBreak; i++)
+                {
+                    if(bytes[i]!='\n')
+                    {
+                        continue;
+                    }
+                    int lineEnd=(i>lineStart && bytes[i-1]=='\r') ? i-1 : i;
+                    String line=new String(bytes, lineStart, lineEnd-lineStart, StandardCharsets.UTF_8);
+                    lineStart=i+1;
+                    if(line.isEmpty())
+                    {
+                        continue;
+                    }
+                    row.setFields(lineParser.parseLine(line));
+                    if(fileState.columnIndexes==null)   //  Checking if the row is the header row or not.
+                    {
+                        fileState.columnIndexes=MappedCsvParser.resolveColumns(row, TransactionRecord.COLUMNS);
+                        continue;
+                    }
+                    try
+                    {
+                        chunk.add(TransactionRecord.fromRow(row, fileState.columnIndexes));
+                    }
+                    catch(NumberFormatException Error)
+                    {
+                        skippedRows++;  //  Ignoring the malformed rows.
+                        continue;
+                    }
+                    if(chunk.size()>=chunkSize) //  Checking if the chunk is full or not.
+                    {
+                        chunkConsumer.accept(chunk);
+                        chunk=new ArrayList<>(chunkSize);
+                    }
+                }
+                fileState.offset+=lastLineBreak+1;  //  Advancing past the rows that have been read.
+                readSize=INITIAL_READ_SIZE; //  Going back to the usual reads once the long row has been read.
+            }
+            if(!chunk.isEmpty())    //  Checking if there are any remaining records in the chunk.
+            {
+                chunkConsumer.accept(chunk);
+            }
+            if(skippedRows>0)
+            {
+                System.out.println("- Ignoring "+skippedRows+" malformed row(s) in "+file.getFileName()+"...");
+            }
+        }
+
+    }
+
+    //  Function to stop watching the followed files.
+
+    @Override
+    public void close() throws IOException
+
+    {
+
+        watchService.close();
+
+    }
+
+}
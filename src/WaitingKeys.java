@@ -0,0 +1,144 @@
+import java.util.Arrays;
+
+/*
+
+    The WaitingKeys class keeps the distinct join attribute values waiting in the multi-hash table of
+    the HybridJoin class in sorted order, as the sorted RID list of the hybrid join, so every list
+    prefetch selects the values that follow the oldest one without sorting all of them again.
+
+    The sorted values are not updated one by one: a value that leaves the multi-hash table stays in
+    place and is skipped while selecting, and a new value is appended to an unsorted list. Both are
+    merged into the sorted values once they outnumber the live ones, so every value is sorted a
+    constant number of times on average, and a selection costs a binary search and a short walk.
+
+*/
+
+public class WaitingKeys
+
+{
+
+    private final IntMultiMap multiHashTable;   //  Multi-hash table the values are waiting in.
+    private int[] sortedKeys=new int[16];
+    private int sortedCount;
+    private int sortedLive; //  Number of sorted values still waiting in the multi-hash table.
+    private int[] newKeys=new int[16];  //  Values added since the last merge, in arrival order.
+    private int newCount;
+    private int[] spareKeys=new int[16];    //  Array the next merge is written to, swapped with the sorted values.
+
+    //  Constructor function.
+
+    public WaitingKeys(IntMultiMap multiHashTable)
+
+    {
+
+        this.multiHashTable=multiHashTable;
+
+    }
+
+    //  Function to record a value that has started waiting in the multi-hash table.
+
+    public void added(int key)
+
+    {
+
+        if(Arrays.binarySearch(sortedKeys, 0, sortedCount, key)>=0)   //  Checking if the value is still in the sorted ones or not.
+        {
+            sortedLive++;
+            return;
+        }
+        if(newCount==newKeys.length)
+        {
+            newKeys=Arrays.copyOf(newKeys, newCount*2);
+        }
+        newKeys[newCount++]=key;
+
+    }
+
+    //  Function to record a value that has left the multi-hash table.
+
+    public void removed(int key)
+
+    {
+
+        if(Arrays.binarySearch(sortedKeys, 0, sortedCount, key)>=0)
+        {
+            sortedLive--;
+        }
+
+    }
+
+    /*  Function to select the distinct values of the next list prefetch: the oldest value, followed by
+        the waiting values that come after it in sorted order (wrapping around to the smallest ones),
+        up to the size of the target array. Returns the number of values, sorted. */
+
+    public int select(int oldestKey, int[] target)
+
+    {
+
+        if(newCount>sortedLive || sortedCount-sortedLive>sortedLive || (sortedLive<target.length && newCount>0))
+        {
+            merge();    //  Merging once the unsorted or left values outnumber the live ones, or too few are sorted.
+        }
+        int selected=0;
+        target[selected++]=oldestKey;
+        int start=Arrays.binarySearch(sortedKeys, 0, sortedCount, oldestKey);
+        start=start<0 ? -start-1 : start+1;
+        for(int i=0; i<sortedCount && selected<target.length; i++)
+        {
+            int index=start+i<sortedCount ? start+i : start+i-sortedCount;
+            int key=sortedKeys[index];
+            if(key!=oldestKey && multiHashTable.containsKey(key))   //  Skipping the values that have left the multi-hash table.
+            {
+                target[selected++]=key;
+            }
+        }
+        Arrays.sort(target, 0, selected);
+
+        return selected;
+
+    }
+
+    //  Function to sort the live values, dropping the ones that have left the multi-hash table.
+
+    private void merge()
+
+    {
+
+        if(spareKeys.length<sortedLive+newCount)
+        {
+            spareKeys=new int[Math.max(sortedLive+newCount, spareKeys.length*2)];
+        }
+        int[] merged=spareKeys;
+        int count=0;
+        for(int i=0; i<sortedCount; i++)
+        {
+            if(multiHashTable.containsKey(sortedKeys[i]))
+            {
+                merged[count++]=sortedKeys[i];
+            }
+        }
+        for(int i=0; i<newCount; i++)
+        {
+            if(multiHashTable.containsKey(newKeys[i]))
+            {
+                merged[count++]=newKeys[i];
+            }
+        }
+        Arrays.sort(merged, 0, count);
+        int distinct=0;
+        for(int i=0; i<count; i++)  //  Dropping the values added, removed and added again since the last merge.
+        {
+            if(distinct==0 || merged[distinct-1]!=merged[i])
+            {
+                merged[distinct++]=merged[i];
+            }
+        }
+        spareKeys=sortedKeys;
+        sortedKeys=merged;
+        sortedCount=distinct;
+        sortedLive=distinct;
+        newCount=0;
+
+    }
+
+}